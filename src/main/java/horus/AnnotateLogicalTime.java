@@ -1,21 +1,26 @@
 package horus;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import org.apache.commons.lang3.mutable.MutableInt;
+import horus.causality.AnnotationListener;
+import horus.causality.AnnotationOptions;
+import horus.causality.CausalGraphValidation;
+import horus.causality.EventTime;
+import horus.causality.LogProjection;
+import horus.causality.LogicalTime;
+import horus.causality.LogicalTimeAssigner;
+import horus.causality.MemoryEstimate;
+import horus.causality.ParallelLogicalTimeAnnotator;
+import horus.causality.TopologicalLogicalTimeIterator;
+import horus.jobs.AnnotationJob;
+import horus.jobs.Job;
+import horus.jobs.JobRegistry;
 import org.neo4j.graphdb.*;
-import org.neo4j.graphdb.traversal.Evaluation;
-import org.neo4j.graphdb.traversal.Evaluator;
-import org.neo4j.graphdb.traversal.Uniqueness;
+import org.neo4j.graphdb.schema.IndexCreator;
+import org.neo4j.graphdb.schema.IndexDefinition;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.*;
+import java.util.stream.Stream;
 
 /**
  * This is an example showing how you could expose Neo4j's full text indexes as
@@ -33,6 +38,10 @@ public class AnnotateLogicalTime {
     @Context
     public Log log;
 
+    // This allows the procedure to stop when its transaction is terminated
+    @Context
+    public TerminationGuard guard;
+
     /**
      * This declares the first of two procedures in this class - a
      * procedure that performs queries in a legacy index.
@@ -62,154 +71,174 @@ public class AnnotateLogicalTime {
      */
     @Procedure(value = "horus.annotateLogicalTime", mode = Mode.WRITE)
     @Description("Annotate logical time, using Lamport and Vector Clocks, to nodes.")
-    public void annotateLogicalTime() {
-        // 1. get start nodes
-        Result startNodes = db.execute("MATCH (n)\n" +
-                "WHERE NOT ()-->(n)" +
-                "return n");
-
-        List<Node> nodes = startNodes.stream().map(result -> (Node) result.get("n")).collect(Collectors.toList());
+    public void annotateLogicalTime(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws InterruptedException {
+        // With {clock: 'lamport'} only Lamport clocks are assigned, see AnnotationOptions.
+        AnnotationOptions options = new AnnotationOptions(config);
+
+        // With {validate: true}, annotation fails fast on graphs it could not fully annotate.
+        if (options.isValidate())
+            CausalGraphValidation.require(db);
+
+        // With horus.memory_budget set, annotation is refused when estimated not to fit in it.
+        long budget = Estimate.getBudget();
+        if (budget > 0)
+            MemoryEstimate.annotate(db, options, options.isParallel()).requireWithin(budget);
+
+        // A log projection, see horus.projectLogs, is kept up to date with the annotated events.
+        LogProjection projection = LogProjection.find(db);
+
+        // With {parallel: true}, events are annotated by several threads, each committing its own transactions.
+        if (options.isParallel()) {
+            new ParallelLogicalTimeAnnotator(db, log, options).run(new AnnotationListener() {
+                @Override
+                public boolean isCancelled() {
+                    guard.check();
+                    return false;
+                }
+            });
 
-        if (this.log.isDebugEnabled())
-            this.log.debug("Starting with nodes: " + nodes.stream().map(Node::getId).collect(Collectors.toList()));
-
-        // 3. get all nodes and relationships from nodes.
-        db.traversalDescription()
-                .breadthFirst()
-                .relationships(Rels.HAPPENS_BEFORE, Direction.OUTGOING)
-                .relationships(Rels.happens_before, Direction.OUTGOING)
-                .evaluator(new PathEvaluator())
-                .uniqueness(Uniqueness.NONE)
-                .traverse(nodes)
-                .stream()
-                .forEach(p -> {
-                });
-    }
+            // Threads do not annotate in a single topological order, so events are projected afterwards.
+            if (projection != null)
+                projection.projectAll(guard::check);
 
-    public class PathEvaluator implements Evaluator {
+            return;
+        }
 
-        private final HashMap<Long, MutableInt> parentRelatedCalculations;
+        // 1. get start nodes
+        List<Long> nodes = TopologicalLogicalTimeIterator.findRoots(db);
 
-        public PathEvaluator() {
-            this.parentRelatedCalculations = new HashMap<>();
-        }
+        if (this.log.isDebugEnabled())
+            this.log.debug("Starting with nodes: " + nodes);
 
-        @Override
-        public Evaluation evaluate(Path path) {
-            Node currentNode = path.endNode();
-            String currentNodeThreadId = (String) currentNode.getProperty("threadId");
-            int parents = currentNode.getDegree(Direction.INCOMING);
+        // 2. assign logical time to all nodes, in topological order.
+        TopologicalLogicalTimeIterator iterator = new TopologicalLogicalTimeIterator(db, nodes, new LogicalTimeAssigner(options));
+        while (iterator.hasNext()) {
+            guard.check();
 
-            // If it's a node without parents, then it is the beginning of the timeline.
-            if (parents == 0) {
-                VectorClock vc = new VectorClock(currentNodeThreadId);
-                vc.increment();
+            EventTime time = iterator.next();
+            if (log.isDebugEnabled())
+                log.debug("Assigning VC " + time.getVectorClock() + " and lamport time " + time.getLamportTime() + " to node " + time.getNode().getId());
 
-                setVectorClockTimestamp(currentNode, vc);
-                setLamportClockTimestamp(currentNode, 1L);
+            time.write();
+            if (projection != null)
+                projection.project(time.getNode());
+        }
+    }
 
-                return Evaluation.EXCLUDE_AND_CONTINUE;
-            }
+    /**
+     * Assigns vector clocks to the given events and to every event in their causal past still without one,
+     * e.g. after annotating only Lamport clocks with {@code {clock: 'lamport'}}.
+     */
+    @Procedure(value = "horus.annotateVectorClocks", mode = Mode.WRITE)
+    @Description("Annotate Vector Clocks to the given nodes and their causal past.")
+    public void annotateVectorClocks(@Name("nodes") List<Node> nodes) {
+        Set<Long> scope = new HashSet<>();
+        Deque<Node> toVisit = new ArrayDeque<>(nodes);
 
-            this.parentRelatedCalculations.putIfAbsent(currentNode.getId(), new MutableInt(0));
-
-            // Otherwise, we will check if all parents already have its logical time assigned.
-            // If not, we will stop this path and delay the assignment to another path evaluation.
-            int currentCalculatedParents = this.parentRelatedCalculations.get(currentNode.getId()).incrementAndGet();
-            VectorClock parentVectorTime = getParentVectorTime(path);
-            Long parentLamportTime = getParentLamportTime(path);
-
-            boolean continuePath = true;
-            VectorClock vc = currentNode.hasProperty("vectorLogicalTime") ?
-                    getVectorClockTimestamp(currentNode) :
-                    new VectorClock(currentNodeThreadId);
-
-            long lc = currentNode.hasProperty("lamportLogicalTime") ?
-                    (Long) currentNode.getProperty("lamportLogicalTime") :
-                    1L;
-
-            if (currentCalculatedParents == parents) {
-                if (log.isDebugEnabled())
-                    log.debug("Parents have assigned logical time. Assigning logical time to " + currentNode.getProperty("eventId"));
-
-                this.parentRelatedCalculations.remove(currentNode.getId());
-                vc.merge(parentVectorTime);
-                lc = Math.max(lc, parentLamportTime) + 1;
-            } else {
-                if (log.isDebugEnabled())
-                    log.debug("Waiting for parents to have assigned time " + currentNode.getProperty("eventId"));
-
-                vc.mergeWithoutIncrement(parentVectorTime);
-                lc = Math.max(lc, parentLamportTime);
-                continuePath = false;
-            }
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
 
-            setVectorClockTimestamp(currentNode, vc);
-            setLamportClockTimestamp(currentNode, lc);
+            if (scope.contains(node.getId()) || LogicalTime.hasVectorClock(node))
+                continue;
 
-            return continuePath ? Evaluation.EXCLUDE_AND_CONTINUE : Evaluation.EXCLUDE_AND_PRUNE;
+            scope.add(node.getId());
+            for (Relationship relationship : LogicalTime.getParentRelationships(node))
+                toVisit.push(relationship.getStartNode());
         }
 
-        private void setVectorClockTimestamp(Node currentNode, VectorClock vc) {
-            try {
-                if (log.isDebugEnabled())
-                    log.debug("Assigning VC " + vc + " to node " + currentNode.getProperty("eventId"));
+        List<Long> startNodes = new ArrayList<>();
+        for (Long nodeId : scope) {
+            boolean hasScopedParents = false;
+            for (Relationship relationship : LogicalTime.getParentRelationships(db.getNodeById(nodeId)))
+                hasScopedParents |= scope.contains(relationship.getStartNodeId());
 
-                currentNode.setProperty("vectorLogicalTime", (new ObjectMapper()).writeValueAsString(vc.toMap()));
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException("Could not set vectorLogicalTime property: " + e.getMessage());
-            }
+            if (!hasScopedParents)
+                startNodes.add(nodeId);
         }
 
-        private void setLamportClockTimestamp(Node currentNode, Long lc) {
-            if (log.isDebugEnabled())
-                log.debug("Assigning lamport time " + lc + " to node " + currentNode.getProperty("eventId"));
-
-            currentNode.setProperty("lamportLogicalTime", lc);
+        LogicalTimeAssigner assigner = new LogicalTimeAssigner(new AnnotationOptions(Collections.emptyMap()));
+        TopologicalLogicalTimeIterator iterator = new TopologicalLogicalTimeIterator(db, startNodes, assigner, scope);
+        while (iterator.hasNext()) {
+            guard.check();
+            iterator.next().write();
         }
+    }
 
-        private VectorClock getParentVectorTime(Path path) {
-            Node parentNode = path.lastRelationship().getStartNode();
+    /**
+     * Runs the annotation in the background, returning the submitted job. Its progress is reported by
+     * {@code horus.jobs()}, and it can be stopped with {@code horus.jobs.cancel(id)}.
+     * <p>
+     * Accepts the same options as {@code horus.annotateLogicalTime}, plus {@code batchSize}, the number of
+     * events annotated per transaction, and {@code maxThroughput}, the maximum number of events annotated per second.
+     */
+    @Procedure(value = "horus.annotateLogicalTime.submit", mode = Mode.WRITE)
+    @Description("Submit a background job annotating logical time, using Lamport and Vector Clocks, to nodes.")
+    public Stream<Jobs.JobInfo> submit(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        AnnotationOptions options = new AnnotationOptions(config);
 
-            if (parentNode.hasProperty("vectorLogicalTime")) {
-                return getVectorClockTimestamp(parentNode);
-            }
+        long budget = Estimate.getBudget();
+        if (budget > 0)
+            MemoryEstimate.annotate(db, options, true).requireWithin(budget);
 
-            return null;
-        }
+        Job job = JobRegistry.getInstance().submit(id -> new AnnotationJob(id, db, log, options));
 
-        private Long getParentLamportTime(Path path) {
-            Node parentNode = path.lastRelationship().getStartNode();
+        return Stream.of(new Jobs.JobInfo(job));
+    }
 
-            if (parentNode.hasProperty("lamportLogicalTime")) {
-                return (Long) parentNode.getProperty("lamportLogicalTime");
-            }
+    /**
+     * Creates the indexes on the logical time properties of events, if missing, so that Lamport and hybrid
+     * logical time ranges, and events at a given position of a timeline or of a timeline of the log projection,
+     * are answered by index seeks.
+     */
+    @Procedure(value = "horus.createLogicalTimeIndexes", mode = Mode.SCHEMA)
+    @Description("Create indexes on the logical time properties of events.")
+    public Stream<IndexHit> createLogicalTimeIndexes() {
+        List<IndexHit> hits = new ArrayList<>();
+
+        this.createIndexes(Label.label("EVENT"), Arrays.asList(
+                Collections.singletonList(LogicalTime.LAMPORT_LOGICAL_TIME),
+                Collections.singletonList(LogicalTime.HYBRID_LOGICAL_TIME),
+                Collections.singletonList(LogicalTime.TIMELINE_SEQUENCE),
+                Arrays.asList(LogicalTime.THREAD_ID, LogicalTime.TIMELINE_SEQUENCE),
+                Arrays.asList(LogicalTime.CHAIN_ID, LogicalTime.TIMELINE_SEQUENCE)), hits);
+
+        this.createIndexes(LogProjection.LOG, Collections.singletonList(
+                Arrays.asList(LogicalTime.THREAD_ID, LogProjection.LOG_TIMELINE_SEQUENCE)), hits);
+
+        return hits.stream();
+    }
 
-            return null;
+    private void createIndexes(Label label, List<List<String>> indexes, List<IndexHit> hits) {
+        Set<List<String>> indexedProperties = new HashSet<>();
+        for (IndexDefinition index : db.schema().getIndexes(label)) {
+            List<String> properties = new ArrayList<>();
+            index.getPropertyKeys().forEach(properties::add);
+            indexedProperties.add(properties);
         }
 
-        private VectorClock getVectorClockTimestamp(Node node) {
-            ObjectMapper objectMapper = new ObjectMapper();
-            JsonNode time = null;
-            try {
-                time = objectMapper.readTree((String) node.getProperty("vectorLogicalTime"));
-            } catch (IOException e) {
-                throw new RuntimeException("Could not get vectorLogicalTime property.");
-            }
-
-            Map<String, Integer> timeMap = new HashMap<>();
-            time.fields().forEachRemaining(entry -> {
-                if (!entry.getValue().isInt())
-                    throw new RuntimeException("Unexpected values in vectorLogicalTime field.");
+        for (List<String> properties : indexes) {
+            boolean created = !indexedProperties.contains(properties);
+            if (created) {
+                IndexCreator creator = db.schema().indexFor(label);
+                for (String property : properties)
+                    creator = creator.on(property);
 
-                timeMap.put(entry.getKey(), entry.getValue().intValue());
-            });
+                creator.create();
+            }
 
-            return new VectorClock((String) node.getProperty("threadId"), timeMap);
+            hits.add(new IndexHit(label.name(), String.join(",", properties), created));
         }
     }
 
-    private enum Rels implements RelationshipType {
-        HAPPENS_BEFORE, happens_before
+    public static class IndexHit {
+        public String label;
+        public String property;
+        public Boolean created;
+
+        public IndexHit(String label, String property, Boolean created) {
+            this.label = label;
+            this.property = property;
+            this.created = created;
+        }
     }
 }
@@ -0,0 +1,110 @@
+package horus;
+
+import java.util.Arrays;
+
+/**
+ * Bloom clock (Ramabaja, 2019): a fixed number of counters, each event incrementing the counters its timeline
+ * id hashes to, and merged with the parents' counters by component-wise maximum.
+ * <p>
+ * If an event happened before another, its counters are never greater than the other's, so comparing counters
+ * rules out causality without false negatives. The opposite may be a false positive, the probability of which
+ * is estimated by {@link #falsePositiveProbability}.
+ */
+public class BloomClock {
+    private final int[] counters;
+
+    public BloomClock(int size) {
+        this(new int[size]);
+    }
+
+    public BloomClock(int[] counters) {
+        if (counters.length == 0)
+            throw new IllegalArgumentException("Bloom clocks must have at least one counter.");
+
+        this.counters = counters;
+    }
+
+    public BloomClock mergeWithoutIncrement(BloomClock clock) {
+        this.checkSize(clock);
+
+        for (int i = 0; i < this.counters.length; i++)
+            this.counters[i] = Math.max(this.counters[i], clock.counters[i]);
+
+        return this;
+    }
+
+    /**
+     * Increments the given number of counters of a timeline, chosen by double hashing of its id.
+     */
+    public BloomClock increment(String timelineId, int hashes) {
+        long hash = mix(timelineId.hashCode());
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+
+        for (int i = 0; i < hashes; i++)
+            this.counters[Math.floorMod(h1 + i * h2, this.counters.length)]++;
+
+        return this;
+    }
+
+    /**
+     * SplitMix64 finalizer, spreading similar timeline ids, e.g. consecutive thread ids, over distant counters.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Whether the event of this clock may have happened before the event of the given clock.
+     */
+    public boolean mayHappenBefore(BloomClock clock) {
+        this.checkSize(clock);
+
+        boolean foundLess = false;
+        for (int i = 0; i < this.counters.length; i++) {
+            if (this.counters[i] > clock.counters[i])
+                return false;
+
+            foundLess |= this.counters[i] < clock.counters[i];
+        }
+
+        return foundLess;
+    }
+
+    /**
+     * Probability that {@link #mayHappenBefore} holds for two concurrent events with these clocks, i.e. that
+     * every increment counted by this clock hits a counter already incremented in the given clock.
+     */
+    public double falsePositiveProbability(BloomClock clock) {
+        double m = this.counters.length;
+
+        return Math.pow(1 - Math.pow(1 - 1 / m, clock.sum()), this.sum());
+    }
+
+    public long sum() {
+        long sum = 0;
+        for (int counter : this.counters)
+            sum += counter;
+
+        return sum;
+    }
+
+    public int[] getCounters() {
+        return this.counters;
+    }
+
+    private void checkSize(BloomClock clock) {
+        if (this.counters.length != clock.counters.length)
+            throw new IllegalArgumentException("Cannot compare Bloom clocks of " + this.counters.length + " and " + clock.counters.length + " counters.");
+    }
+
+    @Override
+    public String toString() {
+        return "BloomClock{" +
+                "counters=" + Arrays.toString(counters) +
+                '}';
+    }
+}
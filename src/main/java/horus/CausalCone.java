@@ -0,0 +1,247 @@
+package horus;
+
+import horus.causality.EventFilter;
+import horus.causality.LogicalTime;
+import horus.causality.TimelineIndex;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.*;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Causal past and future of an event, read from the timelines its vector clock points to instead of by
+ * traversing the happens-before graph.
+ */
+public class CausalCone {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Events that happened before the given event, newest first.
+     * <p>
+     * For every timeline in the event's vector clock, its causal past is the prefix of the timeline up to the
+     * sequence in the clock, which is read backwards with index seeks. Accepts {@code limit}, the maximum number
+     * of events returned, {@code depth}, the maximum Lamport time distance to the event, and {@code labels} and
+     * {@code hosts} filters.
+     */
+    @Procedure(value = "horus.causalPast", mode = Mode.READ)
+    @Description("Get the events that happened before the given event, newest first.")
+    public Stream<NodeHit> causalPast(@Name("node") Node node,
+                                      @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        TimelineIndex index = TimelineIndex.of(db, node);
+        String timelineId = LogicalTime.getTimelineId(node);
+        long lamportTime = LogicalTime.getLamportTime(node);
+        long depth = ((Number) config.getOrDefault("depth", Long.MAX_VALUE)).longValue();
+
+        List<TimelineCursor> cursors = new ArrayList<>();
+        LogicalTime.getVectorClock(node).toMap().forEach((timeline, sequence) -> {
+            long start = timeline.equals(timelineId) ? sequence - 1 : sequence;
+            cursors.add(new TimelineCursor(index, timeline, start, 1, -1, lc -> lamportTime - lc <= depth));
+        });
+
+        return this.merge(cursors, Comparator.reverseOrder(), config);
+    }
+
+    /**
+     * Events that happened after the given event, nearest first.
+     * <p>
+     * On every timeline, the events that have the given event in their causal past form a suffix, the start of
+     * which is found with a galloping search over index seeks. Accepts the same options as {@code horus.causalPast}.
+     */
+    @Procedure(value = "horus.causalFuture", mode = Mode.READ)
+    @Description("Get the events that happened after the given event, nearest first.")
+    public Stream<NodeHit> causalFuture(@Name("node") Node node,
+                                        @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        TimelineIndex index = TimelineIndex.of(db, node);
+        String timelineId = LogicalTime.getTimelineId(node);
+        long sequence = LogicalTime.getTimelineSequence(node);
+        long lamportTime = LogicalTime.getLamportTime(node);
+        long depth = ((Number) config.getOrDefault("depth", Long.MAX_VALUE)).longValue();
+
+        List<TimelineCursor> cursors = new ArrayList<>();
+        for (String timeline : index.getTimelines()) {
+            long start = timeline.equals(timelineId)
+                    ? sequence + 1
+                    : index.seekFirst(timeline, 1, event -> LogicalTime.getVectorClock(event).getTime(timelineId) >= sequence);
+
+            if (start > 0)
+                cursors.add(new TimelineCursor(index, timeline, start, Long.MAX_VALUE, 1, lc -> lc - lamportTime <= depth));
+        }
+
+        return this.merge(cursors, Comparator.naturalOrder(), config);
+    }
+
+    /**
+     * Events that neither happened before nor after the given event, earliest first.
+     * <p>
+     * On every other timeline, the concurrent events lie between the last event in the given event's causal past,
+     * whose sequence is in its vector clock, and the first event in its causal future, found with a galloping
+     * search. Only those ranges are read, so the cost follows the number of concurrent events rather than the
+     * size of the graph. Accepts {@code limit}, {@code labels} and {@code hosts}.
+     */
+    @Procedure(value = "horus.concurrentWith", mode = Mode.READ)
+    @Description("Get the events concurrent with the given event, earliest first.")
+    public Stream<NodeHit> concurrentWith(@Name("node") Node node,
+                                          @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        TimelineIndex index = TimelineIndex.of(db, node);
+        String timelineId = LogicalTime.getTimelineId(node);
+        long sequence = LogicalTime.getTimelineSequence(node);
+        VectorClock vc = LogicalTime.getVectorClock(node);
+
+        List<TimelineCursor> cursors = new ArrayList<>();
+        for (String timeline : index.getTimelines()) {
+            if (timeline.equals(timelineId))
+                continue;
+
+            long start = vc.getTime(timeline) + 1;
+            long future = index.seekFirst(timeline, start, event -> LogicalTime.getVectorClock(event).getTime(timelineId) >= sequence);
+
+            if (future != start)
+                cursors.add(new TimelineCursor(index, timeline, start, future > 0 ? future - 1 : Long.MAX_VALUE, 1, lc -> true));
+        }
+
+        return this.merge(cursors, Comparator.naturalOrder(), config);
+    }
+
+    /**
+     * Latest events that happened before or are both given events, newest first.
+     * <p>
+     * Their common causal past is bounded, on every timeline, by the minimum of both events' clocks, so the event
+     * at that sequence of each timeline is found with a single index seek. Those that happened before another one
+     * of them are left out, which only needs the clocks already read: an event happened before another when the
+     * other's clock has reached its sequence on its timeline. When one event happened before the other, it is its
+     * own result. Accepts {@code limit}.
+     */
+    @Procedure(value = "horus.commonCausalAncestors", mode = Mode.READ)
+    @Description("Get the latest events in the causal past of both given events, newest first.")
+    public Stream<NodeHit> commonCausalAncestors(@Name("a") Node a,
+                                                 @Name("b") Node b,
+                                                 @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        TimelineIndex index = TimelineIndex.of(db, a);
+        VectorClock bClock = LogicalTime.getVectorClock(b);
+        if (bClock == null)
+            throw new RuntimeException("Event " + b.getId() + " has no vector clock, annotate it with {clock: 'vector'} or {clock: 'chain'}.");
+
+        long limit = ((Number) config.getOrDefault("limit", Long.MAX_VALUE)).longValue();
+
+        Map<Node, VectorClock> frontier = new HashMap<>();
+        LogicalTime.getVectorClock(a).toMap().forEach((timeline, time) -> {
+            Node node = index.get(timeline, Math.min(time, bClock.getTime(timeline)));
+            if (node != null)
+                frontier.put(node, LogicalTime.getVectorClock(node));
+        });
+
+        return frontier.keySet().stream()
+                .filter(node -> {
+                    String timeline = LogicalTime.getTimelineId(node);
+                    long sequence = LogicalTime.getTimelineSequence(node);
+
+                    return frontier.entrySet().stream().noneMatch(other ->
+                            !other.getKey().equals(node) && other.getValue().getTime(timeline) >= sequence);
+                })
+                .sorted(Comparator.comparingLong((Node node) -> LogicalTime.getLamportTime(node)).reversed())
+                .limit(limit)
+                .map(NodeHit::new);
+    }
+
+    /**
+     * Merges the timeline cursors by Lamport time, so that results are streamed in causality-consistent order
+     * and callers can stop early.
+     */
+    private Stream<NodeHit> merge(List<TimelineCursor> cursors, Comparator<Long> order, Map<String, Object> config) {
+        EventFilter filter = new EventFilter(config);
+        long limit = ((Number) config.getOrDefault("limit", Long.MAX_VALUE)).longValue();
+
+        PriorityQueue<TimelineCursor> queue = new PriorityQueue<>(Math.max(1, cursors.size()),
+                (c1, c2) -> order.compare(c1.lamportTime, c2.lamportTime));
+        for (TimelineCursor cursor : cursors) {
+            if (cursor.advance())
+                queue.add(cursor);
+        }
+
+        Iterator<Node> nodes = new Iterator<Node>() {
+            @Override
+            public boolean hasNext() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Node next() {
+                TimelineCursor cursor = queue.poll();
+                if (cursor == null)
+                    throw new NoSuchElementException();
+
+                Node node = cursor.node;
+                if (cursor.advance())
+                    queue.add(cursor);
+
+                return node;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(nodes, Spliterator.ORDERED), false)
+                .filter(filter)
+                .limit(limit)
+                .map(NodeHit::new);
+    }
+
+    /**
+     * Walks a timeline one sequence at a time, in either direction, up to the given end sequence and while events
+     * are within the depth bound.
+     */
+    private static class TimelineCursor {
+        private final TimelineIndex index;
+        private final String timelineId;
+        private final long end;
+        private final int step;
+        private final LongPredicate withinDepth;
+
+        private long sequence;
+        private Node node;
+        private long lamportTime;
+
+        TimelineCursor(TimelineIndex index, String timelineId, long start, long end, int step, LongPredicate withinDepth) {
+            this.index = index;
+            this.timelineId = timelineId;
+            this.end = end;
+            this.step = step;
+            this.withinDepth = withinDepth;
+            this.sequence = start - step;
+        }
+
+        boolean advance() {
+            this.sequence += this.step;
+            if (this.step > 0 ? this.sequence > this.end : this.sequence < this.end)
+                return false;
+
+            this.node = this.index.get(this.timelineId, this.sequence);
+
+            if (this.node == null)
+                return false;
+
+            this.lamportTime = LogicalTime.getLamportTime(this.node);
+
+            return this.withinDepth.test(this.lamportTime);
+        }
+    }
+
+    public static class NodeHit {
+        public Node node;
+
+        public NodeHit(Node node) {
+            this.node = node;
+        }
+    }
+}
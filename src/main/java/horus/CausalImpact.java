@@ -0,0 +1,131 @@
+package horus;
+
+import horus.causality.CausalReach;
+import horus.causality.CompactCausalGraph;
+import horus.causality.LogicalTime;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Number of events each event influences, and is influenced by, computed for every event at once, see
+ * {@link CausalReach}.
+ */
+public class CausalImpact {
+    private static final Label EVENT = Label.label("EVENT");
+
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    // This allows the procedure to stop when its transaction is terminated
+    @Context
+    public TerminationGuard guard;
+
+    /**
+     * Streams every event with the number of events in its causal past and future, or with {@code limit}, the
+     * events with most descendants first.
+     * <p>
+     * Ancestors are counted from vector clocks, whose entries add up to the number of events in the causal past
+     * along with the event itself, and propagated like descendants when some event has no vector clock.
+     * Descendants are exact when {@code exact}, by default on graphs of up to 10000 events, and estimated
+     * with HyperLogLog sketches of {@code precision} bits, 12 by default, otherwise. With {@code write}, counts
+     * are also written to the {@code causalAncestors} and {@code causalDescendants} properties.
+     */
+    @Procedure(value = "horus.causalImpact", mode = Mode.WRITE)
+    @Description("Count the causal ancestors and descendants of every event.")
+    public Stream<ImpactHit> causalImpact(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        CompactCausalGraph graph = CompactCausalGraph.load(db);
+        int size = graph.size();
+
+        boolean exact = (Boolean) config.getOrDefault("exact", size <= 10000);
+        int precision = ((Number) config.getOrDefault("precision", 12)).intValue();
+        boolean write = (Boolean) config.getOrDefault("write", false);
+        long limit = ((Number) config.getOrDefault("limit", Long.MAX_VALUE)).longValue();
+
+        long start = System.currentTimeMillis();
+        CausalReach reach = new CausalReach(graph, exact, precision);
+        long[] descendants = reach.countDescendants();
+
+        long[] ancestors = new long[size];
+        for (int index = 0; index < size && ancestors != null; index++) {
+            guard.check();
+
+            Node node = db.getNodeById(graph.getNodeId(index));
+            if (!node.hasLabel(EVENT))
+                continue;
+
+            VectorClock vc = LogicalTime.getVectorClock(node);
+            if (vc == null) {
+                ancestors = null;
+                continue;
+            }
+
+            ancestors[index] = vc.toMap().values().stream().mapToLong(Integer::longValue).sum() - 1;
+        }
+        boolean fromClocks = ancestors != null;
+        if (!fromClocks)
+            ancestors = reach.countAncestors();
+
+        if (log.isDebugEnabled())
+            log.debug("Counted causal impact of " + size + " events in " + (System.currentTimeMillis() - start) + " ms.");
+
+        long[] ancestorCounts = ancestors;
+        if (write) {
+            for (int index = 0; index < size; index++) {
+                guard.check();
+
+                Node node = db.getNodeById(graph.getNodeId(index));
+                if (!node.hasLabel(EVENT))
+                    continue;
+
+                node.setProperty(CausalReach.CAUSAL_ANCESTORS, ancestorCounts[index]);
+                node.setProperty(CausalReach.CAUSAL_DESCENDANTS, descendants[index]);
+            }
+        }
+
+        IntStream indexes = IntStream.range(0, size)
+                .filter(index -> db.getNodeById(graph.getNodeId(index)).hasLabel(EVENT));
+        if (limit < Long.MAX_VALUE) {
+            indexes = indexes.boxed()
+                    .sorted(Comparator.comparingLong((Integer index) -> descendants[index]).reversed())
+                    .limit(limit)
+                    .mapToInt(Integer::intValue);
+        }
+
+        return indexes.mapToObj(index -> new ImpactHit(db.getNodeById(graph.getNodeId(index)),
+                ancestorCounts[index], descendants[index], fromClocks || exact, exact));
+    }
+
+    /**
+     * Counts of an event, with whether each is exact or estimated.
+     */
+    public static class ImpactHit {
+        public Node node;
+        public Long ancestors;
+        public Long descendants;
+        public Boolean exactAncestors;
+        public Boolean exactDescendants;
+
+        public ImpactHit(Node node, Long ancestors, Long descendants, Boolean exactAncestors, Boolean exactDescendants) {
+            this.node = node;
+            this.ancestors = ancestors;
+            this.descendants = descendants;
+            this.exactAncestors = exactAncestors;
+            this.exactDescendants = exactDescendants;
+        }
+    }
+}
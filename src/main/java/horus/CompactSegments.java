@@ -0,0 +1,66 @@
+package horus;
+
+import horus.causality.Segments;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Result;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Compacts runs of non-communicating events of a single thread into segments, see {@link Segments}.
+ */
+public class CompactSegments {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Replaces the recorded segments by those of at least {@code minLength} events, 2 by default. Segments are
+     * then jumped over by {@code horus.annotateLogicalTime} and {@code horus.getCompactCausalGraph}.
+     */
+    @Procedure(value = "horus.compactSegments", mode = Mode.WRITE)
+    @Description("Record runs of non-communicating events of a single thread as SEGMENT relationships.")
+    public Stream<CompactionResult> compactSegments(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        int minLength = ((Number) config.getOrDefault("minLength", 2)).intValue();
+
+        long segments = Segments.compact(db, minLength);
+
+        long events;
+        try (Result result = db.execute("MATCH ()-[s:SEGMENT]->() RETURN coalesce(sum(s.length), 0) AS events")) {
+            events = result.<Long>columnAs("events").next();
+        }
+
+        if (log.isDebugEnabled())
+            log.debug("Compacted " + events + " events into " + segments + " segments.");
+
+        return Stream.of(new CompactionResult(segments, events));
+    }
+
+    /**
+     * Removes the recorded segments.
+     */
+    @Procedure(value = "horus.dropSegments", mode = Mode.WRITE)
+    @Description("Remove the SEGMENT relationships.")
+    public Stream<CompactionResult> dropSegments() {
+        return Stream.of(new CompactionResult(Segments.drop(db), 0L));
+    }
+
+    public static class CompactionResult {
+        public Long segments;
+        public Long events;
+
+        public CompactionResult(Long segments, Long events) {
+            this.segments = segments;
+            this.events = events;
+        }
+    }
+}
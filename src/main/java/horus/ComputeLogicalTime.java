@@ -0,0 +1,88 @@
+package horus;
+
+import horus.causality.AnnotationOptions;
+import horus.causality.EventTime;
+import horus.causality.LogicalTimeAssigner;
+import horus.causality.TopologicalLogicalTimeIterator;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Computes logical time like {@code horus.annotateLogicalTime}, streaming it instead of writing it, so that
+ * it can run in read-only transactions and read replicas.
+ */
+public class ComputeLogicalTime {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    // This allows the procedure to stop when its transaction is terminated
+    @Context
+    public TerminationGuard guard;
+
+    /**
+     * Streams every event with its logical time, in topological order. Events are computed as the stream
+     * is consumed, keeping in memory only the clocks of events with children still to be visited.
+     */
+    @Procedure(value = "horus.computeLogicalTime", mode = Mode.READ)
+    @Description("Compute logical time, using Lamport and Vector Clocks, of all nodes without storing it.")
+    public Stream<LogicalTimeHit> computeLogicalTime(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        LogicalTimeAssigner assigner = new LogicalTimeAssigner(new AnnotationOptions(config));
+        TopologicalLogicalTimeIterator iterator = new TopologicalLogicalTimeIterator(db, TopologicalLogicalTimeIterator.findRoots(db), assigner);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false)
+                .map(time -> {
+                    guard.check();
+                    return new LogicalTimeHit(time);
+                });
+    }
+
+    /**
+     * Logical time computed for an event.
+     */
+    public static class LogicalTimeHit {
+        public Node node;
+        public Long lamport;
+        public Map<String, Object> vectorClock;
+        public String itc;
+        public List<Long> bloomClock;
+        public Long hybrid;
+
+        public LogicalTimeHit(EventTime time) {
+            this.node = time.getNode();
+            this.lamport = time.getLamportTime();
+            this.hybrid = time.getHybridTime();
+
+            if (time.getVectorClock() != null) {
+                this.vectorClock = new HashMap<>();
+                time.getVectorClock().toMap().forEach((timelineId, t) -> this.vectorClock.put(timelineId, t.longValue()));
+            }
+
+            if (time.getIntervalTreeClock() != null)
+                this.itc = time.getIntervalTreeClock().toString();
+
+            if (time.getBloomClock() != null) {
+                this.bloomClock = new ArrayList<>();
+                for (int counter : time.getBloomClock().getCounters())
+                    this.bloomClock.add((long) counter);
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package horus;
+
+import horus.causality.LogicalTime;
+import horus.causality.TimelineIndex;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Consistent global snapshots: for every timeline, the last event of a set of events closed under happens-before.
+ */
+public class ConsistentCut {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * The smallest consistent cut holding the given event, i.e. its causal past. The last event of each timeline
+     * is at the sequence in the event's vector clock, so it is read with one index seek per timeline. Timelines
+     * without events in the cut are returned with a null node.
+     */
+    @Procedure(value = "horus.consistentCut", mode = Mode.READ)
+    @Description("Get the last event of every timeline within the causal past of the given event.")
+    public Stream<CutHit> consistentCut(@Name("node") Node node) {
+        TimelineIndex index = TimelineIndex.of(db, node);
+        VectorClock vc = LogicalTime.getVectorClock(node);
+
+        List<CutHit> cut = new ArrayList<>();
+        for (String timeline : index.getTimelines())
+            cut.add(new CutHit(timeline, index.get(timeline, vc.getTime(timeline))));
+
+        return cut.stream();
+    }
+
+    /**
+     * The consistent cut of the events up to the given kernel time, in nanoseconds truncated to microseconds,
+     * as told by their hybrid logical time, annotated with {@code {hybrid: true}}. An event's hybrid logical time
+     * is greater than that of every event in its causal past, so the cut is consistent even when kernel clocks
+     * disagree. Hybrid logical time grows along a timeline, so its last event in the cut is found with a
+     * galloping search over the timeline index.
+     */
+    @Procedure(value = "horus.consistentCutAt", mode = Mode.READ)
+    @Description("Get the last event of every timeline up to the given kernel time, as a consistent cut.")
+    public Stream<CutHit> consistentCutAt(@Name("kernelTime") long kernelTime) {
+        TimelineIndex index = TimelineIndex.find(db);
+        long limit = LogicalTime.toHybridTime(kernelTime + 1000);
+
+        List<CutHit> cut = new ArrayList<>();
+        for (String timeline : index.getTimelines()) {
+            long after = index.seekFirst(timeline, 1, event -> getHybridTime(event) >= limit);
+            long last = after > 0 ? after - 1 : index.getLength(timeline);
+
+            cut.add(new CutHit(timeline, index.get(timeline, last)));
+        }
+
+        return cut.stream();
+    }
+
+    private static long getHybridTime(Node node) {
+        Long hlc = LogicalTime.getHybridTime(node);
+        if (hlc == null)
+            throw new RuntimeException("Event " + node.getId() + " has no hybridLogicalTime, annotate it with {hybrid: true}.");
+
+        return hlc;
+    }
+
+    public static class CutHit {
+        public String timeline;
+        public Node node;
+
+        public CutHit(String timeline, Node node) {
+            this.timeline = timeline;
+            this.node = node;
+        }
+    }
+}
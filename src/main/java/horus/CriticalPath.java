@@ -0,0 +1,108 @@
+package horus;
+
+import horus.causality.CausalNodes;
+import horus.causality.LogicalTime;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Longest causal chain between two events, weighted by the {@code kernelTime} elapsed along each edge.
+ */
+public class CriticalPath {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Streams the critical path from start to end, each step with the duration of the edge leading to it and the
+     * time elapsed since start. Events whose kernel time is behind their parent's count as taking no time.
+     * <p>
+     * The events on causal paths between start and end are those of {@code horus.getCausalNodes}. Sorted by
+     * Lamport time they are in topological order, so the longest path is computed with a single dynamic
+     * programming pass relaxing every edge once. As durations add up to the same total on every path when kernel
+     * clocks agree, ties are broken towards the latest parent, which is the one that delayed its child.
+     */
+    @Procedure(value = "horus.criticalPath", mode = Mode.READ)
+    @Description("Get the longest causal path, weighted by kernelTime, between the given events.")
+    public Stream<PathStep> criticalPath(@Name("start") Node start,
+                                         @Name("end") Node end) {
+        List<Node> nodes = CausalNodes.between(db, start, end)
+                .sorted(Comparator.comparingLong(LogicalTime::getLamportTime))
+                .collect(Collectors.toList());
+
+        LongIntHashMap indexes = new LongIntHashMap(nodes.size());
+        long[] kernelTimes = new long[nodes.size()];
+        for (int i = 0; i < nodes.size(); i++) {
+            indexes.put(nodes.get(i).getId(), i);
+            kernelTimes[i] = ((Number) nodes.get(i).getProperty(LogicalTime.KERNEL_TIME, 0L)).longValue();
+        }
+
+        if (!indexes.containsKey(start.getId()) || !indexes.containsKey(end.getId()))
+            return Stream.empty();
+
+        long[] lengths = new long[nodes.size()];
+        int[] predecessors = new int[nodes.size()];
+        Arrays.fill(lengths, -1);
+        Arrays.fill(predecessors, -1);
+        lengths[indexes.get(start.getId())] = 0;
+
+        for (int i = 0; i < nodes.size(); i++) {
+            if (lengths[i] < 0)
+                continue;
+
+            for (Relationship relationship : LogicalTime.getChildRelationships(nodes.get(i))) {
+                int child = indexes.getIfAbsent(relationship.getEndNodeId(), -1);
+                if (child < 0)
+                    continue;
+
+                // On ties, follow the parent that happened last, i.e. the one the child waited for.
+                long length = lengths[i] + Math.max(0, kernelTimes[child] - kernelTimes[i]);
+                if (length > lengths[child] || (length == lengths[child] && kernelTimes[i] > kernelTimes[predecessors[child]])) {
+                    lengths[child] = length;
+                    predecessors[child] = i;
+                }
+            }
+        }
+
+        // Unrelated events are both returned by horus.getCausalNodes, but no path leads from one to the other.
+        int endIndex = indexes.get(end.getId());
+        if (lengths[endIndex] < 0)
+            return Stream.empty();
+
+        Deque<PathStep> path = new ArrayDeque<>();
+        for (int i = endIndex; i >= 0; i = predecessors[i]) {
+            int predecessor = predecessors[i];
+            long duration = predecessor >= 0 ? lengths[i] - lengths[predecessor] : 0;
+
+            path.push(new PathStep(nodes.get(i), duration, lengths[i]));
+        }
+
+        return path.stream();
+    }
+
+    public static class PathStep {
+        public Node node;
+        public Long duration;
+        public Long elapsed;
+
+        public PathStep(Node node, Long duration, Long elapsed) {
+            this.node = node;
+            this.duration = duration;
+            this.elapsed = elapsed;
+        }
+    }
+}
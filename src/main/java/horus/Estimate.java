@@ -0,0 +1,83 @@
+package horus;
+
+import horus.causality.AnnotationOptions;
+import horus.causality.MemoryEstimate;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.procedure.*;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Procedures predicting the heap, transaction state and runtime of annotation and causal graph extraction, see
+ * {@link MemoryEstimate}. When {@code horus.memory_budget} is set, those procedures are refused when their
+ * estimate exceeds it.
+ */
+public class Estimate {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    /**
+     * Estimate for {@code horus.annotateLogicalTime} with the given options, or for
+     * {@code horus.annotateLogicalTime.submit} with {@code {submit: true}}.
+     */
+    @Procedure(value = "horus.estimate.annotate", mode = Mode.READ)
+    @Description("Estimate the heap, transaction state and runtime of annotating logical time.")
+    public Stream<EstimateResult> annotate(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        AnnotationOptions options = new AnnotationOptions(config);
+        boolean batched = options.isParallel() || (Boolean) config.getOrDefault("submit", false);
+
+        return Stream.of(new EstimateResult(MemoryEstimate.annotate(db, options, batched), getBudget()));
+    }
+
+    @Procedure(value = "horus.estimate.causalGraph", mode = Mode.READ)
+    @Description("Estimate the heap and runtime of getting the causal graph between the given two events.")
+    public Stream<EstimateResult> causalGraph(@Name("start") Node start,
+                                              @Name("end") Node end) {
+        return Stream.of(new EstimateResult(MemoryEstimate.causalGraph(db, start, end), getBudget()));
+    }
+
+    /**
+     * Configured heap budget, in bytes, or zero when there is none.
+     */
+    static long getBudget() {
+        return HorusConfig.get().getMemoryBudget();
+    }
+
+    /**
+     * Estimate of an operation, in bytes and milliseconds. {@code heapAvailable} is the heap the JVM could still
+     * allocate, and {@code fits} whether the estimate is within the budget, if any.
+     */
+    public static class EstimateResult {
+        public String operation;
+        public Long events;
+        public Long relationships;
+        public Long timelines;
+        public Long clockWidth;
+        public Long peakHeap;
+        public Long transactionState;
+        public Long runtimeMillis;
+        public Long heapAvailable;
+        public Long budget;
+        public Boolean fits;
+
+        public EstimateResult(MemoryEstimate estimate, long budget) {
+            Runtime runtime = Runtime.getRuntime();
+
+            this.operation = estimate.getOperation();
+            this.events = estimate.getEvents();
+            this.relationships = estimate.getRelationships();
+            this.timelines = estimate.getTimelines();
+            this.clockWidth = estimate.getClockWidth();
+            this.peakHeap = estimate.getPeakHeap();
+            this.transactionState = estimate.getTransactionState();
+            this.runtimeMillis = estimate.getRuntimeMillis();
+            this.heapAvailable = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+            this.budget = budget;
+            this.fits = estimate.fits(budget);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package horus;
+
+import horus.causality.LogicalTime;
+import horus.export.TraceWriter;
+import org.neo4j.graphdb.*;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Exports annotated traces to columnar files for offline analysis, read back with {@link horus.export.TraceReader}.
+ */
+public class Export {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    // This allows the procedure to stop when its transaction is terminated
+    @Context
+    public TerminationGuard guard;
+
+    /**
+     * Writes every event, in Lamport time order, with its Lamport and kernel time, vector clock, {@code threadId},
+     * {@code host}, labels and happens-before children, to the given file on the server, which requires
+     * {@code horus.export.enabled}. The path is resolved against {@code horus.export.directory}, and must stay
+     * within it. The file is only written once every event is, and left unchanged if the export fails. Events are written in blocks of {@code blockSize} events, 65536 by default,
+     * deflated unless {@code compress} is false. The only {@code format} is {@code columnar}.
+     */
+    @Procedure(value = "horus.export", mode = Mode.READ)
+    @Description("Export events, their clocks and happens-before relationships to a columnar trace file.")
+    public Stream<ExportResult> export(@Name("path") String path,
+                                       @Name(value = "config", defaultValue = "{}") Map<String, Object> config) throws IOException {
+        HorusConfig horusConfig = HorusConfig.get();
+        if (!horusConfig.isExportEnabled())
+            throw new RuntimeException("Export to files is disabled, set " + HorusSettings.export_enabled.name() + "=true to enable it.");
+
+        String format = (String) config.getOrDefault("format", "columnar");
+        if (!format.equals("columnar"))
+            throw new IllegalArgumentException("Unknown format '" + format + "'.");
+
+        int blockSize = ((Number) config.getOrDefault("blockSize", 65536)).intValue();
+        boolean compress = (Boolean) config.getOrDefault("compress", true);
+
+        Path file = resolve(horusConfig.getExportDirectory().toPath(), path);
+        try (TraceWriter writer = new TraceWriter(file, blockSize, compress);
+             Result events = db.execute("MATCH (n:EVENT) WHERE exists(n.lamportLogicalTime) RETURN n ORDER BY n.lamportLogicalTime")) {
+            while (events.hasNext()) {
+                guard.check();
+
+                Node node = (Node) events.next().get("n");
+
+                List<String> labels = new ArrayList<>();
+                for (Label label : node.getLabels())
+                    labels.add(label.name());
+
+                List<Long> children = new ArrayList<>();
+                for (Relationship relationship : LogicalTime.getChildRelationships(node))
+                    children.add(relationship.getEndNodeId());
+
+                Object kernelTime = node.getProperty(LogicalTime.KERNEL_TIME, null);
+                writer.add(node.getId(),
+                        LogicalTime.getLamportTime(node),
+                        kernelTime instanceof Number ? ((Number) kernelTime).longValue() : null,
+                        (String) node.getProperty(LogicalTime.THREAD_ID, null),
+                        (String) node.getProperty("host", null),
+                        labels,
+                        LogicalTime.getVectorClock(node),
+                        children.stream().mapToLong(Long::longValue).toArray());
+            }
+
+            writer.finish();
+
+            if (log.isDebugEnabled())
+                log.debug("Exported " + writer.getRows() + " events in " + writer.getBlocks() + " blocks to " + file + ".");
+
+            return Stream.of(new ExportResult(file.toString(), writer.getRows(), writer.getRelationships(),
+                    (long) writer.getBlocks(), (long) writer.getTimelines(), Files.size(file)));
+        }
+    }
+
+    /**
+     * The given path within the export directory, which is created when missing. Paths leaving it, through
+     * {@code ..} or symbolic links, are refused, so that callers cannot overwrite other files of the server.
+     */
+    static Path resolve(Path directory, String path) throws IOException {
+        Path root = Files.createDirectories(directory.toAbsolutePath()).toRealPath();
+        Path file = root.resolve(path).normalize();
+
+        if (!file.startsWith(root) || file.equals(root) || file.getParent() == null)
+            throw new IllegalArgumentException("Export path '" + path + "' is outside of " + HorusSettings.export_directory.name() + ".");
+
+        Path parent = Files.createDirectories(file.getParent()).toRealPath();
+        if (!parent.startsWith(root) || Files.isSymbolicLink(file))
+            throw new IllegalArgumentException("Export path '" + path + "' is outside of " + HorusSettings.export_directory.name() + ".");
+
+        return parent.resolve(file.getFileName());
+    }
+
+    public static class ExportResult {
+        public String path;
+        public Long events;
+        public Long relationships;
+        public Long blocks;
+        public Long timelines;
+        public Long bytes;
+
+        public ExportResult(String path, Long events, Long relationships, Long blocks, Long timelines, Long bytes) {
+            this.path = path;
+            this.events = events;
+            this.relationships = relationships;
+            this.blocks = blocks;
+            this.timelines = timelines;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package horus;
+
+import horus.causality.EventFilter;
+import horus.causality.LogicalTime;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.*;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds concurrent accesses to the same resource, e.g. events on the same socket or of the same process.
+ */
+public class FindRaces {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Pairs of concurrent events sharing the value of the {@code groupBy} property, {@code socketId} by default,
+     * optionally restricted to events with any of the given {@code labels} or {@code hosts}.
+     * <p>
+     * The resources are read first, then the events of each resource in turn, found through an index on the
+     * {@code groupBy} property when there is one, and sorted by Lamport time, so that only one group is sorted
+     * and kept in memory at a time, and every event is only checked against the events before it. Those are
+     * kept per timeline in sequence order: the events of a timeline concurrent with the current one are exactly
+     * those past the timeline's entry in the current event's vector clock, found with a binary search.
+     */
+    @Procedure(value = "horus.findRaces", mode = Mode.READ)
+    @Description("Find pairs of concurrent events accessing the same resource.")
+    public Stream<RaceHit> findRaces(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        String groupBy = "n.`" + ((String) config.getOrDefault("groupBy", "socketId")).replace("`", "``") + "`";
+        EventFilter filter = new EventFilter(config);
+        long limit = ((Number) config.getOrDefault("limit", Long.MAX_VALUE)).longValue();
+
+        String labels = "(size($labels) = 0 OR any(label IN labels(n) WHERE label IN $labels))";
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("labels", config.getOrDefault("labels", Collections.emptyList()));
+
+        Result resources = db.execute("MATCH (n:EVENT) WHERE " + groupBy + " IS NOT NULL AND " + labels + "\n" +
+                "RETURN DISTINCT " + groupBy + " AS resource", parameters);
+
+        Iterator<List<RaceHit>> groups = new Iterator<List<RaceHit>>() {
+            @Override
+            public boolean hasNext() {
+                return resources.hasNext();
+            }
+
+            @Override
+            public List<RaceHit> next() {
+                Object resource = resources.next().get("resource");
+                RaceSweep sweep = new RaceSweep(resource);
+
+                Map<String, Object> groupParameters = new HashMap<>(parameters);
+                groupParameters.put("resource", resource);
+
+                try (Result events = db.execute("MATCH (n:EVENT) WHERE " + groupBy + " = $resource AND " + labels + "\n" +
+                        "RETURN n ORDER BY n.lamportLogicalTime", groupParameters)) {
+                    while (events.hasNext()) {
+                        Node node = (Node) events.next().get("n");
+                        if (filter.test(node))
+                            sweep.add(node);
+                    }
+                }
+
+                return sweep.races;
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(groups, Spliterator.ORDERED), false)
+                .flatMap(List::stream)
+                .limit(limit)
+                .onClose(resources::close);
+    }
+
+    /**
+     * Sweep over the events of a single resource, in Lamport time order.
+     * <p>
+     * Every timeline has a frontier: the timelines whose accesses may still be concurrent with its next event.
+     * Once the accesses of a timeline are all in the past of an event, they are in the past of every later
+     * event of the same timeline, so the timeline leaves the frontier until it has a new access. New accesses
+     * are appended to a log, which every timeline catches up with when it has an event.
+     */
+    private static class RaceSweep {
+        private final Object resource;
+        private final Map<String, List<Access>> timelines;
+        private final Map<String, Frontier> frontiers;
+        private final List<String> accessLog;
+        private final List<RaceHit> races;
+
+        RaceSweep(Object resource) {
+            this.resource = resource;
+            this.timelines = new HashMap<>();
+            this.frontiers = new HashMap<>();
+            this.accessLog = new ArrayList<>();
+            this.races = new ArrayList<>();
+        }
+
+        void add(Node node) {
+            VectorClock vc = LogicalTime.getVectorClock(node);
+            if (vc == null)
+                throw new RuntimeException("Event " + node.getId() + " has no vector clock, annotate it with {clock: 'vector'} or {clock: 'chain'}.");
+
+            String timelineId = LogicalTime.getTimelineId(node);
+
+            Frontier frontier = this.frontiers.computeIfAbsent(timelineId, id -> new Frontier(this.timelines.keySet(), this.accessLog.size()));
+            for (; frontier.seen < this.accessLog.size(); frontier.seen++)
+                frontier.timelines.add(this.accessLog.get(frontier.seen));
+            frontier.timelines.remove(timelineId);
+
+            for (Iterator<String> it = frontier.timelines.iterator(); it.hasNext(); ) {
+                String otherId = it.next();
+
+                List<Access> accesses = this.timelines.get(otherId);
+                int first = firstAfter(accesses, vc.getTime(otherId));
+                if (first == accesses.size()) {
+                    it.remove();
+                    continue;
+                }
+
+                for (int i = first; i < accesses.size(); i++)
+                    this.races.add(new RaceHit(this.resource, accesses.get(i).node, node));
+            }
+
+            this.timelines.computeIfAbsent(timelineId, id -> new ArrayList<>()).add(new Access(node, vc.getTime(timelineId)));
+            this.accessLog.add(timelineId);
+        }
+
+        /**
+         * Index of the first access with a sequence greater than the given one.
+         */
+        private static int firstAfter(List<Access> accesses, int sequence) {
+            int low = 0;
+            int high = accesses.size();
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (accesses.get(middle).sequence <= sequence)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+
+            return low;
+        }
+    }
+
+    private static class Frontier {
+        private final Set<String> timelines;
+        private int seen;
+
+        Frontier(Collection<String> timelines, int seen) {
+            this.timelines = new HashSet<>(timelines);
+            this.seen = seen;
+        }
+    }
+
+    private static class Access {
+        private final Node node;
+        private final int sequence;
+
+        Access(Node node, int sequence) {
+            this.node = node;
+            this.sequence = sequence;
+        }
+    }
+
+    public static class RaceHit {
+        public Object resource;
+        public Node first;
+        public Node second;
+
+        public RaceHit(Object resource, Node first, Node second) {
+            this.resource = resource;
+            this.first = first;
+            this.second = second;
+        }
+    }
+}
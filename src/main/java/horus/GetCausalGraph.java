@@ -6,8 +6,13 @@ import apoc.result.VirtualRelationship;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import horus.causality.CausalNode;
+import horus.causality.CausalNodes;
+import horus.causality.LogProjection;
+import horus.causality.LogicalTime;
 import horus.causality.LogicalTimeAssignmentIterator;
+import horus.causality.MemoryEstimate;
 import horus.causality.OnlyLogsLogicalTimeAssignmentIterator;
+import horus.causality.Segments;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.jgrapht.Graph;
@@ -75,6 +80,18 @@ public class GetCausalGraph {
                                           @Name(value = "onlyLogs", defaultValue = "false") Boolean onlyLogs,
                                           @Name(value = "filterHosts", defaultValue = "[]") List<String> filterHosts) {
 
+        // With a matching log projection, see horus.projectLogs, only LOG events are read.
+        if (onlyLogs) {
+            LogProjection projection = LogProjection.find(db);
+            if (projection != null && projection.matches(filterHosts) && isProjected(projection, start) && isProjected(projection, end))
+                return this.getProjectedLogGraph(start, end);
+        }
+
+        // With horus.memory_budget set, extraction is refused when estimated not to fit in it.
+        long budget = Estimate.getBudget();
+        if (budget > 0)
+            MemoryEstimate.causalGraph(db, start, end).requireWithin(budget);
+
         Map<String, Object> parameters = new HashMap<>();
         parameters.put("fromNodeId", start.getProperty("eventId"));
         parameters.put("toNodeId", end.getProperty("eventId"));
@@ -83,7 +100,7 @@ public class GetCausalGraph {
                 "MATCH (to:EVENT {eventId: $toNodeId})\n" +
                 "CALL horus.getCausalNodes(from, to) YIELD node\n" +
                 "WITH collect(node) as nodes\n" +
-                "OPTIONAL MATCH p = (n)-[r]->(m)\n" +
+                "OPTIONAL MATCH p = (n)-[r:HAPPENS_BEFORE|happens_before]->(m)\n" +
                 "WHERE n IN nodes AND m IN nodes\n" +
                 "RETURN p", parameters);
 
@@ -148,6 +165,116 @@ public class GetCausalGraph {
         return nodeStream.map(node -> new NodeHit(node.getNode()));
     }
 
+    /**
+     * Happens-before graph between start and end with every {@link Segments segment} collapsed into a single
+     * relationship from its first to its last event, found by traversing forward from start, jumping over
+     * segments, and keeping the events before end. Each relationship is returned with the number of
+     * happens-before relationships it stands for.
+     */
+    @Procedure(value = "horus.getCompactCausalGraph", mode = Mode.READ)
+    @Description("Get the causal graph between the given events, with segments collapsed.")
+    public Stream<EdgeHit> getCompactCausalGraph(@Name("start") Node start,
+                                                 @Name("end") Node end) {
+        LogicalClock startClock = CausalNodes.getClock(start);
+        LogicalClock endClock = CausalNodes.getClock(end);
+        if (!startClock.equals(endClock) && !startClock.lessThan(endClock))
+            return Stream.empty();
+
+        Set<Long> visited = new HashSet<>();
+        Deque<Node> toVisit = new ArrayDeque<>();
+        List<EdgeHit> hits = new ArrayList<>();
+        toVisit.add(start);
+        visited.add(start.getId());
+
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.poll();
+
+            List<EdgeHit> edges = new ArrayList<>();
+            Relationship segment = node.getId() != end.getId() ? Segments.getSegment(node) : null;
+            if (segment != null && CausalNodes.getClock(segment.getEndNode()).withinCausalPath(startClock, endClock)) {
+                edges.add(new EdgeHit(node, segment.getEndNode(), ((Number) segment.getProperty(Segments.LENGTH)).longValue() - 1));
+            } else {
+                for (Relationship relationship : LogicalTime.getChildRelationships(node)) {
+                    Node child = relationship.getEndNode();
+                    if (CausalNodes.getClock(child).withinCausalPath(startClock, endClock))
+                        edges.add(new EdgeHit(node, child, 1L));
+                }
+            }
+
+            for (EdgeHit edge : edges) {
+                hits.add(edge);
+                if (visited.add(edge.to.getId()))
+                    toVisit.add(edge.to);
+            }
+        }
+
+        return hits.stream();
+    }
+
+    /**
+     * Whether an event has been projected, which events annotated or linked after the projection was made, without
+     * online annotation, may not have been.
+     */
+    private static boolean isProjected(LogProjection projection, Node node) {
+        return projection.includes(node)
+                && LogProjection.getLogVectorClock(node) != null
+                && LogProjection.getLogTimelineSequence(node) != null;
+    }
+
+    /**
+     * Projected LOG events between start and end, found by following {@code LOG_HAPPENS_BEFORE} relationships
+     * from start and keeping the events in the causal past of end according to its log-level clock.
+     * <p>
+     * As without a projection, events are returned with a {@code vectorLogicalTime} counting the LOG events from
+     * start to each of them, propagated over the {@code LOG_HAPPENS_BEFORE} relationships between the events found
+     * in Lamport time order.
+     */
+    private Stream<NodeHit> getProjectedLogGraph(Node start, Node end) {
+        VectorClock endClock = LogProjection.getLogVectorClock(end);
+        if (endClock.getTime((String) start.getProperty(LogicalTime.THREAD_ID)) < LogProjection.getLogTimelineSequence(start))
+            return Stream.empty();
+
+        Map<Long, Node> visited = new HashMap<>();
+        Deque<Node> toVisit = new ArrayDeque<>();
+        toVisit.add(start);
+        visited.put(start.getId(), start);
+
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.poll();
+
+            for (Relationship relationship : node.getRelationships(Direction.OUTGOING, LogProjection.LOG_HAPPENS_BEFORE)) {
+                Node child = relationship.getEndNode();
+                String timelineId = (String) child.getProperty(LogicalTime.THREAD_ID);
+                Long sequence = LogProjection.getLogTimelineSequence(child);
+
+                if (sequence != null && endClock.getTime(timelineId) >= sequence && visited.putIfAbsent(child.getId(), child) == null)
+                    toVisit.add(child);
+            }
+        }
+
+        List<String> virtualNodesProperties = Arrays.asList("eventId", "threadId", "host", "message");
+        List<Node> nodes = new ArrayList<>(visited.values());
+        nodes.sort(Comparator.comparingLong(LogicalTime::getLamportTime));
+
+        Map<Long, VectorClock> clocks = new HashMap<>();
+        List<NodeHit> hits = new ArrayList<>();
+        for (Node node : nodes) {
+            VectorClock vc = new VectorClock((String) node.getProperty(LogicalTime.THREAD_ID));
+            for (Relationship relationship : node.getRelationships(Direction.INCOMING, LogProjection.LOG_HAPPENS_BEFORE)) {
+                VectorClock parentClock = clocks.get(relationship.getStartNodeId());
+                if (parentClock != null)
+                    vc.mergeWithoutIncrement(parentClock);
+            }
+            vc.increment();
+            clocks.put(node.getId(), vc);
+
+            CausalNode causalNode = new CausalNode(new VirtualNode(node, virtualNodesProperties));
+            causalNode.setVectorClock(vc);
+            hits.add(new NodeHit(causalNode.getNode()));
+        }
+
+        return hits.stream();
+    }
 
     /**
      * This is the output record for our search procedure. All procedures
@@ -179,4 +306,20 @@ public class GetCausalGraph {
             this.node = node;
         }
     }
+
+    /**
+     * Output record of horus.getCompactCausalGraph, a relationship standing for the given number of
+     * happens-before relationships.
+     */
+    public static class EdgeHit {
+        public Node from;
+        public Node to;
+        public Long length;
+
+        public EdgeHit(Node from, Node to, Long length) {
+            this.from = from;
+            this.to = to;
+            this.length = length;
+        }
+    }
 }
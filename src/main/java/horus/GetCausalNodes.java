@@ -1,18 +1,14 @@
 package horus;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import horus.causality.CausalNodes;
+import horus.causality.CausalNodesPlan;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
-import org.neo4j.graphdb.Result;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
-import java.io.IOException;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -61,58 +57,30 @@ public class GetCausalNodes {
     @Procedure(value = "horus.getCausalNodes", mode = Mode.READ)
     @Description("Get vector clocks of the given nodes.")
     public Stream<NodeHit> getCausalNodes(@Name("from") Node n1,
-                                             @Name("to") Node n2) {
+                                             @Name("to") Node n2,
+                                             @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
 
-        Map<String, Object> parameters = new HashMap<>();
-        parameters.put("fromLamportTime", getLamportLogicalTime(n1));
-        parameters.put("toLamportTime", getLamportLogicalTime(n2));
-
-        Result startNodes = db.execute("MATCH (n:EVENT)\n" +
-                "WHERE n.lamportLogicalTime >= $fromLamportTime AND n.lamportLogicalTime <= $toLamportTime\n" +
-                "return n", parameters);
-
-        List<Node> nodes = startNodes.stream().map(result -> (Node) result.get("n")).collect(Collectors.toList());
-
-        VectorClock n1Clock = getVectorLogicalTime(n1);
-        VectorClock n2Clock = getVectorLogicalTime(n2);
-
-        return nodes
-                .stream()
-                .filter(node -> getVectorLogicalTime(node).withinCausalPath(n1Clock, n2Clock))
-                .map(NodeHit::new);
+        // The strategy is chosen by cost unless given with {strategy: 'scan' | 'traversal' | 'timelines'},
+        // horus.getCausalNodes.plan reporting the one chosen with the same config.
+        return CausalNodes.between(db, n1, n2, planOf(n1, n2, config)).map(NodeHit::new);
     }
 
-    private VectorClock getVectorLogicalTime(Node node) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        JsonNode time = null;
-        try {
-            time = objectMapper.readTree((String) node.getProperty("vectorLogicalTime"));
-        } catch (IOException e) {
-            throw new RuntimeException("Could not get vectorLogicalTime property.");
-        }
-
-        Map<String, Integer> timeMap = new HashMap<>();
-        time.fields().forEachRemaining(entry -> {
-            if (!entry.getValue().isInt())
-                throw new RuntimeException("Unexpected values in vectorLogicalTime field.");
-
-            timeMap.put(entry.getKey(), entry.getValue().intValue());
-        });
-
-        VectorClock vc = new VectorClock((String) node.getProperty("threadId"), timeMap);
-
-        return vc;
+    /**
+     * Plan {@code horus.getCausalNodes} would use between the given events, with the estimated cost of every
+     * strategy, in events read. Strategies that cannot run have an infinite cost.
+     */
+    @Procedure(value = "horus.getCausalNodes.plan", mode = Mode.READ)
+    @Description("Explain how horus.getCausalNodes would find the events between the given two events.")
+    public Stream<PlanResult> plan(@Name("from") Node n1,
+                                   @Name("to") Node n2,
+                                   @Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        return Stream.of(new PlanResult(planOf(n1, n2, config)));
     }
 
-    private Long getLamportLogicalTime(Node node) {
-        try {
-            return (Long) node.getProperty("lamportLogicalTime");
-        } catch (NullPointerException e) {
-            throw new RuntimeException("Could not get lamportLogicalTime property.");
-        }
+    private CausalNodesPlan planOf(Node n1, Node n2, Map<String, Object> config) {
+        return CausalNodesPlan.of(db, n1, n2, CausalNodesPlan.parseStrategy((String) config.getOrDefault("strategy", "auto")));
     }
 
-
     /**
      * This is the output record for our search procedure. All procedures
      * that return results return them as a Stream of Records, where the
@@ -143,4 +111,24 @@ public class GetCausalNodes {
             this.node = node;
         }
     }
+
+    public static class PlanResult {
+        public String strategy;
+        public Long windowEvents;
+        public Long estimatedEvents;
+        public Long clockWidth;
+        public Double scanCost;
+        public Double traversalCost;
+        public Double timelinesCost;
+
+        public PlanResult(CausalNodesPlan plan) {
+            this.strategy = plan.getStrategy().name().toLowerCase();
+            this.windowEvents = plan.getWindowEvents();
+            this.estimatedEvents = plan.getEstimatedEvents();
+            this.clockWidth = plan.getClockWidth();
+            this.scanCost = plan.getScanCost();
+            this.traversalCost = plan.getTraversalCost();
+            this.timelinesCost = plan.getTimelinesCost();
+        }
+    }
 }
@@ -0,0 +1,59 @@
+package horus;
+
+import horus.causality.CausalSlice;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Events on causal paths between several anchor events at once, see {@link CausalSlice}.
+ */
+public class GetCausalSlice {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Streams the events on a causal path from some source to some sink, or with {@code {mode: 'intersection'}}
+     * from every source to every sink. Events are those {@code horus.getCausalNodes} would return for each pair,
+     * united or intersected, except that unrelated sources and sinks are not returned for their own sake. As with
+     * {@code horus.getCausalGraph}, {@code onlyLogs} and {@code filterHosts} restrict the returned events to the
+     * LOG events of the given hosts.
+     */
+    @Procedure(value = "horus.getCausalSlice", mode = Mode.READ)
+    @Description("Get the events on causal paths between sets of source and sink events.")
+    @SuppressWarnings("unchecked")
+    public Stream<GetCausalNodes.NodeHit> getCausalSlice(@Name("sources") List<Node> sources,
+                                                        @Name("sinks") List<Node> sinks,
+                                                        @Name(value = "options", defaultValue = "{}") Map<String, Object> options) {
+        String mode = (String) options.getOrDefault("mode", "union");
+        if (!mode.equals("union") && !mode.equals("intersection"))
+            throw new IllegalArgumentException("Unknown mode '" + mode + "'.");
+
+        boolean onlyLogs = (Boolean) options.getOrDefault("onlyLogs", false);
+        List<String> filterHosts = (List<String>) options.getOrDefault("filterHosts", Collections.emptyList());
+
+        CausalSlice slice = new CausalSlice(sources, sinks, mode.equals("intersection"));
+        if (log.isDebugEnabled())
+            log.debug("Slicing " + sources.size() + " sources and " + sinks.size() + " sinks between Lamport times " +
+                    slice.getFromLamportTime() + " and " + slice.getToLamportTime());
+
+        return slice.find(db)
+                .filter(node -> !onlyLogs || (node.hasLabel(Label.label("LOG"))
+                        && (filterHosts.isEmpty() || filterHosts.contains((String) node.getProperty("host", null)))))
+                .map(GetCausalNodes.NodeHit::new);
+    }
+}
@@ -0,0 +1,62 @@
+package horus;
+
+import horus.causality.LogicalTime;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Queries events by their hybrid logical time, assigned with {@code horus.annotateLogicalTime({hybrid: true})}.
+ */
+public class GetEventsInTimeWindow {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Events whose hybrid logical time falls within the given kernel times, in nanoseconds, both inclusive
+     * and truncated to microseconds. Events are returned in hybrid logical time order, so every event comes
+     * after the events that happened before it.
+     * <p>
+     * The hybrid logical time of an event is never behind the time of the events that happened before it,
+     * so an event whose kernel clock lags behind its causes falls in the window of its causes. With
+     * {@code horus.createLogicalTimeIndexes()}, the window is answered by an index seek.
+     */
+    @Procedure(value = "horus.getEventsInTimeWindow", mode = Mode.READ)
+    @Description("Get the events within the given kernel time window, ordered by hybrid logical time.")
+    public Stream<EventHit> getEventsInTimeWindow(@Name("from") long fromKernelTime,
+                                                  @Name("to") long toKernelTime) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("fromHybridTime", LogicalTime.toHybridTime(fromKernelTime));
+        parameters.put("toHybridTime", LogicalTime.toHybridTime(toKernelTime + 1000));
+
+        return db.execute("MATCH (n:EVENT)\n" +
+                "WHERE n.hybridLogicalTime >= $fromHybridTime AND n.hybridLogicalTime < $toHybridTime\n" +
+                "RETURN n ORDER BY n.hybridLogicalTime", parameters)
+                .stream()
+                .map(result -> new EventHit((Node) result.get("n")));
+    }
+
+    public static class EventHit {
+        public Node node;
+        public Long hybridLogicalTime;
+        public Long kernelTime;
+
+        public EventHit(Node node) {
+            this.node = node;
+            this.hybridLogicalTime = LogicalTime.getHybridTime(node);
+            this.kernelTime = LogicalTime.toKernelTime(this.hybridLogicalTime);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package horus;
+
+import horus.causality.CausalGraphProjection;
+import horus.causality.GraphProjections;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Procedures to load {@link CausalGraphProjection graph projections} of the annotated happens-before graph, and
+ * to query them without reading clocks from the store. A projection is a snapshot: it must be loaded again to
+ * see events annotated afterwards.
+ */
+public class Graphs {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    @Procedure(value = "horus.graph.load", mode = Mode.READ)
+    @Description("Load an in-memory projection of the annotated happens-before graph, replacing any of the same name.")
+    public Stream<ProjectionInfo> load(@Name("name") String name) {
+        long start = System.currentTimeMillis();
+        CausalGraphProjection projection = GraphProjections.getInstance().load(name, db);
+
+        if (log.isDebugEnabled())
+            log.debug("Loaded graph projection '" + name + "' of " + projection.getEventCount() + " events in " + (System.currentTimeMillis() - start) + " ms.");
+
+        return Stream.of(new ProjectionInfo(projection));
+    }
+
+    @Procedure(value = "horus.graph.drop", mode = Mode.READ)
+    @Description("Release the in-memory projection with the given name.")
+    public Stream<ProjectionInfo> drop(@Name("name") String name) {
+        return Stream.of(new ProjectionInfo(GraphProjections.getInstance().drop(name)));
+    }
+
+    @Procedure(value = "horus.graph.list", mode = Mode.READ)
+    @Description("List the in-memory projections loaded in this instance.")
+    public Stream<ProjectionInfo> list() {
+        return GraphProjections.getInstance().getProjections().stream().map(ProjectionInfo::new);
+    }
+
+    /**
+     * Same as {@code horus.happensBefore}, comparing the clocks held by the projection.
+     */
+    @Procedure(value = "horus.graph.happensBefore", mode = Mode.READ)
+    @Description("Check whether the happens before relation holds for the given two events, using a projection.")
+    public Stream<HappensBefore.HappensBeforeResult> happensBefore(@Name("graph") String name,
+                                                                   @Name("from") Node from,
+                                                                   @Name("to") Node to) {
+        CausalGraphProjection projection = GraphProjections.getInstance().getProjection(name);
+
+        return Stream.of(new HappensBefore.HappensBeforeResult(
+                projection.happensBefore(projection.getIndex(from), projection.getIndex(to))));
+    }
+
+    /**
+     * Same as {@code horus.getCausalNodes}, searching the projection's Lamport time index.
+     */
+    @Procedure(value = "horus.graph.getCausalNodes", mode = Mode.READ)
+    @Description("Get the events on some causal path between the given two events, using a projection.")
+    public Stream<GetCausalNodes.NodeHit> getCausalNodes(@Name("graph") String name,
+                                                        @Name("from") Node from,
+                                                        @Name("to") Node to) {
+        CausalGraphProjection projection = GraphProjections.getInstance().getProjection(name);
+
+        return projection.between(projection.getIndex(from), projection.getIndex(to))
+                .mapToObj(index -> new GetCausalNodes.NodeHit(db.getNodeById(projection.getNodeId(index))));
+    }
+
+    /**
+     * Events of {@code horus.getCausalGraph} between start and end, optionally only the LOG events of the given
+     * hosts, using a projection. Events are returned as stored, rather than as virtual nodes with clocks
+     * recomputed for the subgraph, which can be compared with {@code horus.graph.happensBefore} instead.
+     * <p>
+     * With {@code filterLabels}, only events with any of the given labels are returned, e.g. {@code ['SND', 'RCV']}
+     * for the communication between start and end.
+     */
+    @Procedure(value = "horus.graph.getCausalGraph", mode = Mode.READ)
+    @Description("Get the events between the given two events, optionally only LOG events or events with some labels, using a projection.")
+    public Stream<GetCausalGraph.NodeHit> getCausalGraph(@Name("graph") String name,
+                                                        @Name("start") Node start,
+                                                        @Name("end") Node end,
+                                                        @Name(value = "onlyLogs", defaultValue = "false") Boolean onlyLogs,
+                                                        @Name(value = "filterHosts", defaultValue = "[]") List<String> filterHosts,
+                                                        @Name(value = "filterLabels", defaultValue = "[]") List<String> filterLabels) {
+        CausalGraphProjection projection = GraphProjections.getInstance().getProjection(name);
+        IntPredicate isLog = projection.hasAnyLabel(Collections.singletonList("LOG"));
+        IntPredicate hasLabel = projection.hasAnyLabel(filterLabels);
+
+        return projection.between(projection.getIndex(start), projection.getIndex(end))
+                .filter(index -> !onlyLogs || (isLog.test(index)
+                        && (filterHosts.isEmpty() || filterHosts.contains(projection.getHost(index)))))
+                .filter(index -> filterLabels.isEmpty() || hasLabel.test(index))
+                .mapToObj(index -> new GetCausalGraph.NodeHit(db.getNodeById(projection.getNodeId(index))));
+    }
+
+    /**
+     * Size of a projection. {@code sizeInBytes} is a rough estimate of the memory held by it.
+     */
+    public static class ProjectionInfo {
+        public String name;
+        public Long events;
+        public Long relationships;
+        public Long timelines;
+        public Long sizeInBytes;
+        public Long loadedAt;
+
+        public ProjectionInfo(CausalGraphProjection projection) {
+            this.name = projection.getName();
+            this.events = (long) projection.getEventCount();
+            this.relationships = (long) projection.getRelationshipCount();
+            this.timelines = (long) projection.getTimelineCount();
+            this.sizeInBytes = projection.getSizeInBytes();
+            this.loadedAt = projection.getLoadedAt();
+        }
+    }
+}
@@ -1,14 +1,13 @@
 package horus;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import horus.causality.ClockStore;
+import horus.causality.LogicalTime;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.*;
 
-import java.io.IOException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -63,8 +62,13 @@ public class HappensBefore {
     public Stream<HappensBeforeResult> happensBefore(@Name("from") Node n1,
                                              @Name("to") Node n2) {
 
-        VectorClock n1Clock = getVectorLogicalTime(n1);
-        VectorClock n2Clock = getVectorLogicalTime(n2);
+        // Clocks in the clock store are compared in place, without decoding them.
+        ClockStore store = ClockStore.find(db);
+        if (store != null && store.holds(n1) && store.holds(n2))
+            return Stream.of(new HappensBeforeResult(store.lessThan(n1.getId(), n2.getId())));
+
+        LogicalClock n1Clock = getLogicalTime(n1);
+        LogicalClock n2Clock = getLogicalTime(n2);
 
         Stream.Builder<Boolean> builder = Stream.builder();
         builder.add(n1Clock.lessThan(n2Clock));
@@ -72,26 +76,35 @@ public class HappensBefore {
         return builder.build().map(HappensBeforeResult::new);
     }
 
-    private VectorClock getVectorLogicalTime(Node node) {
-        ObjectMapper objectMapper = new ObjectMapper();
-        JsonNode time = null;
-        try {
-            time = objectMapper.readTree((String) node.getProperty("vectorLogicalTime"));
-        } catch (IOException e) {
-            throw new RuntimeException("Could not get vectorLogicalTime property.");
-        }
-
-        Map<String, Integer> timeMap = new HashMap<>();
-        time.fields().forEachRemaining(entry -> {
-            if (!entry.getValue().isInt())
-                throw new RuntimeException("Unexpected values in vectorLogicalTime field.");
-
-            timeMap.put(entry.getKey(), entry.getValue().intValue());
-        });
+    /**
+     * Approximate happens-before check using Bloom clocks, annotated with {@code {clock: 'bloom'}} or
+     * {@code {bloom: true}}. A false result is exact, while a true result may be a false positive with the
+     * returned probability, so that exact checks are only needed for those.
+     */
+    @Procedure(value = "horus.happensBeforeApprox", mode = Mode.READ)
+    @Description("Check whether the happens before relation may hold for the given two events, using Bloom clocks.")
+    public Stream<ApproximateHappensBeforeResult> happensBeforeApprox(@Name("from") Node n1,
+                                                                      @Name("to") Node n2) {
+        Long n1Lamport = LogicalTime.getLamportTime(n1);
+        Long n2Lamport = LogicalTime.getLamportTime(n2);
+        BloomClock n1Clock = LogicalTime.getBloomClock(n1);
+        BloomClock n2Clock = LogicalTime.getBloomClock(n2);
+
+        if (n1Clock == null || n2Clock == null)
+            throw new RuntimeException("Could not get bloomLogicalTime property.");
+
+        if ((n1Lamport != null && n2Lamport != null && n1Lamport >= n2Lamport) || !n1Clock.mayHappenBefore(n2Clock))
+            return Stream.of(new ApproximateHappensBeforeResult(false, 0.0));
+
+        return Stream.of(new ApproximateHappensBeforeResult(true, n1Clock.falsePositiveProbability(n2Clock)));
+    }
 
-        VectorClock vc = new VectorClock((String) node.getProperty("threadId"), timeMap);
+    private LogicalClock getLogicalTime(Node node) {
+        LogicalClock clock = LogicalTime.getClock(node);
+        if (clock == null)
+            throw new RuntimeException("Could not get vectorLogicalTime or itcLogicalTime property.");
 
-        return vc;
+        return clock;
     }
 
 
@@ -125,4 +138,14 @@ public class HappensBefore {
             this.result = result;
         }
     }
+
+    public static class ApproximateHappensBeforeResult {
+        public Boolean result;
+        public Double falsePositiveProbability;
+
+        public ApproximateHappensBeforeResult(Boolean result, Double falsePositiveProbability) {
+            this.result = result;
+            this.falsePositiveProbability = falsePositiveProbability;
+        }
+    }
 }
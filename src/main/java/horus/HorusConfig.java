@@ -0,0 +1,57 @@
+package horus;
+
+import org.neo4j.kernel.configuration.Config;
+
+import java.io.File;
+
+/**
+ * Values of the {@link HorusSettings} of the running database, read once from its configuration by the
+ * {@link HorusConfigExtensionFactory} when the database starts, since procedures only get a sandboxed
+ * {@link org.neo4j.graphdb.GraphDatabaseService}. Until then, and after it stops, every setting has its default.
+ */
+public class HorusConfig {
+    private static final HorusConfig DEFAULTS = new HorusConfig(false, null, 0);
+
+    private static volatile HorusConfig current = DEFAULTS;
+
+    private final boolean exportEnabled;
+    private final File exportDirectory;
+    private final long memoryBudget;
+
+    private HorusConfig(boolean exportEnabled, File exportDirectory, long memoryBudget) {
+        this.exportEnabled = exportEnabled;
+        this.exportDirectory = exportDirectory;
+        this.memoryBudget = memoryBudget;
+    }
+
+    static HorusConfig read(Config config) {
+        return new HorusConfig(config.get(HorusSettings.export_enabled), config.get(HorusSettings.export_directory),
+                config.get(HorusSettings.memory_budget));
+    }
+
+    public static HorusConfig get() {
+        return current;
+    }
+
+    static void set(HorusConfig config) {
+        current = config != null ? config : DEFAULTS;
+    }
+
+    public boolean isExportEnabled() {
+        return this.exportEnabled;
+    }
+
+    /**
+     * Directory trace files are exported to, or null before the database starts.
+     */
+    public File getExportDirectory() {
+        return this.exportDirectory;
+    }
+
+    /**
+     * Heap budget of annotation and causal graph extraction, in bytes, or zero when there is none.
+     */
+    public long getMemoryBudget() {
+        return this.memoryBudget;
+    }
+}
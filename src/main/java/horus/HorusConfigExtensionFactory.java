@@ -0,0 +1,37 @@
+package horus;
+
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.spi.KernelContext;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+/**
+ * Reads the {@link HorusSettings} into {@link HorusConfig} when the database starts.
+ */
+public class HorusConfigExtensionFactory extends KernelExtensionFactory<HorusConfigExtensionFactory.Dependencies> {
+
+    public interface Dependencies {
+        Config config();
+    }
+
+    public HorusConfigExtensionFactory() {
+        super(ExtensionType.DATABASE, "horus-config");
+    }
+
+    @Override
+    public Lifecycle newInstance(KernelContext context, Dependencies dependencies) {
+        return new LifecycleAdapter() {
+            @Override
+            public void start() {
+                HorusConfig.set(HorusConfig.read(dependencies.config()));
+            }
+
+            @Override
+            public void stop() {
+                HorusConfig.set(null);
+            }
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package horus;
+
+import org.neo4j.configuration.Description;
+import org.neo4j.configuration.LoadableConfig;
+import org.neo4j.graphdb.config.Setting;
+
+import java.io.File;
+
+import static org.neo4j.kernel.configuration.Settings.BOOLEAN;
+import static org.neo4j.kernel.configuration.Settings.BYTES;
+import static org.neo4j.kernel.configuration.Settings.FALSE;
+import static org.neo4j.kernel.configuration.Settings.INTEGER;
+import static org.neo4j.kernel.configuration.Settings.pathSetting;
+import static org.neo4j.kernel.configuration.Settings.setting;
+
+/**
+ * Settings read from neo4j.conf by the Horus kernel extensions, see {@link HorusConfig}.
+ */
+// Setting is deprecated in favour of an internal API, but is how 3.5 plugins declare their settings.
+@SuppressWarnings("deprecation")
+public class HorusSettings implements LoadableConfig {
+
+    @Description("Annotate logical time of new events as they are committed, instead of waiting for horus.annotateLogicalTime.")
+    public static final Setting<Boolean> online_annotation_enabled =
+            setting("horus.online_annotation.enabled", BOOLEAN, FALSE);
+
+    @Description("Maximum number of events annotated in a single follow-up transaction by the online annotation.")
+    public static final Setting<Integer> online_annotation_batch_size =
+            setting("horus.online_annotation.batch_size", INTEGER, "10000");
+
+    @Description("Allow horus.export to write trace files to the server's file system.")
+    public static final Setting<Boolean> export_enabled =
+            setting("horus.export.enabled", BOOLEAN, FALSE);
+
+    @Description("Directory horus.export writes trace files to, paths given to it being resolved against it.")
+    public static final Setting<File> export_directory =
+            pathSetting("horus.export.directory", "exports");
+
+    @Description("Heap budget of annotation and causal graph extraction, which are refused when estimated to exceed it, or 0 for no budget.")
+    public static final Setting<Long> memory_budget =
+            setting("horus.memory_budget", BYTES, "0");
+}
@@ -0,0 +1,413 @@
+package horus;
+
+import java.util.Objects;
+
+/**
+ * Interval tree clock (Almeida, Baquero and Fonte, 2008).
+ * <p>
+ * Each live timeline owns a disjoint share of the [0, 1) interval, its {@link Id}, and increments the event
+ * tree only over the share it owns. Shares are split when a timeline forks another, and summed back when
+ * timelines join, so the size of the clocks follows the number of concurrent timelines instead of the total
+ * number of timelines ever seen. Only the event tree is needed to compare clocks, so instances of this class
+ * hold just that.
+ */
+public class IntervalTreeClock implements LogicalClock {
+    private static final int GROW_COST = 1000;
+
+    public static final IntervalTreeClock ZERO = new IntervalTreeClock(Event.leaf(0));
+
+    private final Event event;
+
+    private IntervalTreeClock(Event event) {
+        this.event = event;
+    }
+
+    public static IntervalTreeClock parse(String clock) {
+        Parser parser = new Parser(clock);
+        Event event = parser.parseEvent();
+        parser.expectEnd();
+
+        return new IntervalTreeClock(event);
+    }
+
+    /**
+     * Clock holding the causal past of both clocks.
+     */
+    public IntervalTreeClock join(IntervalTreeClock clock) {
+        return new IntervalTreeClock(Event.join(this.event, clock.event));
+    }
+
+    /**
+     * Clock of a new event, inflating this clock over the given id.
+     */
+    public IntervalTreeClock event(Id id) {
+        if (id.isZero())
+            throw new IllegalArgumentException("Cannot register an event with an empty id.");
+
+        Event filled = Event.fill(id, this.event);
+        if (!filled.equals(this.event))
+            return new IntervalTreeClock(filled);
+
+        return new IntervalTreeClock(Event.grow(id, this.event).event);
+    }
+
+    public boolean lessThanOrEqual(IntervalTreeClock clock) {
+        return Event.leq(this.event, clock.event);
+    }
+
+    @Override
+    public boolean lessThan(LogicalClock clock) {
+        IntervalTreeClock other = LogicalClock.asSameClock(clock, IntervalTreeClock.class);
+
+        return this.lessThanOrEqual(other) && !other.lessThanOrEqual(this);
+    }
+
+    @Override
+    public boolean equals(LogicalClock clock) {
+        IntervalTreeClock other = LogicalClock.asSameClock(clock, IntervalTreeClock.class);
+
+        return this.lessThanOrEqual(other) && other.lessThanOrEqual(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return this.event.equals(((IntervalTreeClock) o).event);
+    }
+
+    @Override
+    public int hashCode() {
+        return this.event.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return this.event.toString();
+    }
+
+    /**
+     * Share of the [0, 1) interval owned by a timeline: either empty (0), whole (1), or split in two halves.
+     */
+    public static final class Id {
+        public static final Id ZERO = new Id(0, null, null);
+        public static final Id ONE = new Id(1, null, null);
+
+        private final int value;
+        private final Id left;
+        private final Id right;
+
+        private Id(int value, Id left, Id right) {
+            this.value = value;
+            this.left = left;
+            this.right = right;
+        }
+
+        public static Id of(Id left, Id right) {
+            if (left.isZero() && right.isZero())
+                return ZERO;
+
+            if (left.isOne() && right.isOne())
+                return ONE;
+
+            return new Id(0, left, right);
+        }
+
+        public boolean isLeaf() {
+            return this.left == null;
+        }
+
+        public boolean isZero() {
+            return this.isLeaf() && this.value == 0;
+        }
+
+        public boolean isOne() {
+            return this.isLeaf() && this.value == 1;
+        }
+
+        /**
+         * Splits this id in two disjoint ids, which summed give back this id.
+         */
+        public Id[] split() {
+            if (this.isZero())
+                return new Id[]{ZERO, ZERO};
+
+            if (this.isOne())
+                return new Id[]{of(ONE, ZERO), of(ZERO, ONE)};
+
+            if (this.left.isZero()) {
+                Id[] halves = this.right.split();
+                return new Id[]{of(ZERO, halves[0]), of(ZERO, halves[1])};
+            }
+
+            if (this.right.isZero()) {
+                Id[] halves = this.left.split();
+                return new Id[]{of(halves[0], ZERO), of(halves[1], ZERO)};
+            }
+
+            return new Id[]{of(this.left, ZERO), of(ZERO, this.right)};
+        }
+
+        /**
+         * Sums two disjoint ids.
+         */
+        public Id sum(Id id) {
+            if (this.isZero())
+                return id;
+
+            if (id.isZero())
+                return this;
+
+            if (this.isLeaf() || id.isLeaf())
+                throw new IllegalArgumentException("Cannot sum overlapping ids " + this + " and " + id + ".");
+
+            return of(this.left.sum(id.left), this.right.sum(id.right));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Id that = (Id) o;
+
+            return this.value == that.value && Objects.equals(this.left, that.left) && Objects.equals(this.right, that.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.value, this.left, this.right);
+        }
+
+        @Override
+        public String toString() {
+            return this.isLeaf() ? String.valueOf(this.value) : "(" + this.left + "," + this.right + ")";
+        }
+    }
+
+    /**
+     * Event tree: a base value plus, optionally, the values of each half of the interval relative to it.
+     */
+    private static final class Event {
+        private final int n;
+        private final Event left;
+        private final Event right;
+
+        private Event(int n, Event left, Event right) {
+            this.n = n;
+            this.left = left;
+            this.right = right;
+        }
+
+        static Event leaf(int n) {
+            return new Event(n, null, null);
+        }
+
+        static Event node(int n, Event left, Event right) {
+            return normalize(new Event(n, left, right));
+        }
+
+        boolean isLeaf() {
+            return this.left == null;
+        }
+
+        Event lift(int m) {
+            return new Event(this.n + m, this.left, this.right);
+        }
+
+        Event sink(int m) {
+            return new Event(this.n - m, this.left, this.right);
+        }
+
+        static int min(Event e) {
+            return e.isLeaf() ? e.n : e.n + Math.min(min(e.left), min(e.right));
+        }
+
+        static int max(Event e) {
+            return e.isLeaf() ? e.n : e.n + Math.max(max(e.left), max(e.right));
+        }
+
+        static Event normalize(Event e) {
+            if (e.isLeaf())
+                return e;
+
+            if (e.left.isLeaf() && e.right.isLeaf() && e.left.n == e.right.n)
+                return leaf(e.n + e.left.n);
+
+            int m = Math.min(min(e.left), min(e.right));
+
+            return new Event(e.n + m, e.left.sink(m), e.right.sink(m));
+        }
+
+        static Event join(Event e1, Event e2) {
+            if (e1.isLeaf() && e2.isLeaf())
+                return leaf(Math.max(e1.n, e2.n));
+
+            if (e1.isLeaf())
+                return join(new Event(e1.n, leaf(0), leaf(0)), e2);
+
+            if (e2.isLeaf())
+                return join(e1, new Event(e2.n, leaf(0), leaf(0)));
+
+            if (e1.n > e2.n)
+                return join(e2, e1);
+
+            int d = e2.n - e1.n;
+
+            return node(e1.n, join(e1.left, e2.left.lift(d)), join(e1.right, e2.right.lift(d)));
+        }
+
+        static boolean leq(Event e1, Event e2) {
+            if (e1.isLeaf())
+                return e1.n <= e2.n;
+
+            if (e2.isLeaf())
+                return e1.n <= e2.n && leq(e1.left.lift(e1.n), e2) && leq(e1.right.lift(e1.n), e2);
+
+            return e1.n <= e2.n
+                    && leq(e1.left.lift(e1.n), e2.left.lift(e2.n))
+                    && leq(e1.right.lift(e1.n), e2.right.lift(e2.n));
+        }
+
+        static Event fill(Id id, Event e) {
+            if (id.isZero())
+                return e;
+
+            if (id.isOne())
+                return leaf(max(e));
+
+            if (e.isLeaf())
+                return e;
+
+            if (id.left.isOne()) {
+                Event right = fill(id.right, e.right);
+                return node(e.n, leaf(Math.max(max(e.left), min(right))), right);
+            }
+
+            if (id.right.isOne()) {
+                Event left = fill(id.left, e.left);
+                return node(e.n, left, leaf(Math.max(max(e.right), min(left))));
+            }
+
+            return node(e.n, fill(id.left, e.left), fill(id.right, e.right));
+        }
+
+        static Grown grow(Id id, Event e) {
+            if (e.isLeaf()) {
+                if (id.isOne())
+                    return new Grown(leaf(e.n + 1), 0);
+
+                Grown grown = grow(id, new Event(e.n, leaf(0), leaf(0)));
+                return new Grown(grown.event, grown.cost + GROW_COST);
+            }
+
+            if (id.isLeaf())
+                throw new IllegalStateException("Cannot grow event " + e + " over id " + id + ".");
+
+            if (id.left.isZero()) {
+                Grown right = grow(id.right, e.right);
+                return new Grown(new Event(e.n, e.left, right.event), right.cost + 1);
+            }
+
+            if (id.right.isZero()) {
+                Grown left = grow(id.left, e.left);
+                return new Grown(new Event(e.n, left.event, e.right), left.cost + 1);
+            }
+
+            Grown left = grow(id.left, e.left);
+            Grown right = grow(id.right, e.right);
+
+            if (left.cost < right.cost)
+                return new Grown(new Event(e.n, left.event, e.right), left.cost + 1);
+
+            return new Grown(new Event(e.n, e.left, right.event), right.cost + 1);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Event that = (Event) o;
+
+            return this.n == that.n && Objects.equals(this.left, that.left) && Objects.equals(this.right, that.right);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.n, this.left, this.right);
+        }
+
+        @Override
+        public String toString() {
+            return this.isLeaf() ? String.valueOf(this.n) : "(" + this.n + "," + this.left + "," + this.right + ")";
+        }
+    }
+
+    private static final class Grown {
+        private final Event event;
+        private final int cost;
+
+        Grown(Event event, int cost) {
+            this.event = event;
+            this.cost = cost;
+        }
+    }
+
+    private static final class Parser {
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Event parseEvent() {
+            if (this.peek() != '(')
+                return Event.leaf(this.parseInt());
+
+            this.expect('(');
+            int n = this.parseInt();
+            this.expect(',');
+            Event left = this.parseEvent();
+            this.expect(',');
+            Event right = this.parseEvent();
+            this.expect(')');
+
+            return new Event(n, left, right);
+        }
+
+        void expectEnd() {
+            if (this.position != this.text.length())
+                throw this.error();
+        }
+
+        private int parseInt() {
+            int start = this.position;
+            while (this.position < this.text.length() && Character.isDigit(this.text.charAt(this.position)))
+                this.position++;
+
+            if (start == this.position)
+                throw this.error();
+
+            return Integer.parseInt(this.text.substring(start, this.position));
+        }
+
+        private char peek() {
+            if (this.position >= this.text.length())
+                throw this.error();
+
+            return this.text.charAt(this.position);
+        }
+
+        private void expect(char c) {
+            if (this.peek() != c)
+                throw this.error();
+
+            this.position++;
+        }
+
+        private RuntimeException error() {
+            return new RuntimeException("Unexpected value in itcLogicalTime field: " + this.text);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package horus;
+
+import horus.jobs.Job;
+import horus.jobs.JobRegistry;
+import org.neo4j.procedure.*;
+
+import java.util.stream.Stream;
+
+/**
+ * Procedures to follow and cancel the background jobs submitted in this instance.
+ */
+public class Jobs {
+
+    @Procedure(value = "horus.jobs", mode = Mode.READ)
+    @Description("List the background jobs, with their progress.")
+    public Stream<JobInfo> jobs() {
+        return JobRegistry.getInstance().getJobs().stream().map(JobInfo::new);
+    }
+
+    @Procedure(value = "horus.jobs.cancel", mode = Mode.READ)
+    @Description("Cancel the background job with the given id.")
+    public Stream<JobInfo> cancel(@Name("id") Long id) {
+        Job job = JobRegistry.getInstance().getJob(id);
+        job.cancel();
+
+        return Stream.of(new JobInfo(job));
+    }
+
+    /**
+     * Progress of a job. {@code rate} is given in nodes per second, {@code eta} in seconds and
+     * {@code heapUsed} in bytes.
+     */
+    public static class JobInfo {
+        public Long id;
+        public String type;
+        public String status;
+        public Long nodesProcessed;
+        public Long totalNodes;
+        public Double rate;
+        public Double eta;
+        public Long heapUsed;
+        public String error;
+
+        public JobInfo(Job job) {
+            Runtime runtime = Runtime.getRuntime();
+
+            this.id = job.getId();
+            this.type = job.getType();
+            this.status = job.getStatus().name();
+            this.nodesProcessed = job.getProcessed();
+            this.totalNodes = job.getTotal();
+            this.rate = job.getRate();
+            this.eta = job.getEta();
+            this.heapUsed = runtime.totalMemory() - runtime.freeMemory();
+            this.error = job.getError();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package horus;
+
+/**
+ * A logical clock capturing the causal past of an event, able to tell whether an event happened before another.
+ */
+public interface LogicalClock {
+
+    boolean lessThan(LogicalClock clock);
+
+    boolean equals(LogicalClock clock);
+
+    default boolean withinCausalPath(LogicalClock from, LogicalClock to) {
+        if (this.equals(from) || this.equals(to))
+            return true;
+
+        return from.lessThan(this) && this.lessThan(to);
+    }
+
+    /**
+     * The given clock as one of the given type, failing when the events compared were annotated with different
+     * clocks, e.g. after re-annotating part of the graph with another {@code clock} option.
+     */
+    static <T extends LogicalClock> T asSameClock(LogicalClock clock, Class<T> type) {
+        if (!type.isInstance(clock))
+            throw new RuntimeException("Cannot compare events annotated with different clocks: " + type.getSimpleName() +
+                    " and " + (clock == null ? "none" : clock.getClass().getSimpleName()) + ".");
+
+        return type.cast(clock);
+    }
+}
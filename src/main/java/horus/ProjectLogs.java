@@ -0,0 +1,76 @@
+package horus;
+
+import horus.causality.LogProjection;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Materializes the log-level view of the happens-before graph, see {@link LogProjection}.
+ */
+public class ProjectLogs {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    // This allows the procedure to stop when its transaction is terminated
+    @Context
+    public TerminationGuard guard;
+
+    /**
+     * Replaces the log projection by one of the LOG events of the given {@code hosts}, or of every host, writing
+     * log-level clocks and {@code LOG_HAPPENS_BEFORE} relationships. Events are projected in Lamport time order,
+     * which is topological, so they must have been annotated with {@code horus.annotateLogicalTime} first.
+     * <p>
+     * When online annotation is enabled, events committed afterwards are projected as they are annotated.
+     */
+    @Procedure(value = "horus.projectLogs", mode = Mode.WRITE)
+    @Description("Materialize log-level clocks and LOG_HAPPENS_BEFORE relationships between LOG events.")
+    @SuppressWarnings("unchecked")
+    public Stream<ProjectionResult> projectLogs(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        List<String> hosts = (List<String>) config.getOrDefault("hosts", Collections.emptyList());
+        LogProjection projection = LogProjection.create(db, hosts);
+
+        long logEvents = projection.projectAll(guard::check);
+
+        long relationships = db.execute("MATCH ()-[r:LOG_HAPPENS_BEFORE]->() RETURN count(r) AS relationships")
+                .<Long>columnAs("relationships").next();
+
+        if (log.isDebugEnabled())
+            log.debug("Projected " + logEvents + " log events, linked by " + relationships + " relationships.");
+
+        return Stream.of(new ProjectionResult(logEvents, relationships, hosts));
+    }
+
+    /**
+     * Removes the log projection, so that events are no longer projected as they are annotated.
+     */
+    @Procedure(value = "horus.dropLogProjection", mode = Mode.WRITE)
+    @Description("Remove the log-level clocks and LOG_HAPPENS_BEFORE relationships.")
+    public Stream<ProjectionResult> dropLogProjection() {
+        return Stream.of(new ProjectionResult(0L, LogProjection.drop(db), Collections.emptyList()));
+    }
+
+    public static class ProjectionResult {
+        public Long logEvents;
+        public Long relationships;
+        public List<String> hosts;
+
+        public ProjectionResult(Long logEvents, Long relationships, List<String> hosts) {
+            this.logEvents = logEvents;
+            this.relationships = relationships;
+            this.hosts = hosts;
+        }
+    }
+}
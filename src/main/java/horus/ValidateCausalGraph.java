@@ -0,0 +1,73 @@
+package horus;
+
+import horus.causality.CausalGraphValidation;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.logging.Log;
+import org.neo4j.procedure.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Checks an imported happens-before graph before spending time annotating it.
+ */
+public class ValidateCausalGraph {
+    // This field declares that we need a GraphDatabaseService
+    // as context when any procedure in this class is invoked
+    @Context
+    public GraphDatabaseService db;
+
+    // This gives us a log instance that outputs messages to the
+    // standard log, normally found under `data/log/console.log`
+    @Context
+    public Log log;
+
+    /**
+     * Reports cycles, events after them, RCV events without a SND parent, events without {@code threadId} and
+     * non-event nodes linked by happens-before relationships, with up to {@code sampleSize} examples of each,
+     * along with an estimate of the annotation size. See {@link CausalGraphValidation}.
+     */
+    @Procedure(value = "horus.validateCausalGraph", mode = Mode.READ)
+    @Description("Check that the happens-before graph is acyclic and well formed before annotating it.")
+    public Stream<ValidationResult> validateCausalGraph(@Name(value = "config", defaultValue = "{}") Map<String, Object> config) {
+        int sampleSize = ((Number) config.getOrDefault("sampleSize", 10)).intValue();
+
+        return Stream.of(new ValidationResult(CausalGraphValidation.run(db, sampleSize)));
+    }
+
+    public static class ValidationResult {
+        public Boolean valid;
+        public Long events;
+        public Long relationships;
+        public Long timelines;
+        public Long estimatedClockEntries;
+        public Long cycles;
+        public List<List<Node>> cycleSamples;
+        public Long blockedEvents;
+        public Long orphanedReceives;
+        public List<Node> orphanedReceiveSamples;
+        public Long missingThreadIds;
+        public List<Node> missingThreadIdSamples;
+        public Long danglingNodes;
+        public List<Node> danglingNodeSamples;
+
+        public ValidationResult(CausalGraphValidation validation) {
+            this.valid = validation.isValid();
+            this.events = validation.getEvents();
+            this.relationships = validation.getRelationships();
+            this.timelines = validation.getTimelines();
+            this.estimatedClockEntries = validation.getEstimatedClockEntries();
+            this.cycles = validation.getCycles();
+            this.cycleSamples = validation.getCycleSamples();
+            this.blockedEvents = validation.getBlockedEvents();
+            this.orphanedReceives = validation.getOrphanedReceives();
+            this.orphanedReceiveSamples = validation.getOrphanedReceiveSamples();
+            this.missingThreadIds = validation.getMissingThreadIds();
+            this.missingThreadIdSamples = validation.getMissingThreadIdSamples();
+            this.danglingNodes = validation.getDanglingNodes();
+            this.danglingNodeSamples = validation.getDanglingNodeSamples();
+        }
+    }
+}
@@ -7,7 +7,7 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-public class VectorClock {
+public class VectorClock implements LogicalClock {
 
     private String processId;
     private HashMap<String, MutableInt> logicalTime;
@@ -56,11 +56,9 @@ public class VectorClock {
         return foundLess;
     }
 
-    public boolean withinCausalPath(VectorClock from, VectorClock to) {
-        if (this.equals(from) || this.equals(to))
-            return true;
-
-        return from.lessThan(this) && this.lessThan(to);
+    @Override
+    public boolean lessThan(LogicalClock clock) {
+        return this.lessThan(LogicalClock.asSameClock(clock, VectorClock.class));
     }
 
     public VectorClock merge(VectorClock vc) {
@@ -96,6 +94,10 @@ public class VectorClock {
         return true;
     }
 
+    @Override
+    public boolean equals(LogicalClock clock) {
+        return this.equals(LogicalClock.asSameClock(clock, VectorClock.class));
+    }
 
     private void doMerge(VectorClock vc) {
         int currentClock;
@@ -0,0 +1,22 @@
+package horus.causality;
+
+/**
+ * Follows the progress of an annotation, and tells it when to stop.
+ */
+public interface AnnotationListener {
+    AnnotationListener NONE = new AnnotationListener() {
+    };
+
+    /**
+     * Called after each event is annotated, possibly from several threads at once.
+     */
+    default void annotated() throws InterruptedException {
+    }
+
+    /**
+     * Polled by the thread coordinating the annotation; returning true, or throwing, stops it.
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,146 @@
+package horus.causality;
+
+import java.util.Map;
+
+/**
+ * Options accepted by the logical time annotation procedures.
+ */
+public class AnnotationOptions {
+    public enum Clock {
+        VECTOR, LAMPORT, CHAIN, ITC, BLOOM
+    }
+
+    private final Clock clock;
+    private final int batchSize;
+    private final double maxThroughput;
+    private final boolean parallel;
+    private final int concurrency;
+    private final int wavefrontThreshold;
+    private final boolean bloom;
+    private final int bloomSize;
+    private final int bloomHashes;
+    private final boolean hybrid;
+    private final boolean validate;
+    private final boolean clockStore;
+
+    public AnnotationOptions(Map<String, Object> config) {
+        this.clock = parseClock((String) config.getOrDefault("clock", "vector"));
+        this.batchSize = ((Number) config.getOrDefault("batchSize", 10000)).intValue();
+        this.maxThroughput = ((Number) config.getOrDefault("maxThroughput", 0)).doubleValue();
+        this.parallel = (Boolean) config.getOrDefault("parallel", false);
+        this.concurrency = ((Number) config.getOrDefault("concurrency", Runtime.getRuntime().availableProcessors())).intValue();
+        this.wavefrontThreshold = ((Number) config.getOrDefault("wavefrontThreshold", 10000)).intValue();
+        this.bloom = this.clock == Clock.BLOOM || (Boolean) config.getOrDefault("bloom", false);
+        this.bloomSize = ((Number) config.getOrDefault("bloomSize", 64)).intValue();
+        this.bloomHashes = ((Number) config.getOrDefault("bloomHashes", 2)).intValue();
+        this.hybrid = (Boolean) config.getOrDefault("hybrid", false);
+        this.validate = (Boolean) config.getOrDefault("validate", false);
+        this.clockStore = (Boolean) config.getOrDefault("clockStore", false);
+
+        if (this.batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive.");
+
+        if (this.concurrency <= 0)
+            throw new IllegalArgumentException("concurrency must be positive.");
+
+        if (this.bloomSize <= 0 || this.bloomHashes <= 0)
+            throw new IllegalArgumentException("bloomSize and bloomHashes must be positive.");
+    }
+
+    private static Clock parseClock(String clock) {
+        try {
+            return Clock.valueOf(clock.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown clock '" + clock + "'.");
+        }
+    }
+
+    /**
+     * Clocks assigned to events: {@code vector} assigns both vector and Lamport clocks, while {@code lamport}
+     * only assigns Lamport clocks, which have constant size regardless of the number of timelines.
+     * {@code chain} assigns vector clocks indexed by chains of non-overlapping timelines instead of by
+     * timeline, see {@link ChainDecomposition}. {@code itc} assigns interval tree clocks instead of vector
+     * clocks, whose size follows the number of concurrent timelines rather than the number of timelines ever
+     * seen, see {@link IntervalTreeIds}. {@code bloom} only assigns Lamport and Bloom clocks.
+     */
+    public Clock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Number of events annotated per transaction.
+     */
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * Maximum number of events annotated per second, or zero when unbounded.
+     */
+    public double getMaxThroughput() {
+        return this.maxThroughput;
+    }
+
+    /**
+     * Whether to annotate independent components, and topological levels of large components, concurrently.
+     */
+    public boolean isParallel() {
+        return this.parallel;
+    }
+
+    /**
+     * Number of threads used by the parallel annotation.
+     */
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    /**
+     * Size from which a component is annotated one topological level at a time, instead of by a single thread.
+     */
+    public int getWavefrontThreshold() {
+        return this.wavefrontThreshold;
+    }
+
+    /**
+     * Whether to assign Bloom clocks, either alongside the selected clock or instead of it.
+     */
+    public boolean isBloom() {
+        return this.bloom;
+    }
+
+    /**
+     * Number of counters of each Bloom clock.
+     */
+    public int getBloomSize() {
+        return this.bloomSize;
+    }
+
+    /**
+     * Number of counters incremented by each event in Bloom clocks.
+     */
+    public int getBloomHashes() {
+        return this.bloomHashes;
+    }
+
+    /**
+     * Whether to also assign hybrid logical clocks, combining the events' {@code kernelTime} with a logical counter.
+     */
+    public boolean isHybrid() {
+        return this.hybrid;
+    }
+
+    /**
+     * Whether to validate the happens-before graph before annotating it, failing on cycles or malformed events.
+     */
+    public boolean isValidate() {
+        return this.validate;
+    }
+
+    /**
+     * Whether to write vector clocks to the memory-mapped {@link ClockStore} instead of to event properties.
+     */
+    public boolean isClockStore() {
+        return this.clockStore;
+    }
+}
@@ -0,0 +1,281 @@
+package horus.causality;
+
+import horus.VectorClock;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Snapshot of the annotated happens-before graph held in primitive arrays, so that causality queries run
+ * without reading the store: the {@link CompactCausalGraph} along with every event's Lamport time, timeline,
+ * host, labels and decoded vector clock.
+ * <p>
+ * Strings are dictionary-encoded, as are label sets, each event only holding the index of its set of labels, so
+ * that events are filtered by label by testing each set once per query. Vector clocks are kept in compressed
+ * sparse row form as entries sorted by timeline, so that two clocks are compared with a single merge walk.
+ * Events are also indexed by Lamport time, so that the events between two others are found with a binary
+ * search. Events annotated or linked after loading are not seen until the projection is loaded again.
+ */
+public class CausalGraphProjection {
+    private final String name;
+    private final long loadedAt;
+    private final CompactCausalGraph graph;
+
+    private final long[] lamportTimes;
+    private final int[] timelines;
+    private final int[] hosts;
+    private final int[] labelSets;
+    private final int[] clockOffsets;
+    private final int[] clockTimelines;
+    private final int[] clockTimes;
+    private final int[] byLamportTime;
+    private final long[] sortedLamportTimes;
+
+    private final List<String> timelineIds;
+    private final List<String> hostIds;
+    private final List<String> labelIds;
+    private final List<BitSet> labelSetIds;
+    private final int events;
+
+    private CausalGraphProjection(String name, GraphDatabaseService db) {
+        this.name = name;
+        this.loadedAt = System.currentTimeMillis();
+        this.graph = CompactCausalGraph.load(db);
+
+        int size = this.graph.size();
+        this.lamportTimes = new long[size];
+        this.timelines = new int[size];
+        this.hosts = new int[size];
+        this.labelSets = new int[size];
+        this.clockOffsets = new int[size + 1];
+        this.timelineIds = new ArrayList<>();
+        this.hostIds = new ArrayList<>();
+        this.labelIds = new ArrayList<>();
+        this.labelSetIds = new ArrayList<>();
+
+        Map<String, Integer> timelineIndexes = new HashMap<>();
+        Map<String, Integer> hostIndexes = new HashMap<>();
+        Map<String, Integer> labelIndexes = new HashMap<>();
+        Map<BitSet, Integer> labelSetIndexes = new HashMap<>();
+        IntArrayList clockTimelines = new IntArrayList();
+        IntArrayList clockTimes = new IntArrayList();
+        IntArrayList annotated = new IntArrayList();
+
+        for (int index = 0; index < size; index++) {
+            Node node = db.getNodeById(this.graph.getNodeId(index));
+            Long lc = LogicalTime.getLamportTime(node);
+            VectorClock vc = LogicalTime.getVectorClock(node);
+
+            this.lamportTimes[index] = lc != null ? lc : -1;
+            this.timelines[index] = encode(this.timelineIds, timelineIndexes, LogicalTime.getTimelineId(node));
+            this.hosts[index] = encode(this.hostIds, hostIndexes, (String) node.getProperty("host", null));
+
+            BitSet labels = new BitSet();
+            for (Label label : node.getLabels())
+                labels.set(encode(this.labelIds, labelIndexes, label.name()));
+            this.labelSets[index] = labelSetIndexes.computeIfAbsent(labels, set -> {
+                this.labelSetIds.add(set);
+                return this.labelSetIds.size() - 1;
+            });
+
+            if (vc != null) {
+                int[][] entries = new int[vc.toMap().size()][];
+                int i = 0;
+                for (Map.Entry<String, Integer> entry : vc.toMap().entrySet())
+                    entries[i++] = new int[]{encode(this.timelineIds, timelineIndexes, entry.getKey()), entry.getValue()};
+                Arrays.sort(entries, Comparator.comparingInt(entry -> entry[0]));
+
+                for (int[] entry : entries) {
+                    clockTimelines.add(entry[0]);
+                    clockTimes.add(entry[1]);
+                }
+            }
+            this.clockOffsets[index + 1] = clockTimelines.size();
+
+            if (lc != null && vc != null)
+                annotated.add(index);
+        }
+
+        this.clockTimelines = clockTimelines.toArray();
+        this.clockTimes = clockTimes.toArray();
+
+        this.byLamportTime = annotated.toArray();
+        this.events = this.byLamportTime.length;
+        Integer[] order = new Integer[this.events];
+        for (int i = 0; i < order.length; i++)
+            order[i] = this.byLamportTime[i];
+        Arrays.sort(order, Comparator.comparingLong(index -> this.lamportTimes[index]));
+
+        this.sortedLamportTimes = new long[this.events];
+        for (int i = 0; i < order.length; i++) {
+            this.byLamportTime[i] = order[i];
+            this.sortedLamportTimes[i] = this.lamportTimes[order[i]];
+        }
+    }
+
+    /**
+     * Loads a projection of the whole graph, which must have been annotated with vector clocks.
+     */
+    public static CausalGraphProjection load(String name, GraphDatabaseService db) {
+        return new CausalGraphProjection(name, db);
+    }
+
+    private static int encode(List<String> values, Map<String, Integer> indexes, String value) {
+        if (value == null)
+            return -1;
+
+        return indexes.computeIfAbsent(value, v -> {
+            values.add(v);
+            return values.size() - 1;
+        });
+    }
+
+    /**
+     * Index of an annotated event in the projection.
+     */
+    public int getIndex(Node node) {
+        int index = this.graph.contains(node.getId()) ? this.graph.getIndex(node.getId()) : -1;
+        if (index < 0 || this.clockOffsets[index] == this.clockOffsets[index + 1])
+            throw new RuntimeException("Event " + node.getId() + " is not in graph projection '" + this.name + "', or had no vector clock when it was loaded.");
+
+        return index;
+    }
+
+    public long getNodeId(int index) {
+        return this.graph.getNodeId(index);
+    }
+
+    /**
+     * Compares the clocks of two events, returning -1 when the first happened before the second, 1 when it
+     * happened after, 0 when the clocks are equal, and {@link Integer#MIN_VALUE} when they are concurrent.
+     */
+    public int compare(int first, int second) {
+        int i = this.clockOffsets[first];
+        int j = this.clockOffsets[second];
+        int firstEnd = this.clockOffsets[first + 1];
+        int secondEnd = this.clockOffsets[second + 1];
+        boolean firstLess = false;
+        boolean secondLess = false;
+
+        while (i < firstEnd || j < secondEnd) {
+            int firstTimeline = i < firstEnd ? this.clockTimelines[i] : Integer.MAX_VALUE;
+            int secondTimeline = j < secondEnd ? this.clockTimelines[j] : Integer.MAX_VALUE;
+
+            int firstTime = firstTimeline <= secondTimeline ? this.clockTimes[i++] : 0;
+            int secondTime = secondTimeline <= firstTimeline ? this.clockTimes[j++] : 0;
+
+            firstLess |= firstTime < secondTime;
+            secondLess |= secondTime < firstTime;
+
+            if (firstLess && secondLess)
+                return Integer.MIN_VALUE;
+        }
+
+        return firstLess ? -1 : secondLess ? 1 : 0;
+    }
+
+    public boolean happensBefore(int first, int second) {
+        return this.compare(first, second) == -1;
+    }
+
+    /**
+     * Events on some causal path between the given ones, both included, found among the events within their
+     * Lamport time range, as {@link CausalNodes#between} does against the store.
+     */
+    public IntStream between(int from, int to) {
+        // Unrelated events are between themselves, though the window misses both when the first is the later one.
+        if (this.lamportTimes[from] > this.lamportTimes[to])
+            return IntStream.of(from, to);
+
+        int start = lowerBound(this.sortedLamportTimes, this.lamportTimes[from]);
+        int end = lowerBound(this.sortedLamportTimes, this.lamportTimes[to] + 1);
+
+        return IntStream.range(start, end)
+                .map(position -> this.byLamportTime[position])
+                .filter(index -> {
+                    int fromOrder = this.compare(from, index);
+                    int toOrder = this.compare(index, to);
+
+                    return fromOrder == 0 || toOrder == 0 || (fromOrder == -1 && toOrder == -1);
+                });
+    }
+
+    private static int lowerBound(long[] values, long value) {
+        int low = 0;
+        int high = values.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (values[middle] < value)
+                low = middle + 1;
+            else
+                high = middle;
+        }
+
+        return low;
+    }
+
+    /**
+     * Test of whether an event has any of the given labels, each label set being checked once.
+     */
+    public IntPredicate hasAnyLabel(Collection<String> labels) {
+        BitSet wanted = new BitSet();
+        for (String label : labels) {
+            int labelIndex = this.labelIds.indexOf(label);
+            if (labelIndex >= 0)
+                wanted.set(labelIndex);
+        }
+
+        BitSet matching = new BitSet(this.labelSetIds.size());
+        for (int i = 0; i < this.labelSetIds.size(); i++)
+            matching.set(i, this.labelSetIds.get(i).intersects(wanted));
+
+        return index -> matching.get(this.labelSets[index]);
+    }
+
+    public Set<String> getLabels(int index) {
+        return this.labelSetIds.get(this.labelSets[index]).stream()
+                .mapToObj(this.labelIds::get)
+                .collect(Collectors.toSet());
+    }
+
+    public String getHost(int index) {
+        return this.hosts[index] < 0 ? null : this.hostIds.get(this.hosts[index]);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getLoadedAt() {
+        return this.loadedAt;
+    }
+
+    public int getEventCount() {
+        return this.events;
+    }
+
+    public int getRelationshipCount() {
+        return this.graph.getRelationshipCount();
+    }
+
+    public int getTimelineCount() {
+        return this.timelineIds.size();
+    }
+
+    /**
+     * Rough size of the projection's arrays, in bytes.
+     */
+    public long getSizeInBytes() {
+        long perNode = 3 * Long.BYTES + 9 * Integer.BYTES;
+
+        return perNode * this.graph.size() + 2L * Integer.BYTES * (this.clockTimes.length + this.graph.getRelationshipCount());
+    }
+}
@@ -0,0 +1,307 @@
+package horus.causality;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+
+import java.util.*;
+
+/**
+ * Checks that the happens-before graph can be annotated: that it has no cycles, which would leave every event
+ * after them without logical time, that every event has a {@code threadId}, that every edge links events, and
+ * that every RCV event has a SND parent.
+ * <p>
+ * Runs in linear time over the {@link CompactCausalGraph}: Kahn's algorithm finds the events that cannot be
+ * ordered, and an iterative Tarjan's algorithm over those finds the cycles themselves.
+ */
+public class CausalGraphValidation {
+    private static final Label EVENT = Label.label("EVENT");
+    private static final Label SND = Label.label("SND");
+    private static final Label RCV = Label.label("RCV");
+
+    private final int sampleSize;
+
+    private long events;
+    private long relationships;
+    private final Set<Object> timelines;
+
+    private long cycles;
+    private final List<List<Node>> cycleSamples;
+    private long blockedEvents;
+    private long orphanedReceives;
+    private final List<Node> orphanedReceiveSamples;
+    private long missingThreadIds;
+    private final List<Node> missingThreadIdSamples;
+    private long danglingNodes;
+    private final List<Node> danglingNodeSamples;
+
+    private CausalGraphValidation(int sampleSize) {
+        this.sampleSize = sampleSize;
+        this.timelines = new HashSet<>();
+        this.cycleSamples = new ArrayList<>();
+        this.orphanedReceiveSamples = new ArrayList<>();
+        this.missingThreadIdSamples = new ArrayList<>();
+        this.danglingNodeSamples = new ArrayList<>();
+    }
+
+    /**
+     * Validates the whole graph, keeping up to {@code sampleSize} examples of each problem.
+     */
+    public static CausalGraphValidation run(GraphDatabaseService db, int sampleSize) {
+        CausalGraphValidation validation = new CausalGraphValidation(sampleSize);
+        CompactCausalGraph graph = CompactCausalGraph.load(db);
+
+        validation.relationships = graph.getRelationshipCount();
+        validation.checkEvents(db, graph);
+        validation.checkCycles(db, graph);
+
+        return validation;
+    }
+
+    /**
+     * Fails when the graph is not valid, so that annotation stops before doing any work.
+     */
+    public static void require(GraphDatabaseService db) {
+        CausalGraphValidation validation = run(db, 0);
+
+        if (!validation.isValid())
+            throw new RuntimeException("Invalid happens-before graph, see horus.validateCausalGraph(): " + validation);
+    }
+
+    private void checkEvents(GraphDatabaseService db, CompactCausalGraph graph) {
+        for (int index = 0; index < graph.size(); index++) {
+            Node node = db.getNodeById(graph.getNodeId(index));
+
+            if (!node.hasLabel(EVENT)) {
+                if (graph.getInDegree(index) + graph.getOutDegree(index) > 0)
+                    this.danglingNodes = this.sample(this.danglingNodes, this.danglingNodeSamples, node);
+
+                continue;
+            }
+
+            this.events++;
+
+            Object threadId = node.getProperty(LogicalTime.THREAD_ID, null);
+            if (threadId == null)
+                this.missingThreadIds = this.sample(this.missingThreadIds, this.missingThreadIdSamples, node);
+            else
+                this.timelines.add(threadId);
+
+            if (node.hasLabel(RCV) && !this.hasSendParent(db, graph, index))
+                this.orphanedReceives = this.sample(this.orphanedReceives, this.orphanedReceiveSamples, node);
+        }
+    }
+
+    private boolean hasSendParent(GraphDatabaseService db, CompactCausalGraph graph, int index) {
+        for (int i = 0; i < graph.getInDegree(index); i++) {
+            if (db.getNodeById(graph.getNodeId(graph.getParent(index, i))).hasLabel(SND))
+                return true;
+        }
+
+        return false;
+    }
+
+    private void checkCycles(GraphDatabaseService db, CompactCausalGraph graph) {
+        int size = graph.size();
+        int[] remainingParents = new int[size];
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+
+        for (int node = 0; node < size; node++) {
+            remainingParents[node] = graph.getInDegree(node);
+            if (remainingParents[node] == 0)
+                queue[tail++] = node;
+        }
+
+        while (head < tail) {
+            int node = queue[head++];
+
+            for (int i = 0; i < graph.getOutDegree(node); i++) {
+                int child = graph.getChild(node, i);
+                if (--remainingParents[child] == 0)
+                    queue[tail++] = child;
+            }
+        }
+
+        if (tail == size)
+            return;
+
+        this.blockedEvents = size - tail;
+
+        // Events left with parents are either on a cycle or after one.
+        boolean[] blocked = new boolean[size];
+        for (int node = 0; node < size; node++)
+            blocked[node] = remainingParents[node] > 0;
+
+        this.findCycles(db, graph, blocked);
+    }
+
+    /**
+     * Iterative Tarjan's algorithm over the blocked events, recording strongly connected components with
+     * more than one event, or with an event that is its own parent.
+     */
+    private void findCycles(GraphDatabaseService db, CompactCausalGraph graph, boolean[] blocked) {
+        int size = graph.size();
+        int[] order = new int[size];
+        int[] low = new int[size];
+        boolean[] onStack = new boolean[size];
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int[] callStack = new int[size];
+        int[] nextChild = new int[size];
+        int counter = 0;
+
+        Arrays.fill(order, -1);
+
+        for (int root = 0; root < size; root++) {
+            if (!blocked[root] || order[root] >= 0)
+                continue;
+
+            int depth = 0;
+            callStack[depth] = root;
+            order[root] = low[root] = counter++;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth >= 0) {
+                int node = callStack[depth];
+
+                if (nextChild[node] < graph.getOutDegree(node)) {
+                    int child = graph.getChild(node, nextChild[node]++);
+                    if (!blocked[child])
+                        continue;
+
+                    if (order[child] < 0) {
+                        order[child] = low[child] = counter++;
+                        stack[stackSize++] = child;
+                        onStack[child] = true;
+                        callStack[++depth] = child;
+                    } else if (onStack[child]) {
+                        low[node] = Math.min(low[node], order[child]);
+                    }
+
+                    continue;
+                }
+
+                if (low[node] == order[node]) {
+                    List<Node> component = new ArrayList<>();
+                    int members = 0;
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+
+                        if (members++ < this.sampleSize)
+                            component.add(db.getNodeById(graph.getNodeId(member)));
+                    } while (member != node);
+
+                    if (members > 1 || isOwnParent(graph, node)) {
+                        this.cycles++;
+                        if (this.cycleSamples.size() < this.sampleSize)
+                            this.cycleSamples.add(component);
+                    }
+                }
+
+                depth--;
+                if (depth >= 0) {
+                    int parent = callStack[depth];
+                    low[parent] = Math.min(low[parent], low[node]);
+                }
+            }
+        }
+    }
+
+    private static boolean isOwnParent(CompactCausalGraph graph, int node) {
+        for (int i = 0; i < graph.getOutDegree(node); i++) {
+            if (graph.getChild(node, i) == node)
+                return true;
+        }
+
+        return false;
+    }
+
+    private long sample(long count, List<Node> samples, Node node) {
+        if (samples.size() < this.sampleSize)
+            samples.add(node);
+
+        return count + 1;
+    }
+
+    public boolean isValid() {
+        return this.cycles == 0 && this.blockedEvents == 0 && this.orphanedReceives == 0
+                && this.missingThreadIds == 0 && this.danglingNodes == 0;
+    }
+
+    public long getEvents() {
+        return this.events;
+    }
+
+    public long getRelationships() {
+        return this.relationships;
+    }
+
+    public long getTimelines() {
+        return this.timelines.size();
+    }
+
+    /**
+     * Upper bound on the number of vector clock entries annotation would write, one per timeline per event.
+     */
+    public long getEstimatedClockEntries() {
+        return this.events * this.timelines.size();
+    }
+
+    public long getCycles() {
+        return this.cycles;
+    }
+
+    public List<List<Node>> getCycleSamples() {
+        return this.cycleSamples;
+    }
+
+    /**
+     * Events on or after a cycle, which annotation would never reach.
+     */
+    public long getBlockedEvents() {
+        return this.blockedEvents;
+    }
+
+    public long getOrphanedReceives() {
+        return this.orphanedReceives;
+    }
+
+    public List<Node> getOrphanedReceiveSamples() {
+        return this.orphanedReceiveSamples;
+    }
+
+    public long getMissingThreadIds() {
+        return this.missingThreadIds;
+    }
+
+    public List<Node> getMissingThreadIdSamples() {
+        return this.missingThreadIdSamples;
+    }
+
+    /**
+     * Nodes linked by happens-before relationships without being events.
+     */
+    public long getDanglingNodes() {
+        return this.danglingNodes;
+    }
+
+    public List<Node> getDanglingNodeSamples() {
+        return this.danglingNodeSamples;
+    }
+
+    @Override
+    public String toString() {
+        return "CausalGraphValidation{" +
+                "cycles=" + cycles +
+                ", blockedEvents=" + blockedEvents +
+                ", orphanedReceives=" + orphanedReceives +
+                ", missingThreadIds=" + missingThreadIds +
+                ", danglingNodes=" + danglingNodes +
+                '}';
+    }
+}
@@ -0,0 +1,169 @@
+package horus.causality;
+
+import horus.LogicalClock;
+import horus.VectorClock;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Finds the events on some causal path between two events, i.e. both after the first and before the second.
+ */
+public class CausalNodes {
+
+    /**
+     * Events between the given ones, both included, found with the strategy of the given plan.
+     */
+    public static Stream<Node> between(GraphDatabaseService db, Node from, Node to, CausalNodesPlan plan) {
+        switch (plan.getStrategy()) {
+            case TRAVERSAL:
+                return betweenByTraversal(db, from, to);
+            case TIMELINES:
+                return betweenByTimelines(db, from, to);
+            default:
+                return between(db, from, to);
+        }
+    }
+
+    /**
+     * Events between the given ones, both included, read from their Lamport time range and filtered by their clocks.
+     */
+    public static Stream<Node> between(GraphDatabaseService db, Node from, Node to) {
+        long fromLamportTime = getLamportTime(from);
+        long toLamportTime = getLamportTime(to);
+
+        // As with clocks, both events are between themselves even when they are not causally related, though then
+        // the window misses both when the first has the later Lamport time.
+        if (fromLamportTime > toLamportTime)
+            return Stream.of(from, to);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("fromLamportTime", fromLamportTime);
+        parameters.put("toLamportTime", toLamportTime);
+
+        Stream<Node> nodes = db.execute("MATCH (n:EVENT)\n" +
+                "WHERE n.lamportLogicalTime >= $fromLamportTime AND n.lamportLogicalTime <= $toLamportTime\n" +
+                "return n", parameters)
+                .stream()
+                .map(result -> (Node) result.get("n"));
+
+        // Clocks in the clock store are compared in place, without decoding them.
+        ClockStore store = ClockStore.find(db);
+        if (store != null && store.holds(from) && store.holds(to)) {
+            return nodes.filter(node -> store.holds(node)
+                    ? store.withinCausalPath(node.getId(), from.getId(), to.getId())
+                    : getClock(node).withinCausalPath(getClock(from), getClock(to)));
+        }
+
+        LogicalClock fromClock = getClock(from);
+        LogicalClock toClock = getClock(to);
+
+        return nodes.filter(node -> getClock(node).withinCausalPath(fromClock, toClock));
+    }
+
+    /**
+     * Events between the given ones, both included, found by traversing forward from the first within its Lamport
+     * time window, then backward from the second through the events reached forward.
+     */
+    public static Stream<Node> betweenByTraversal(GraphDatabaseService db, Node from, Node to) {
+        long fromLamportTime = getLamportTime(from);
+        long toLamportTime = getLamportTime(to);
+
+        Set<Long> after = new HashSet<>();
+        Deque<Node> toVisit = new ArrayDeque<>();
+        toVisit.push(from);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (!after.add(node.getId()))
+                continue;
+
+            for (Relationship relationship : LogicalTime.getChildRelationships(node)) {
+                Node child = relationship.getEndNode();
+                if (!after.contains(child.getId()) && getLamportTime(child) <= toLamportTime)
+                    toVisit.push(child);
+            }
+        }
+
+        // As with clocks, both events are between themselves even when they are not causally related.
+        if (!after.contains(to.getId()))
+            return from.equals(to) ? Stream.of(from) : Stream.of(from, to);
+
+        Map<Long, Node> between = new LinkedHashMap<>();
+        toVisit.push(to);
+        while (!toVisit.isEmpty()) {
+            Node node = toVisit.pop();
+            if (between.putIfAbsent(node.getId(), node) != null)
+                continue;
+
+            for (Relationship relationship : LogicalTime.getParentRelationships(node)) {
+                Node parent = relationship.getStartNode();
+                if (!between.containsKey(parent.getId()) && after.contains(parent.getId()) && getLamportTime(parent) >= fromLamportTime)
+                    toVisit.push(parent);
+            }
+        }
+
+        return between.values().stream();
+    }
+
+    /**
+     * Events between the given ones, both included, found on every timeline of the second one's vector clock
+     * as the range of events from the first one after the given one, sought with the {@link TimelineIndex}, up to
+     * the last one in the second one's causal past.
+     */
+    public static Stream<Node> betweenByTimelines(GraphDatabaseService db, Node from, Node to) {
+        VectorClock fromClock = LogicalTime.getVectorClock(from);
+        VectorClock toClock = LogicalTime.getVectorClock(to);
+        if (fromClock == null || toClock == null)
+            throw new RuntimeException("Could not get vectorLogicalTime property.");
+
+        // As with clocks, both events are between themselves even when they are not causally related.
+        if (!fromClock.lessThan(toClock) && !fromClock.equals(toClock))
+            return from.equals(to) ? Stream.of(from) : Stream.of(from, to);
+
+        TimelineIndex index = TimelineIndex.of(db, to);
+        String fromTimeline = LogicalTime.getTimelineId(from);
+        int fromSequence = fromClock.getTime(fromTimeline);
+
+        List<Node> between = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : toClock.toMap().entrySet()) {
+            String timeline = entry.getKey();
+            long first = timeline.equals(fromTimeline) ? fromSequence : fromClock.getTime(timeline) + 1;
+            if (first > entry.getValue())
+                continue;
+
+            first = index.seekFirst(timeline, first, node -> {
+                VectorClock vc = LogicalTime.getVectorClock(node);
+                return vc != null && vc.getTime(fromTimeline) >= fromSequence;
+            });
+            if (first < 0)
+                continue;
+
+            for (long sequence = first; sequence <= entry.getValue(); sequence++) {
+                Node node = index.get(timeline, sequence);
+                if (node != null)
+                    between.add(node);
+            }
+        }
+
+        return between.stream();
+    }
+
+    public static LogicalClock getClock(Node node) {
+        LogicalClock clock = LogicalTime.getClock(node);
+        if (clock == null)
+            throw new RuntimeException("Could not get vectorLogicalTime or itcLogicalTime property.");
+
+        return clock;
+    }
+
+    public static long getLamportTime(Node node) {
+        Long lc = LogicalTime.getLamportTime(node);
+        if (lc == null)
+            throw new RuntimeException("Could not get lamportLogicalTime property.");
+
+        return lc;
+    }
+}
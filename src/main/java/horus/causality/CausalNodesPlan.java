@@ -0,0 +1,199 @@
+package horus.causality;
+
+import horus.VectorClock;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.schema.IndexDefinition;
+
+import java.util.*;
+
+/**
+ * Choice of how {@link CausalNodes} finds the events between two others, by comparing the estimated number of
+ * events read by each strategy:
+ * <ul>
+ * <li>{@code scan} reads every event in the Lamport time window of both, decoding its clock. The window is estimated
+ * without reading it, as the share of every event, from the count store, that the window's width is of the whole
+ * Lamport time range, found with two probes of the Lamport time index. Without the index, it is every event.</li>
+ * <li>{@code timelines} seeks, on every timeline of the end event's clock, the range of events after the start
+ * event with the {@link TimelineIndex}, then reads only those. It needs vector clocks and the timeline indexes.
+ * Its cardinality is bounded by the difference of both clocks.</li>
+ * <li>{@code traversal} follows happens-before relationships forward from the start event and backward from the
+ * end event, within their Lamport time window, and intersects both. It needs no clocks, and is estimated to read
+ * each event between them and its neighbours twice.</li>
+ * </ul>
+ */
+public class CausalNodesPlan {
+    public enum Strategy {
+        AUTO, SCAN, TRAVERSAL, TIMELINES
+    }
+
+    private static final Label EVENT = Label.label("EVENT");
+
+    // Index seeks cost about twice as much as reading the next event of a scan.
+    private static final double SEEK_COST = 2.0;
+    // Decoding a clock costs about as much as reading an event every 16 entries.
+    private static final double CLOCK_ENTRY_COST = 1.0 / 16;
+    // Events between two others have about two happens-before neighbours each.
+    private static final double TRAVERSAL_DEGREE = 2.0;
+
+    private final Strategy strategy;
+    private final long windowEvents;
+    private final long estimatedEvents;
+    private final long clockWidth;
+    private final double scanCost;
+    private final double traversalCost;
+    private final double timelinesCost;
+
+    private CausalNodesPlan(Strategy strategy, long windowEvents, long estimatedEvents, long clockWidth,
+                            double scanCost, double traversalCost, double timelinesCost) {
+        this.strategy = strategy;
+        this.windowEvents = windowEvents;
+        this.estimatedEvents = estimatedEvents;
+        this.clockWidth = clockWidth;
+        this.scanCost = scanCost;
+        this.traversalCost = traversalCost;
+        this.timelinesCost = timelinesCost;
+    }
+
+    /**
+     * Plan for the events between the given ones, using the given strategy, or the cheapest one for
+     * {@link Strategy#AUTO}. Strategies that cannot run, e.g. without vector clocks, have an infinite cost.
+     */
+    public static CausalNodesPlan of(GraphDatabaseService db, Node from, Node to, Strategy strategy) {
+        long fromLamportTime = CausalNodes.getLamportTime(from);
+        long toLamportTime = CausalNodes.getLamportTime(to);
+
+        Set<List<String>> indexes = getIndexes(db);
+        long windowEvents = estimateWindow(db, fromLamportTime, toLamportTime,
+                indexes.contains(Collections.singletonList(LogicalTime.LAMPORT_LOGICAL_TIME)));
+
+        VectorClock fromClock = LogicalTime.getVectorClock(from);
+        VectorClock toClock = LogicalTime.getVectorClock(to);
+        boolean hasClocks = LogicalTime.getClock(from) != null && LogicalTime.getClock(to) != null;
+
+        long clockWidth = toClock != null ? toClock.toMap().size() : 0;
+        long estimatedEvents = windowEvents;
+        double seeks = 0;
+        if (fromClock != null && toClock != null) {
+            estimatedEvents = 1;
+            for (Map.Entry<String, Integer> entry : toClock.toMap().entrySet()) {
+                estimatedEvents += Math.max(0, entry.getValue() - fromClock.getTime(entry.getKey()));
+                seeks += 2 + 2 * log2(entry.getValue() + 1);
+            }
+            estimatedEvents = Math.min(estimatedEvents, windowEvents);
+        }
+
+        boolean hasTimelineIndex = fromClock != null && toClock != null
+                && LogicalTime.getTimelineSequence(from) != null && LogicalTime.getTimelineSequence(to) != null
+                && indexes.contains(Arrays.asList(to.hasProperty(LogicalTime.CHAIN_ID) ? LogicalTime.CHAIN_ID : LogicalTime.THREAD_ID, LogicalTime.TIMELINE_SEQUENCE));
+
+        double scanCost = hasClocks ? windowEvents * (1 + clockWidth * CLOCK_ENTRY_COST) : Double.POSITIVE_INFINITY;
+        double timelinesCost = hasTimelineIndex ? seeks * SEEK_COST * (1 + clockWidth * CLOCK_ENTRY_COST) + estimatedEvents * SEEK_COST : Double.POSITIVE_INFINITY;
+        double traversalCost = 2 * TRAVERSAL_DEGREE * estimatedEvents;
+
+        if (strategy == Strategy.AUTO) {
+            strategy = Strategy.TRAVERSAL;
+            if (scanCost <= Math.min(traversalCost, timelinesCost))
+                strategy = Strategy.SCAN;
+            else if (timelinesCost <= traversalCost)
+                strategy = Strategy.TIMELINES;
+        } else if ((strategy == Strategy.SCAN && !hasClocks) || (strategy == Strategy.TIMELINES && !hasTimelineIndex)) {
+            throw new RuntimeException("Strategy " + strategy.name().toLowerCase() + " needs " +
+                    (strategy == Strategy.SCAN ? "clocks" : "vector clocks and the indexes of horus.createLogicalTimeIndexes()") + ".");
+        }
+
+        return new CausalNodesPlan(strategy, windowEvents, estimatedEvents, clockWidth, scanCost, traversalCost, timelinesCost);
+    }
+
+    public static Strategy parseStrategy(String strategy) {
+        try {
+            return Strategy.valueOf(strategy.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown strategy '" + strategy + "'.");
+        }
+    }
+
+    private static Set<List<String>> getIndexes(GraphDatabaseService db) {
+        Set<List<String>> indexes = new HashSet<>();
+
+        for (IndexDefinition index : db.schema().getIndexes(EVENT)) {
+            List<String> properties = new ArrayList<>();
+            index.getPropertyKeys().forEach(properties::add);
+            indexes.add(properties);
+        }
+
+        return indexes;
+    }
+
+    private static long estimateWindow(GraphDatabaseService db, long fromLamportTime, long toLamportTime, boolean indexed) {
+        long events;
+        try (Result result = db.execute("MATCH (n:EVENT) RETURN count(n) AS count")) {
+            events = result.<Long>columnAs("count").next();
+        }
+
+        // Without the index, finding the Lamport time range would read every event, so all are assumed to be in it.
+        if (!indexed || events == 0)
+            return events;
+
+        long first = probeLamportTime(db, "ASC");
+        long last = probeLamportTime(db, "DESC");
+        double share = (double) (Math.max(toLamportTime, fromLamportTime) - Math.min(toLamportTime, fromLamportTime) + 1) / (last - first + 1);
+
+        return Math.max(1, Math.min(events, (long) Math.ceil(events * share)));
+    }
+
+    private static long probeLamportTime(GraphDatabaseService db, String order) {
+        try (Result result = db.execute("MATCH (n:EVENT) WHERE n.lamportLogicalTime >= 0 " +
+                "RETURN n.lamportLogicalTime AS lamportTime ORDER BY n.lamportLogicalTime " + order + " LIMIT 1")) {
+            return result.hasNext() ? ((Number) result.next().get("lamportTime")).longValue() : 0;
+        }
+    }
+
+    private static double log2(long value) {
+        return Math.log(value) / Math.log(2);
+    }
+
+    public Strategy getStrategy() {
+        return this.strategy;
+    }
+
+    /**
+     * Estimated number of events in the Lamport time window of both events.
+     */
+    public long getWindowEvents() {
+        return this.windowEvents;
+    }
+
+    /**
+     * Upper bound of the number of events between both, from the difference of their vector clocks, or the
+     * window size without vector clocks.
+     */
+    public long getEstimatedEvents() {
+        return this.estimatedEvents;
+    }
+
+    public long getClockWidth() {
+        return this.clockWidth;
+    }
+
+    public double getScanCost() {
+        return this.scanCost;
+    }
+
+    public double getTraversalCost() {
+        return this.traversalCost;
+    }
+
+    public double getTimelinesCost() {
+        return this.timelinesCost;
+    }
+
+    @Override
+    public String toString() {
+        return this.strategy.name().toLowerCase() + " {window=" + this.windowEvents + ", estimated=" + this.estimatedEvents +
+                ", clockWidth=" + this.clockWidth + ", scan=" + this.scanCost + ", traversal=" + this.traversalCost +
+                ", timelines=" + this.timelinesCost + "}";
+    }
+}
@@ -0,0 +1,169 @@
+package horus.causality;
+
+import java.util.ArrayDeque;
+import java.util.BitSet;
+import java.util.Deque;
+
+/**
+ * Counts, for every event of a {@link CompactCausalGraph}, how many events are in its causal future, or past,
+ * in a single pass over the graph in topological order.
+ * <p>
+ * The set reached from an event is the union of the sets reached from its children, along with the children
+ * themselves, so sets are propagated from the sinks backwards, or from the roots forwards. They are kept as
+ * bitsets when counts must be exact, and as {@link HyperLogLog} sketches otherwise, whose size does not grow
+ * with the graph. A set is released once every event reaching it has been visited, so only those of the
+ * frontier are held, and the set of an event that is its child's only parent is extended in place.
+ */
+public class CausalReach {
+    public static final String CAUSAL_ANCESTORS = "causalAncestors";
+    public static final String CAUSAL_DESCENDANTS = "causalDescendants";
+
+    private final CompactCausalGraph graph;
+    private final boolean exact;
+    private final int precision;
+
+    public CausalReach(CompactCausalGraph graph, boolean exact, int precision) {
+        this.graph = graph;
+        this.exact = exact;
+        this.precision = precision;
+    }
+
+    public long[] countDescendants() {
+        return this.count(true);
+    }
+
+    public long[] countAncestors() {
+        return this.count(false);
+    }
+
+    private long[] count(boolean descendants) {
+        int size = this.graph.size();
+        long[] counts = new long[size];
+        Reach[] reaches = new Reach[size];
+        // Events still to be visited after and before each event, telling when it is ready and can be released.
+        int[] remaining = new int[size];
+        int[] waiting = new int[size];
+        Deque<Integer> ready = new ArrayDeque<>();
+
+        for (int index = 0; index < size; index++) {
+            remaining[index] = this.getNextCount(index, descendants);
+            waiting[index] = this.getPreviousCount(index, descendants);
+            if (remaining[index] == 0)
+                ready.push(index);
+        }
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            int index = ready.pop();
+            visited++;
+
+            int nextCount = this.getNextCount(index, descendants);
+            Reach reach;
+            if (nextCount == 1 && this.getPreviousCount(this.getNext(index, 0, descendants), descendants) == 1) {
+                int next = this.getNext(index, 0, descendants);
+                reach = reaches[next];
+                reaches[next] = null;
+                reach.add(next);
+            } else {
+                reach = this.exact ? new ExactReach(size) : new SketchReach(this.precision);
+                for (int i = 0; i < nextCount; i++) {
+                    int next = this.getNext(index, i, descendants);
+                    reach.add(next);
+                    reach.merge(reaches[next]);
+                }
+            }
+            counts[index] = reach.count();
+
+            for (int i = 0; i < nextCount; i++) {
+                int next = this.getNext(index, i, descendants);
+                if (--waiting[next] == 0)
+                    reaches[next] = null;
+            }
+
+            int previousCount = this.getPreviousCount(index, descendants);
+            if (previousCount > 0)
+                reaches[index] = reach;
+
+            for (int i = 0; i < previousCount; i++) {
+                int previous = this.getPrevious(index, i, descendants);
+                if (--remaining[previous] == 0)
+                    ready.push(previous);
+            }
+        }
+
+        if (visited < size)
+            throw new RuntimeException((size - visited) + " events are on happens-before cycles, see horus.validateCausalGraph.");
+
+        return counts;
+    }
+
+    private int getNextCount(int index, boolean descendants) {
+        return descendants ? this.graph.getOutDegree(index) : this.graph.getInDegree(index);
+    }
+
+    private int getNext(int index, int i, boolean descendants) {
+        return descendants ? this.graph.getChild(index, i) : this.graph.getParent(index, i);
+    }
+
+    private int getPreviousCount(int index, boolean descendants) {
+        return descendants ? this.graph.getInDegree(index) : this.graph.getOutDegree(index);
+    }
+
+    private int getPrevious(int index, int i, boolean descendants) {
+        return descendants ? this.graph.getParent(index, i) : this.graph.getChild(index, i);
+    }
+
+    private interface Reach {
+        void add(int index);
+
+        void merge(Reach reach);
+
+        long count();
+    }
+
+    private static class ExactReach implements Reach {
+        private final BitSet indexes;
+
+        ExactReach(int size) {
+            this.indexes = new BitSet(size);
+        }
+
+        @Override
+        public void add(int index) {
+            this.indexes.set(index);
+        }
+
+        @Override
+        public void merge(Reach reach) {
+            this.indexes.or(((ExactReach) reach).indexes);
+        }
+
+        @Override
+        public long count() {
+            return this.indexes.cardinality();
+        }
+    }
+
+    private static class SketchReach implements Reach {
+        private final HyperLogLog sketch;
+
+        SketchReach(int precision) {
+            this.sketch = new HyperLogLog(precision);
+        }
+
+        @Override
+        public void add(int index) {
+            this.sketch.add(index);
+        }
+
+        @Override
+        public void merge(Reach reach) {
+            this.sketch.merge(((SketchReach) reach).sketch);
+        }
+
+        @Override
+        public long count() {
+            return this.sketch.estimate();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package horus.causality;
+
+import horus.VectorClock;
+
+import java.util.*;
+
+/**
+ * Greedy chain decomposition of the happens-before graph, computed while events are visited in topological
+ * order. A chain is a totally ordered sequence of events, made of one or more timelines that never overlap:
+ * a timeline may continue a chain once its last event happened before the timeline started.
+ * <p>
+ * Chains are identified by the id of the first timeline they hold, so that timelines which never share a
+ * chain keep their own id.
+ */
+public class ChainDecomposition {
+    private final Map<String, String> timelineChains;
+    private final Map<String, Integer> chainLengths;
+    private final Set<String> availableChains;
+    private int chainSuffix;
+
+    public ChainDecomposition() {
+        this.timelineChains = new HashMap<>();
+        this.chainLengths = new HashMap<>();
+        this.availableChains = new LinkedHashSet<>();
+    }
+
+    /**
+     * Chain continued by the next event of the given timeline, whose causal past is summarized by the given clock.
+     */
+    public synchronized String getChain(String timelineId, VectorClock past) {
+        String chain = this.timelineChains.get(timelineId);
+        if (chain != null)
+            return chain;
+
+        for (String availableChain : this.availableChains) {
+            if (past.getTime(availableChain).equals(this.chainLengths.get(availableChain))) {
+                chain = availableChain;
+                break;
+            }
+        }
+
+        if (chain != null) {
+            this.availableChains.remove(chain);
+        } else {
+            chain = timelineId;
+            while (this.chainLengths.containsKey(chain))
+                chain = timelineId + "#" + (++this.chainSuffix);
+        }
+
+        this.timelineChains.put(timelineId, chain);
+
+        return chain;
+    }
+
+    /**
+     * Records that an event of the given timeline was assigned the given position in its chain.
+     */
+    public synchronized void advance(String timelineId, String chain, int position, boolean lastOfTimeline) {
+        this.chainLengths.put(chain, position);
+
+        if (lastOfTimeline) {
+            this.timelineChains.remove(timelineId);
+            this.availableChains.add(chain);
+        }
+    }
+
+    public synchronized int getChainCount() {
+        return this.chainLengths.size();
+    }
+}
@@ -0,0 +1,412 @@
+package horus.causality;
+
+import horus.VectorClock;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vector clocks kept outside of the property store, in memory-mapped files of the database directory, so that
+ * large clocks neither bloat the property store nor compete with the graph for the page cache.
+ * <p>
+ * Clocks are appended to {@value #DATA_FILE} as packed records: the index of the clock's own timeline, the number
+ * of entries, then every entry as a timeline index and a time, sorted by timeline index. Timeline ids are
+ * numbered in {@value #TIMELINES_FILE}, one per line. {@value #INDEX_FILE} holds, at every node id, the offset of
+ * the node's latest record, so that clocks are found with a single read, and compared without decoding them.
+ * <p>
+ * Files are mapped in chunks, no record crossing a chunk boundary. Writes are not transactional: a clock
+ * written by a rolled back annotation stays in the store until the event is annotated again. The
+ * {@link ClockStoreExtensionFactory} forces written chunks before every commit, drops the records of deleted events
+ * as their deletion commits, so that nodes reusing their ids do not get their clocks, and closes the store when the
+ * database stops.
+ */
+public class ClockStore {
+    public static final String INDEX_FILE = "horus-clocks.idx";
+    public static final String DATA_FILE = "horus-clocks.dat";
+    public static final String TIMELINES_FILE = "horus-clocks.timelines";
+
+    private static final int CHUNK_BITS = 26;
+    private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+    private static final int HEADER_SIZE = Long.BYTES;
+
+    // Directory of the running database, set by the ClockStoreExtensionFactory, and its store once opened.
+    private static File directory;
+    private static volatile ClockStore current;
+    // Whether the running database has no store, so that finding none does not touch the file system every time.
+    private static volatile boolean missing;
+
+    private final MappedFile index;
+    private final MappedFile data;
+    private final List<String> timelines;
+    private final Map<String, Integer> timelineIndexes;
+    private final FileOutputStream timelineOutput;
+    private final Writer timelineWriter;
+    private volatile boolean timelinesWritten;
+
+    private ClockStore(File directory) throws IOException {
+        this.index = new MappedFile(new File(directory, INDEX_FILE));
+        this.data = new MappedFile(new File(directory, DATA_FILE));
+
+        this.timelines = Collections.synchronizedList(new ArrayList<>());
+        this.timelineIndexes = new ConcurrentHashMap<>();
+
+        File timelinesFile = new File(directory, TIMELINES_FILE);
+        if (timelinesFile.exists()) {
+            for (String timeline : Files.readAllLines(timelinesFile.toPath(), StandardCharsets.UTF_8)) {
+                this.timelineIndexes.put(timeline, this.timelines.size());
+                this.timelines.add(timeline);
+            }
+        }
+
+        this.timelineOutput = new FileOutputStream(timelinesFile, true);
+        this.timelineWriter = new BufferedWriter(new OutputStreamWriter(this.timelineOutput, StandardCharsets.UTF_8));
+
+        if (this.data.getLong(0) == 0)
+            this.data.putLong(0, HEADER_SIZE);
+    }
+
+    /**
+     * Makes the stores found those of the database in the given directory, when it starts.
+     */
+    static synchronized void start(File databaseDirectory) {
+        directory = databaseDirectory;
+        current = null;
+        missing = false;
+    }
+
+    /**
+     * Closes the store of the running database, when it stops.
+     */
+    static synchronized void stop() throws IOException {
+        ClockStore store = current;
+
+        directory = null;
+        current = null;
+        missing = false;
+
+        if (store != null)
+            store.close();
+    }
+
+    /**
+     * Store of the running database, created when missing. The given database is only used to check that the
+     * store is available, i.e. that the {@link ClockStoreExtensionFactory} was started.
+     */
+    public static ClockStore open(GraphDatabaseService db) {
+        ClockStore store = current;
+        if (store != null)
+            return store;
+
+        synchronized (ClockStore.class) {
+            if (current != null)
+                return current;
+            if (directory == null)
+                throw new RuntimeException("The clock store is only available when the Horus kernel extensions are loaded.");
+
+            try {
+                current = new ClockStore(directory);
+                missing = false;
+            } catch (IOException e) {
+                throw new RuntimeException("Could not open the clock store in " + directory + ": " + e.getMessage());
+            }
+
+            return current;
+        }
+    }
+
+    /**
+     * Store of the running database, or null if clocks were never annotated with {@code {clockStore: true}}.
+     */
+    public static ClockStore find(GraphDatabaseService db) {
+        ClockStore store = current;
+        if (store != null || missing)
+            return store;
+
+        synchronized (ClockStore.class) {
+            if (current != null || directory == null)
+                return current;
+
+            if (new File(directory, INDEX_FILE).exists())
+                return open(db);
+
+            missing = true;
+
+            return null;
+        }
+    }
+
+    /**
+     * Appends the clock of an event, replacing any previous one.
+     */
+    public synchronized void put(long nodeId, VectorClock vc, String timelineId) {
+        Map<String, Integer> times = vc.toMap();
+
+        int[] timelineIndexes = new int[times.size()];
+        int i = 0;
+        for (String timeline : times.keySet())
+            timelineIndexes[i++] = this.getTimelineIndex(timeline);
+        Arrays.sort(timelineIndexes);
+
+        int size = 2 * Integer.BYTES + times.size() * 2 * Integer.BYTES;
+        if (size > CHUNK_SIZE)
+            throw new RuntimeException("Clock of event " + nodeId + " does not fit in the clock store.");
+
+        long offset = this.data.getLong(0);
+        if ((offset >> CHUNK_BITS) != ((offset + size - 1) >> CHUNK_BITS))
+            offset = ((offset >> CHUNK_BITS) + 1) << CHUNK_BITS;
+
+        this.data.putInt(offset, this.getTimelineIndex(timelineId));
+        this.data.putInt(offset + Integer.BYTES, times.size());
+
+        long entry = offset + 2 * Integer.BYTES;
+        for (int timelineIndex : timelineIndexes) {
+            this.data.putInt(entry, timelineIndex);
+            this.data.putInt(entry + Integer.BYTES, times.get(this.timelines.get(timelineIndex)));
+            entry += 2 * Integer.BYTES;
+        }
+
+        this.data.putLong(0, offset + size);
+        this.index.putLong(nodeId * Long.BYTES, offset);
+    }
+
+    /**
+     * Writes the clocks appended so far, and the timelines they use, to disk. Called before every transaction
+     * commits, see {@link ClockStoreExtensionFactory}, since annotation removes the {@code vectorLogicalTime}
+     * properties of events whose clocks are in the store.
+     */
+    public void force() {
+        try {
+            if (this.timelinesWritten) {
+                this.timelinesWritten = false;
+                this.timelineOutput.getChannel().force(false);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write to the clock store: " + e.getMessage());
+        }
+
+        this.index.force();
+        this.data.force();
+    }
+
+    private synchronized void close() throws IOException {
+        this.force();
+
+        this.timelineWriter.close();
+        this.index.close();
+        this.data.close();
+    }
+
+    /**
+     * Drops the clock of an event, which is then read as having none.
+     */
+    public synchronized void remove(long nodeId) {
+        if (this.getOffset(nodeId) != 0)
+            this.index.putLong(nodeId * Long.BYTES, 0);
+    }
+
+    /**
+     * Clock of an event, or null when it has none in the store.
+     */
+    public VectorClock get(long nodeId) {
+        long offset = this.getOffset(nodeId);
+        if (offset == 0)
+            return null;
+
+        int entries = this.data.getInt(offset + Integer.BYTES);
+        Map<String, Integer> times = new HashMap<>(entries * 2);
+        for (int i = 0; i < entries; i++) {
+            long entry = offset + (2 + 2 * i) * Integer.BYTES;
+            times.put(this.timelines.get(this.data.getInt(entry)), this.data.getInt(entry + Integer.BYTES));
+        }
+
+        return new VectorClock(this.timelines.get(this.data.getInt(offset)), times);
+    }
+
+    public boolean contains(long nodeId) {
+        return this.getOffset(nodeId) != 0;
+    }
+
+    /**
+     * Whether the clock of an event is read from the store, i.e. it has one there and no {@code vectorLogicalTime}
+     * property, which takes precedence when written afterwards, e.g. by online annotation.
+     */
+    public boolean holds(Node node) {
+        return !node.hasProperty(LogicalTime.VECTOR_LOGICAL_TIME) && this.contains(node.getId());
+    }
+
+    /**
+     * Compares the stored clocks of two events in place, returning -1 when the first happened before the second,
+     * 1 when it happened after, 0 when the clocks are equal, and {@link Integer#MIN_VALUE} when they are concurrent.
+     */
+    public int compare(long firstNodeId, long secondNodeId) {
+        long first = this.getOffset(firstNodeId);
+        long second = this.getOffset(secondNodeId);
+        if (first == 0 || second == 0)
+            throw new RuntimeException("Event " + (first == 0 ? firstNodeId : secondNodeId) + " has no clock in the clock store.");
+
+        int firstEntries = this.data.getInt(first + Integer.BYTES);
+        int secondEntries = this.data.getInt(second + Integer.BYTES);
+        boolean firstLess = false;
+        boolean secondLess = false;
+
+        int i = 0;
+        int j = 0;
+        while (i < firstEntries || j < secondEntries) {
+            long firstEntry = first + (2 + 2 * i) * Integer.BYTES;
+            long secondEntry = second + (2 + 2 * j) * Integer.BYTES;
+            int firstTimeline = i < firstEntries ? this.data.getInt(firstEntry) : Integer.MAX_VALUE;
+            int secondTimeline = j < secondEntries ? this.data.getInt(secondEntry) : Integer.MAX_VALUE;
+
+            int firstTime = 0;
+            int secondTime = 0;
+            if (firstTimeline <= secondTimeline)
+                firstTime = this.data.getInt(firstEntry + Integer.BYTES);
+            if (secondTimeline <= firstTimeline)
+                secondTime = this.data.getInt(secondEntry + Integer.BYTES);
+
+            if (firstTimeline <= secondTimeline)
+                i++;
+            if (secondTimeline <= firstTimeline)
+                j++;
+
+            firstLess |= firstTime < secondTime;
+            secondLess |= secondTime < firstTime;
+
+            if (firstLess && secondLess)
+                return Integer.MIN_VALUE;
+        }
+
+        return firstLess ? -1 : secondLess ? 1 : 0;
+    }
+
+    /**
+     * Whether an event happened before another, according to their stored clocks.
+     */
+    public boolean lessThan(long firstNodeId, long secondNodeId) {
+        return this.compare(firstNodeId, secondNodeId) == -1;
+    }
+
+    /**
+     * Whether an event is on some causal path between two others, both included, according to their stored clocks.
+     */
+    public boolean withinCausalPath(long nodeId, long fromNodeId, long toNodeId) {
+        int fromOrder = this.compare(fromNodeId, nodeId);
+        int toOrder = this.compare(nodeId, toNodeId);
+
+        return fromOrder == 0 || toOrder == 0 || (fromOrder == -1 && toOrder == -1);
+    }
+
+    private long getOffset(long nodeId) {
+        long position = nodeId * Long.BYTES;
+
+        return position < this.index.size() ? this.index.getLong(position) : 0;
+    }
+
+    private int getTimelineIndex(String timelineId) {
+        Integer timelineIndex = this.timelineIndexes.get(timelineId);
+        if (timelineIndex != null)
+            return timelineIndex;
+
+        try {
+            this.timelineWriter.write(timelineId);
+            this.timelineWriter.write('\n');
+            this.timelineWriter.flush();
+            this.timelinesWritten = true;
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write to the clock store: " + e.getMessage());
+        }
+
+        this.timelines.add(timelineId);
+        this.timelineIndexes.put(timelineId, this.timelines.size() - 1);
+
+        return this.timelines.size() - 1;
+    }
+
+    /**
+     * File mapped in fixed size chunks, grown by mapping further chunks when written past its end. Chunks written
+     * since the last {@link #force()} are kept track of, so that only those are written to disk.
+     */
+    private static class MappedFile {
+        private final FileChannel channel;
+        private volatile MappedByteBuffer[] chunks;
+        private final Set<Integer> dirty;
+
+        MappedFile(File file) throws IOException {
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.chunks = new MappedByteBuffer[0];
+            this.dirty = ConcurrentHashMap.newKeySet();
+
+            long chunks = Math.max(1, (this.channel.size() + CHUNK_SIZE - 1) >> CHUNK_BITS);
+            this.grow((int) chunks);
+        }
+
+        long size() {
+            return (long) this.chunks.length << CHUNK_BITS;
+        }
+
+        int getInt(long position) {
+            return this.chunks[(int) (position >> CHUNK_BITS)].getInt((int) (position & (CHUNK_SIZE - 1)));
+        }
+
+        long getLong(long position) {
+            return this.chunks[(int) (position >> CHUNK_BITS)].getLong((int) (position & (CHUNK_SIZE - 1)));
+        }
+
+        void putInt(long position, int value) {
+            this.ensureCapacity(position + Integer.BYTES);
+            this.chunks[(int) (position >> CHUNK_BITS)].putInt((int) (position & (CHUNK_SIZE - 1)), value);
+            this.dirty.add((int) (position >> CHUNK_BITS));
+        }
+
+        void putLong(long position, long value) {
+            this.ensureCapacity(position + Long.BYTES);
+            this.chunks[(int) (position >> CHUNK_BITS)].putLong((int) (position & (CHUNK_SIZE - 1)), value);
+            this.dirty.add((int) (position >> CHUNK_BITS));
+        }
+
+        /**
+         * Writes the chunks written since the last call to disk. A chunk is marked after being written, so a
+         * chunk still being written is forced again by the next call.
+         */
+        void force() {
+            for (Iterator<Integer> chunks = this.dirty.iterator(); chunks.hasNext(); ) {
+                int chunk = chunks.next();
+                chunks.remove();
+                this.chunks[chunk].force();
+            }
+        }
+
+        void close() throws IOException {
+            this.chunks = new MappedByteBuffer[0];
+            this.channel.close();
+        }
+
+        private void ensureCapacity(long size) {
+            if (size > this.size())
+                this.grow((int) ((size + CHUNK_SIZE - 1) >> CHUNK_BITS));
+        }
+
+        private synchronized void grow(int count) {
+            if (count <= this.chunks.length)
+                return;
+
+            MappedByteBuffer[] chunks = Arrays.copyOf(this.chunks, count);
+            try {
+                for (int i = this.chunks.length; i < count; i++)
+                    chunks[i] = this.channel.map(FileChannel.MapMode.READ_WRITE, (long) i << CHUNK_BITS, CHUNK_SIZE);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not map the clock store: " + e.getMessage());
+            }
+
+            this.chunks = chunks;
+        }
+    }
+}
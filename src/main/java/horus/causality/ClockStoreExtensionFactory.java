@@ -0,0 +1,90 @@
+package horus.causality;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.spi.KernelContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Ties the {@link ClockStore} to the lifecycle of the database, opening it in the database directory and closing
+ * it when the database stops.
+ * <p>
+ * Before every transaction commits, clocks appended to the store are forced to disk, since annotation removes the
+ * {@code vectorLogicalTime} properties they replace in the same transaction. Once a deletion commits, the records
+ * of the deleted events are dropped, since records are keyed by node id, and ids of deleted nodes are reused.
+ */
+public class ClockStoreExtensionFactory extends KernelExtensionFactory<ClockStoreExtensionFactory.Dependencies> {
+
+    public interface Dependencies {
+        GraphDatabaseAPI graphdatabaseAPI();
+    }
+
+    public ClockStoreExtensionFactory() {
+        super(ExtensionType.DATABASE, "horus-clock-store");
+    }
+
+    @Override
+    public Lifecycle newInstance(KernelContext context, Dependencies dependencies) {
+        return new LifecycleAdapter() {
+            private DeletionHandler handler;
+
+            @Override
+            public void start() {
+                ClockStore.start(context.directory());
+
+                this.handler = new DeletionHandler(dependencies.graphdatabaseAPI());
+                dependencies.graphdatabaseAPI().registerTransactionEventHandler(this.handler);
+            }
+
+            @Override
+            public void stop() throws IOException {
+                dependencies.graphdatabaseAPI().unregisterTransactionEventHandler(this.handler);
+
+                ClockStore.stop();
+            }
+        };
+    }
+
+    private static class DeletionHandler extends TransactionEventHandler.Adapter<List<Long>> {
+        private final GraphDatabaseAPI db;
+
+        DeletionHandler(GraphDatabaseAPI db) {
+            this.db = db;
+        }
+
+        @Override
+        public List<Long> beforeCommit(TransactionData data) {
+            ClockStore store = ClockStore.find(this.db);
+            if (store == null)
+                return null;
+
+            store.force();
+
+            List<Long> deleted = new ArrayList<>();
+            for (Node node : data.deletedNodes())
+                deleted.add(node.getId());
+
+            return deleted.isEmpty() ? null : deleted;
+        }
+
+        @Override
+        public void afterCommit(TransactionData data, List<Long> deleted) {
+            if (deleted == null)
+                return;
+
+            ClockStore store = ClockStore.find(this.db);
+            for (long nodeId : deleted)
+                store.remove(nodeId);
+            store.force();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package horus.causality;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+
+/**
+ * Happens-before graph of the whole database held in primitive arrays, indexing {@code EVENT} nodes from 0 to
+ * {@link #size()} and keeping both children and parents in compressed sparse row form.
+ */
+public class CompactCausalGraph {
+    private static final Label EVENT = Label.label("EVENT");
+
+    private final long[] nodeIds;
+    private final LongIntHashMap indexes;
+
+    private final int[] childOffsets;
+    private final int[] children;
+    private final int[] parentOffsets;
+    private final int[] parents;
+
+    private CompactCausalGraph(long[] nodeIds, LongIntHashMap indexes, int[] sources, int[] targets) {
+        this.nodeIds = nodeIds;
+        this.indexes = indexes;
+
+        this.childOffsets = new int[nodeIds.length + 1];
+        this.children = new int[sources.length];
+        this.parentOffsets = new int[nodeIds.length + 1];
+        this.parents = new int[sources.length];
+
+        fillAdjacency(sources, targets, this.childOffsets, this.children);
+        fillAdjacency(targets, sources, this.parentOffsets, this.parents);
+    }
+
+    public static CompactCausalGraph load(GraphDatabaseService db) {
+        LongArrayList nodeIds = new LongArrayList();
+        LongIntHashMap indexes = new LongIntHashMap();
+
+        try (ResourceIterator<Node> nodes = db.findNodes(EVENT)) {
+            while (nodes.hasNext()) {
+                long nodeId = nodes.next().getId();
+                indexes.put(nodeId, nodeIds.size());
+                nodeIds.add(nodeId);
+            }
+        }
+
+        IntArrayList sources = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+        for (Relationship relationship : db.getAllRelationships()) {
+            if (!isHappensBefore(relationship) || !indexes.containsKey(relationship.getStartNodeId())
+                    || !indexes.containsKey(relationship.getEndNodeId()))
+                continue;
+
+            sources.add(indexes.getOrThrow(relationship.getStartNodeId()));
+            targets.add(indexes.getOrThrow(relationship.getEndNodeId()));
+        }
+
+        return new CompactCausalGraph(nodeIds.toArray(), indexes, sources.toArray(), targets.toArray());
+    }
+
+    public static boolean isHappensBefore(Relationship relationship) {
+        for (RelationshipType type : LogicalTime.HAPPENS_BEFORE) {
+            if (relationship.isType(type))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static void fillAdjacency(int[] from, int[] to, int[] offsets, int[] adjacency) {
+        for (int node : from)
+            offsets[node + 1]++;
+
+        for (int i = 1; i < offsets.length; i++)
+            offsets[i] += offsets[i - 1];
+
+        int[] next = new int[offsets.length - 1];
+        System.arraycopy(offsets, 0, next, 0, next.length);
+
+        for (int i = 0; i < from.length; i++)
+            adjacency[next[from[i]]++] = to[i];
+    }
+
+    public int size() {
+        return this.nodeIds.length;
+    }
+
+    public int getRelationshipCount() {
+        return this.children.length;
+    }
+
+    public long getNodeId(int index) {
+        return this.nodeIds[index];
+    }
+
+    public int getIndex(long nodeId) {
+        return this.indexes.getOrThrow(nodeId);
+    }
+
+    public boolean contains(long nodeId) {
+        return this.indexes.containsKey(nodeId);
+    }
+
+    public int getOutDegree(int index) {
+        return this.childOffsets[index + 1] - this.childOffsets[index];
+    }
+
+    public int getChild(int index, int i) {
+        return this.children[this.childOffsets[index] + i];
+    }
+
+    public int getInDegree(int index) {
+        return this.parentOffsets[index + 1] - this.parentOffsets[index];
+    }
+
+    public int getParent(int index, int i) {
+        return this.parents[this.parentOffsets[index] + i];
+    }
+
+    /**
+     * Weakly connected component of every node, identified by one of its nodes.
+     */
+    public int[] weaklyConnectedComponents() {
+        int[] components = new int[this.size()];
+        for (int i = 0; i < components.length; i++)
+            components[i] = i;
+
+        for (int node = 0; node < this.size(); node++) {
+            for (int i = 0; i < this.getOutDegree(node); i++) {
+                int a = find(components, node);
+                int b = find(components, this.getChild(node, i));
+
+                if (a != b)
+                    components[Math.max(a, b)] = Math.min(a, b);
+            }
+        }
+
+        for (int node = 0; node < components.length; node++)
+            components[node] = find(components, node);
+
+        return components;
+    }
+
+    private static int find(int[] components, int node) {
+        int root = node;
+        while (components[root] != root)
+            root = components[root];
+
+        while (components[node] != root) {
+            int next = components[node];
+            components[node] = root;
+            node = next;
+        }
+
+        return root;
+    }
+}
@@ -0,0 +1,50 @@
+package horus.causality;
+
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Filters on the events returned by the causality queries, built from their {@code labels} and {@code hosts}
+ * options. An event passes when it has any of the labels and belongs to any of the hosts, when given.
+ */
+public class EventFilter implements Predicate<Node> {
+    private final List<Label> labels;
+    private final Set<String> hosts;
+
+    @SuppressWarnings("unchecked")
+    public EventFilter(Map<String, Object> config) {
+        List<String> labelNames = (List<String>) config.get("labels");
+        List<String> hostNames = (List<String>) config.get("hosts");
+
+        this.labels = new ArrayList<>();
+        if (labelNames != null) {
+            for (String labelName : labelNames)
+                this.labels.add(Label.label(labelName));
+        }
+
+        this.hosts = hostNames != null ? new HashSet<>(hostNames) : null;
+    }
+
+    @Override
+    public boolean test(Node node) {
+        if (this.hosts != null && !this.hosts.contains(node.getProperty("host", null)))
+            return false;
+
+        if (this.labels.isEmpty())
+            return true;
+
+        for (Label label : this.labels) {
+            if (node.hasLabel(label))
+                return true;
+        }
+
+        return false;
+    }
+}
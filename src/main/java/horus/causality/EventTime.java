@@ -0,0 +1,118 @@
+package horus.causality;
+
+import horus.BloomClock;
+import horus.IntervalTreeClock;
+import horus.LogicalClock;
+import horus.VectorClock;
+import org.neo4j.graphdb.Node;
+
+/**
+ * Logical time computed for a single event.
+ */
+public class EventTime {
+    private final Node node;
+    private final LogicalClock clock;
+    private final long lamportTime;
+    private String chainId;
+    private BloomClock bloomClock;
+    private Long hybridTime;
+    private ClockStore clockStore;
+
+    public EventTime(Node node, LogicalClock clock, long lamportTime) {
+        this.node = node;
+        this.clock = clock;
+        this.lamportTime = lamportTime;
+    }
+
+    public EventTime(Node node, LogicalClock clock, long lamportTime, String chainId) {
+        this(node, clock, lamportTime);
+        this.chainId = chainId;
+    }
+
+    public Node getNode() {
+        return this.node;
+    }
+
+    /**
+     * Vector or interval tree clock of the event, or null when only Lamport time was computed.
+     */
+    public LogicalClock getClock() {
+        return this.clock;
+    }
+
+    public VectorClock getVectorClock() {
+        return this.clock instanceof VectorClock ? (VectorClock) this.clock : null;
+    }
+
+    public IntervalTreeClock getIntervalTreeClock() {
+        return this.clock instanceof IntervalTreeClock ? (IntervalTreeClock) this.clock : null;
+    }
+
+    public long getLamportTime() {
+        return this.lamportTime;
+    }
+
+    /**
+     * Chain indexing the event in its vector clock, when clocks are indexed by chain instead of by timeline.
+     */
+    public String getChainId() {
+        return this.chainId;
+    }
+
+    /**
+     * Approximate clock of the event, when Bloom clocks are annotated.
+     */
+    public BloomClock getBloomClock() {
+        return this.bloomClock;
+    }
+
+    void setBloomClock(BloomClock bloomClock) {
+        this.bloomClock = bloomClock;
+    }
+
+    /**
+     * Hybrid logical time of the event, when hybrid logical clocks are annotated.
+     */
+    public Long getHybridTime() {
+        return this.hybridTime;
+    }
+
+    void setHybridTime(Long hybridTime) {
+        this.hybridTime = hybridTime;
+    }
+
+    void setClockStore(ClockStore clockStore) {
+        this.clockStore = clockStore;
+    }
+
+    /**
+     * Persists the computed logical time in the event properties, and its vector clock in the clock store when
+     * one was given.
+     */
+    public void write() {
+        if (this.clock instanceof VectorClock) {
+            VectorClock vc = (VectorClock) this.clock;
+            String timelineId = this.chainId != null ? this.chainId : (String) this.node.getProperty(LogicalTime.THREAD_ID);
+
+            if (this.clockStore != null) {
+                this.clockStore.put(this.node.getId(), vc, timelineId);
+                this.node.removeProperty(LogicalTime.VECTOR_LOGICAL_TIME);
+            } else
+                LogicalTime.setVectorClock(this.node, vc);
+
+            LogicalTime.setTimelineSequence(this.node, vc.getTime(timelineId));
+        } else if (this.clock instanceof IntervalTreeClock)
+            LogicalTime.setIntervalTreeClock(this.node, (IntervalTreeClock) this.clock);
+
+        LogicalTime.setLamportTime(this.node, this.lamportTime);
+
+        if (this.chainId != null)
+            this.node.setProperty(LogicalTime.CHAIN_ID, this.chainId);
+
+        if (this.bloomClock != null)
+            LogicalTime.setBloomClock(this.node, this.bloomClock);
+
+        if (this.hybridTime != null)
+            LogicalTime.setHybridTime(this.node, this.hybridTime);
+    }
+}
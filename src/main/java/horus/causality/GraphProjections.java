@@ -0,0 +1,61 @@
+package horus.causality;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Keeps the {@link CausalGraphProjection graph projections} loaded in this instance, by name, until dropped.
+ */
+public class GraphProjections {
+
+    private static GraphProjections instance = null;
+
+    private final Map<String, CausalGraphProjection> projections;
+
+    public static synchronized GraphProjections getInstance() {
+        if (instance == null) {
+            instance = new GraphProjections();
+        }
+
+        return instance;
+    }
+
+    public GraphProjections() {
+        this.projections = new ConcurrentSkipListMap<>();
+    }
+
+    /**
+     * Loads a projection, replacing any previous one of the same name.
+     */
+    public CausalGraphProjection load(String name, GraphDatabaseService db) {
+        CausalGraphProjection projection = CausalGraphProjection.load(name, db);
+        this.projections.put(name, projection);
+
+        return projection;
+    }
+
+    public CausalGraphProjection drop(String name) {
+        CausalGraphProjection projection = this.projections.remove(name);
+
+        if (projection == null)
+            throw new IllegalArgumentException("There is no graph projection named '" + name + "'.");
+
+        return projection;
+    }
+
+    public Collection<CausalGraphProjection> getProjections() {
+        return this.projections.values();
+    }
+
+    public CausalGraphProjection getProjection(String name) {
+        CausalGraphProjection projection = this.projections.get(name);
+
+        if (projection == null)
+            throw new IllegalArgumentException("There is no graph projection named '" + name + "', load it with horus.graph.load.");
+
+        return projection;
+    }
+}
@@ -0,0 +1,79 @@
+package horus.causality;
+
+import java.util.Arrays;
+
+/**
+ * HyperLogLog sketch of a set of longs, estimating its cardinality with a relative standard error of about
+ * {@code 1.04 / sqrt(2^precision)} in {@code 2^precision} bytes. Sketches of the same precision are merged
+ * into the sketch of the union of their sets.
+ */
+public class HyperLogLog {
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18)
+            throw new IllegalArgumentException("precision must be between 4 and 18.");
+
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(HyperLogLog sketch) {
+        this.precision = sketch.precision;
+        this.registers = Arrays.copyOf(sketch.registers, sketch.registers.length);
+    }
+
+    public HyperLogLog copy() {
+        return new HyperLogLog(this);
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        int register = (int) (hash >>> (Long.SIZE - this.precision));
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << this.precision) | (1L << (this.precision - 1))) + 1);
+
+        if (rank > this.registers[register])
+            this.registers[register] = rank;
+    }
+
+    public void merge(HyperLogLog sketch) {
+        if (sketch.precision != this.precision)
+            throw new IllegalArgumentException("Cannot merge sketches of different precisions.");
+
+        for (int i = 0; i < this.registers.length; i++) {
+            if (sketch.registers[i] > this.registers[i])
+                this.registers[i] = sketch.registers[i];
+        }
+    }
+
+    public long estimate() {
+        int m = this.registers.length;
+        double sum = 0;
+        int zeros = 0;
+
+        for (byte register : this.registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                zeros++;
+        }
+
+        double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+
+        // Small ranges are better estimated by linear counting of the empty registers.
+        if (estimate <= 2.5 * m && zeros > 0)
+            estimate = m * Math.log((double) m / zeros);
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * Finalizer of SplitMix64, spreading consecutive values over every bit.
+     */
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,102 @@
+package horus.causality;
+
+import horus.IntervalTreeClock.Id;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the interval tree clock ids owned by each timeline while events are visited in topological order.
+ * <p>
+ * An event whose child starts another timeline forks its id, handing half of it to that child. Once a timeline
+ * ended, its id is summed back into the id of the first event that has one of its events as parent, so ids of
+ * ended timelines are reclaimed by joins. Timelines started by root events get fresh ids, allocated so that
+ * the n-th one is about 2 log(n) levels deep.
+ */
+public class IntervalTreeIds {
+    private final Map<String, Id> liveIds;
+    private final Map<String, Id> endedIds;
+    private final Map<Long, Id> forkedIds;
+    private int rootCount;
+
+    public IntervalTreeIds() {
+        this.liveIds = new HashMap<>();
+        this.endedIds = new HashMap<>();
+        this.forkedIds = new HashMap<>();
+    }
+
+    /**
+     * Id owned by the given event, which is removed from its timeline until {@link #release} is called.
+     */
+    public synchronized Id acquire(Node node, String timelineId, List<EventTime> parentTimes) {
+        Id id = this.liveIds.remove(timelineId);
+
+        Id forked = this.forkedIds.remove(node.getId());
+        if (forked != null)
+            id = id == null ? forked : id.sum(forked);
+
+        for (EventTime parentTime : parentTimes) {
+            Object parentTimelineId = parentTime.getNode().getProperty(LogicalTime.THREAD_ID, null);
+            Id ended = this.endedIds.remove(parentTimelineId);
+
+            if (ended != null)
+                id = id == null ? ended : id.sum(ended);
+        }
+
+        return id != null ? id : this.newRootId();
+    }
+
+    /**
+     * Hands the id back to the timeline of the given event once its clock was computed, forking it for every
+     * child that starts another timeline.
+     */
+    public synchronized void release(Node node, String timelineId, Id id, boolean lastOfTimeline) {
+        for (Relationship relationship : LogicalTime.getChildRelationships(node)) {
+            Node child = relationship.getEndNode();
+            Object childTimelineId = child.getProperty(LogicalTime.THREAD_ID, null);
+
+            if (timelineId.equals(childTimelineId) || !startsTimeline(child, childTimelineId))
+                continue;
+
+            Id[] halves = id.split();
+            id = halves[0];
+            this.forkedIds.merge(child.getId(), halves[1], Id::sum);
+        }
+
+        if (lastOfTimeline)
+            this.endedIds.merge(timelineId, id, Id::sum);
+        else
+            this.liveIds.put(timelineId, id);
+    }
+
+    private static boolean startsTimeline(Node node, Object timelineId) {
+        for (Relationship relationship : LogicalTime.getParentRelationships(node)) {
+            if (relationship.getStartNode().getProperty(LogicalTime.THREAD_ID, "").equals(timelineId))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Id of the n-th root, the path of which in the id tree is an Elias gamma code of n: k left turns, a right
+     * turn, and then the k lower bits of n, where k is the position of its highest bit.
+     */
+    private Id newRootId() {
+        long n = ++this.rootCount;
+        int k = 63 - Long.numberOfLeadingZeros(n);
+
+        Id id = Id.ONE;
+        for (int bit = 0; bit < k; bit++)
+            id = ((n >> bit) & 1) == 0 ? Id.of(id, Id.ZERO) : Id.of(Id.ZERO, id);
+
+        id = Id.of(Id.ZERO, id);
+        for (int i = 0; i < k; i++)
+            id = Id.of(id, Id.ZERO);
+
+        return id;
+    }
+}
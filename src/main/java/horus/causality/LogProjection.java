@@ -0,0 +1,201 @@
+package horus.causality;
+
+import horus.VectorClock;
+import org.neo4j.graphdb.*;
+
+import java.util.*;
+
+/**
+ * Persisted projection of the happens-before graph on its LOG events, optionally only those of some hosts.
+ * <p>
+ * Every event gets a {@code logVectorLogicalTime}, a vector clock only incremented by projected LOG events, which
+ * also get their position among their timeline's projected events, {@code logTimelineSequence}. Projected events
+ * are linked by {@code LOG_HAPPENS_BEFORE} relationships to their direct log-level predecessors only, i.e. the
+ * transitive reduction of happens-before restricted to them, so that log-level queries never read kernel events.
+ * <p>
+ * The hosts a projection was made for are kept in a single {@code LOG_PROJECTION} node, so that events annotated
+ * later, e.g. by the {@link horus.online.OnlineLogicalTimeAnnotator}, are projected the same way.
+ */
+public class LogProjection {
+    public static final Label LOG = Label.label("LOG");
+    public static final Label LOG_PROJECTION = Label.label("LOG_PROJECTION");
+    public static final RelationshipType LOG_HAPPENS_BEFORE = RelationshipType.withName("LOG_HAPPENS_BEFORE");
+    public static final String LOG_VECTOR_LOGICAL_TIME = "logVectorLogicalTime";
+    public static final String LOG_TIMELINE_SEQUENCE = "logTimelineSequence";
+
+    private static final String HOSTS = "hosts";
+
+    private final GraphDatabaseService db;
+    private final Set<String> hosts;
+
+    private LogProjection(GraphDatabaseService db, String[] hosts) {
+        this.db = db;
+        this.hosts = hosts.length > 0 ? new HashSet<>(Arrays.asList(hosts)) : null;
+    }
+
+    /**
+     * The projection kept in the graph, or null if there is none.
+     */
+    public static LogProjection find(GraphDatabaseService db) {
+        try (ResourceIterator<Node> nodes = db.findNodes(LOG_PROJECTION)) {
+            if (!nodes.hasNext())
+                return null;
+
+            return new LogProjection(db, (String[]) nodes.next().getProperty(HOSTS, new String[0]));
+        }
+    }
+
+    /**
+     * Removes any projection kept in the graph, and records a new empty one for the given hosts, or for every
+     * host when none is given.
+     */
+    public static LogProjection create(GraphDatabaseService db, List<String> hosts) {
+        drop(db);
+
+        String[] hostArray = hosts.toArray(new String[0]);
+        db.createNode(LOG_PROJECTION).setProperty(HOSTS, hostArray);
+
+        return new LogProjection(db, hostArray);
+    }
+
+    /**
+     * Removes the projection kept in the graph, returning the number of relationships deleted.
+     */
+    public static long drop(GraphDatabaseService db) {
+        long deleted = db.execute("MATCH ()-[r:LOG_HAPPENS_BEFORE]->() DELETE r RETURN count(r) AS deleted")
+                .<Long>columnAs("deleted").next();
+
+        db.execute("MATCH (n:EVENT) WHERE exists(n.logVectorLogicalTime) " +
+                "REMOVE n.logVectorLogicalTime, n.logTimelineSequence").close();
+        db.execute("MATCH (n:LOG_PROJECTION) DELETE n").close();
+
+        return deleted;
+    }
+
+    /**
+     * Whether the given event is part of the projection.
+     */
+    public boolean includes(Node node) {
+        if (!node.hasLabel(LOG))
+            return false;
+
+        return this.hosts == null || this.hosts.contains(node.getProperty("host", null));
+    }
+
+    public boolean matches(List<String> hosts) {
+        return hosts.isEmpty() ? this.hosts == null : new HashSet<>(hosts).equals(this.hosts);
+    }
+
+    public static VectorClock getLogVectorClock(Node node) {
+        if (!node.hasProperty(LOG_VECTOR_LOGICAL_TIME))
+            return null;
+
+        return LogicalTime.parseVectorClock((String) node.getProperty(LogicalTime.THREAD_ID), (String) node.getProperty(LOG_VECTOR_LOGICAL_TIME));
+    }
+
+    public static Long getLogTimelineSequence(Node node) {
+        return (Long) node.getProperty(LOG_TIMELINE_SEQUENCE, null);
+    }
+
+    /**
+     * Projects every annotated event, in Lamport time order, which is topological, returning the number of events
+     * included. The given check runs before each event, e.g. to stop when the transaction is terminated.
+     */
+    public long projectAll(Runnable check) {
+        long included = 0;
+
+        try (Result events = this.db.execute("MATCH (n:EVENT) RETURN n ORDER BY n.lamportLogicalTime")) {
+            while (events.hasNext()) {
+                check.run();
+
+                Node node = (Node) events.next().get("n");
+                if (LogicalTime.getLamportTime(node) == null)
+                    throw new RuntimeException("Event " + node.getId() + " has no logical time, annotate it with horus.annotateLogicalTime first.");
+
+                this.project(node);
+                if (this.includes(node))
+                    included++;
+            }
+        }
+
+        return included;
+    }
+
+    /**
+     * Projects the given event, whose parents must already be projected, returning whether its log-level clock
+     * changed. A projected event has its {@code LOG_HAPPENS_BEFORE} relationships from its predecessors replaced.
+     * <p>
+     * Later events whose own clock is left unchanged by the update keep their relationships, which may then be
+     * redundant until the next {@code horus.projectLogs()}, without changing which events reach which.
+     */
+    public boolean project(Node node) {
+        String timelineId = (String) node.getProperty(LogicalTime.THREAD_ID);
+
+        VectorClock vc = new VectorClock(timelineId);
+        for (Relationship relationship : LogicalTime.getParentRelationships(node)) {
+            VectorClock parentClock = getLogVectorClock(relationship.getStartNode());
+            if (parentClock == null)
+                throw new RuntimeException("Event " + relationship.getStartNodeId() + " is not projected yet, project events in topological order.");
+
+            vc.mergeWithoutIncrement(parentClock);
+        }
+
+        boolean included = this.includes(node);
+        if (included)
+            vc.increment();
+
+        VectorClock current = getLogVectorClock(node);
+        if (current != null && current.equals(vc))
+            return false;
+
+        node.setProperty(LOG_VECTOR_LOGICAL_TIME, LogicalTime.formatVectorClock(vc));
+
+        if (included) {
+            node.setProperty(LOG_TIMELINE_SEQUENCE, (long) vc.getTime(timelineId));
+            this.link(node, timelineId, vc);
+        }
+
+        return true;
+    }
+
+    /**
+     * Links a projected event to its direct log-level predecessors. The latest projected event of each timeline
+     * in its log clock is a candidate, and a candidate is only direct when no other candidate has it in its past.
+     */
+    private void link(Node node, String timelineId, VectorClock vc) {
+        for (Relationship relationship : node.getRelationships(Direction.INCOMING, LOG_HAPPENS_BEFORE))
+            relationship.delete();
+
+        List<Node> candidates = new ArrayList<>();
+        List<VectorClock> candidateClocks = new ArrayList<>();
+        vc.toMap().forEach((timeline, sequence) -> {
+            Node candidate = this.get(timeline, timeline.equals(timelineId) ? sequence - 1 : sequence);
+            if (candidate != null) {
+                candidates.add(candidate);
+                candidateClocks.add(getLogVectorClock(candidate));
+            }
+        });
+
+        for (int i = 0; i < candidates.size(); i++) {
+            Node candidate = candidates.get(i);
+            String candidateTimeline = (String) candidate.getProperty(LogicalTime.THREAD_ID);
+            long candidateSequence = getLogTimelineSequence(candidate);
+
+            boolean direct = true;
+            for (int j = 0; j < candidates.size() && direct; j++)
+                direct = i == j || candidateClocks.get(j).getTime(candidateTimeline) < candidateSequence;
+
+            if (direct)
+                candidate.createRelationshipTo(node, LOG_HAPPENS_BEFORE);
+        }
+    }
+
+    private Node get(String timelineId, long sequence) {
+        if (sequence < 1)
+            return null;
+
+        try (ResourceIterator<Node> nodes = this.db.findNodes(LOG, LogicalTime.THREAD_ID, timelineId, LOG_TIMELINE_SEQUENCE, sequence)) {
+            return nodes.hasNext() ? nodes.next() : null;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package horus.causality;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import horus.BloomClock;
+import horus.IntervalTreeClock;
+import horus.LogicalClock;
+import horus.VectorClock;
+import org.neo4j.graphdb.Direction;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes the logical time properties assigned to events, and computes the logical time
+ * of an event from the logical time of its direct causal parents.
+ */
+public class LogicalTime {
+    public static final String VECTOR_LOGICAL_TIME = "vectorLogicalTime";
+    public static final String ITC_LOGICAL_TIME = "itcLogicalTime";
+    public static final String BLOOM_LOGICAL_TIME = "bloomLogicalTime";
+    public static final String HYBRID_LOGICAL_TIME = "hybridLogicalTime";
+    public static final String LAMPORT_LOGICAL_TIME = "lamportLogicalTime";
+    public static final String THREAD_ID = "threadId";
+    public static final String CHAIN_ID = "chainId";
+    public static final String KERNEL_TIME = "kernelTime";
+    public static final String TIMELINE_SEQUENCE = "timelineSequence";
+
+    /**
+     * Bits of a hybrid logical time holding its logical counter, below the physical time in microseconds.
+     */
+    public static final int HYBRID_COUNTER_BITS = 16;
+
+    public static final RelationshipType[] HAPPENS_BEFORE = {
+            RelationshipType.withName("HAPPENS_BEFORE"),
+            RelationshipType.withName("happens_before")
+    };
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static boolean hasLogicalTime(Node node) {
+        return hasVectorClock(node) && node.hasProperty(LAMPORT_LOGICAL_TIME);
+    }
+
+    /**
+     * Whether an event has a vector clock, either in its properties or in the {@link ClockStore}.
+     */
+    public static boolean hasVectorClock(Node node) {
+        if (node.hasProperty(VECTOR_LOGICAL_TIME))
+            return true;
+
+        ClockStore store = ClockStore.find(node.getGraphDatabase());
+
+        return store != null && store.contains(node.getId());
+    }
+
+    /**
+     * Clock of an event, whichever representation it was annotated with, or null if it has none.
+     */
+    public static LogicalClock getClock(Node node) {
+        if (node.hasProperty(ITC_LOGICAL_TIME))
+            return getIntervalTreeClock(node);
+
+        return getVectorClock(node);
+    }
+
+    public static VectorClock getVectorClock(Node node) {
+        if (!node.hasProperty(VECTOR_LOGICAL_TIME)) {
+            ClockStore store = ClockStore.find(node.getGraphDatabase());
+
+            return store != null ? store.get(node.getId()) : null;
+        }
+
+        return parseVectorClock((String) node.getProperty(THREAD_ID), (String) node.getProperty(VECTOR_LOGICAL_TIME));
+    }
+
+    public static VectorClock parseVectorClock(String timelineId, String json) {
+        JsonNode time;
+        try {
+            time = objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not get vectorLogicalTime property.");
+        }
+
+        Map<String, Integer> timeMap = new HashMap<>();
+        time.fields().forEachRemaining(entry -> {
+            if (!entry.getValue().isInt())
+                throw new RuntimeException("Unexpected values in vectorLogicalTime field.");
+
+            timeMap.put(entry.getKey(), entry.getValue().intValue());
+        });
+
+        return new VectorClock(timelineId, timeMap);
+    }
+
+    public static void setVectorClock(Node node, VectorClock vc) {
+        node.setProperty(VECTOR_LOGICAL_TIME, formatVectorClock(vc));
+    }
+
+    public static String formatVectorClock(VectorClock vc) {
+        try {
+            return objectMapper.writeValueAsString(vc.toMap());
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Could not set vectorLogicalTime property: " + e.getMessage());
+        }
+    }
+
+    public static IntervalTreeClock getIntervalTreeClock(Node node) {
+        if (!node.hasProperty(ITC_LOGICAL_TIME))
+            return null;
+
+        return IntervalTreeClock.parse((String) node.getProperty(ITC_LOGICAL_TIME));
+    }
+
+    public static void setIntervalTreeClock(Node node, IntervalTreeClock itc) {
+        node.setProperty(ITC_LOGICAL_TIME, itc.toString());
+    }
+
+    public static BloomClock getBloomClock(Node node) {
+        if (!node.hasProperty(BLOOM_LOGICAL_TIME))
+            return null;
+
+        return new BloomClock((int[]) node.getProperty(BLOOM_LOGICAL_TIME));
+    }
+
+    public static void setBloomClock(Node node, BloomClock bc) {
+        node.setProperty(BLOOM_LOGICAL_TIME, bc.getCounters());
+    }
+
+    /**
+     * Timeline indexing an event in its vector clock: its chain, when clocks are indexed by chain, or its thread.
+     */
+    public static String getTimelineId(Node node) {
+        return (String) node.getProperty(CHAIN_ID, node.getProperty(THREAD_ID, null));
+    }
+
+    /**
+     * Position of an event in its timeline, starting at 1, which is also the entry of its timeline in its vector clock.
+     */
+    public static Long getTimelineSequence(Node node) {
+        return (Long) node.getProperty(TIMELINE_SEQUENCE, null);
+    }
+
+    public static void setTimelineSequence(Node node, long sequence) {
+        node.setProperty(TIMELINE_SEQUENCE, sequence);
+    }
+
+    public static Long getLamportTime(Node node) {
+        return (Long) node.getProperty(LAMPORT_LOGICAL_TIME, null);
+    }
+
+    public static void setLamportTime(Node node, long lc) {
+        node.setProperty(LAMPORT_LOGICAL_TIME, lc);
+    }
+
+    public static Long getHybridTime(Node node) {
+        return (Long) node.getProperty(HYBRID_LOGICAL_TIME, null);
+    }
+
+    public static void setHybridTime(Node node, long hlc) {
+        node.setProperty(HYBRID_LOGICAL_TIME, hlc);
+    }
+
+    /**
+     * Smallest hybrid logical time at the given kernel time, in nanoseconds.
+     */
+    public static long toHybridTime(long kernelTime) {
+        return (kernelTime / 1000) << HYBRID_COUNTER_BITS;
+    }
+
+    /**
+     * Kernel time, in nanoseconds truncated to microseconds, of the physical part of a hybrid logical time.
+     */
+    public static long toKernelTime(long hlc) {
+        return (hlc >> HYBRID_COUNTER_BITS) * 1000;
+    }
+
+    public static Iterable<Relationship> getParentRelationships(Node node) {
+        return node.getRelationships(Direction.INCOMING, HAPPENS_BEFORE);
+    }
+
+    public static Iterable<Relationship> getChildRelationships(Node node) {
+        return node.getRelationships(Direction.OUTGOING, HAPPENS_BEFORE);
+    }
+
+    /**
+     * Vector clock of an event given its parents' clocks: the component-wise maximum of every parent
+     * clock, incremented on the event's own timeline.
+     */
+    public static VectorClock nextVectorClock(String timelineId, Iterable<VectorClock> parentClocks) {
+        VectorClock vc = new VectorClock(timelineId);
+
+        for (VectorClock parentClock : parentClocks)
+            vc.mergeWithoutIncrement(parentClock);
+
+        return vc.increment();
+    }
+
+    /**
+     * Hybrid logical time of an event given its kernel time and its parents' hybrid logical times: the
+     * event's own physical time with a zero counter, unless some parent is already at or past it, in which
+     * case the latest parent's time with its counter incremented.
+     */
+    public static long nextHybridTime(long kernelTime, Iterable<Long> parentTimes) {
+        long hlc = toHybridTime(kernelTime);
+
+        for (Long parentTime : parentTimes)
+            hlc = Math.max(hlc, parentTime + 1);
+
+        return hlc;
+    }
+
+    /**
+     * Lamport time of an event given its parents' Lamport times.
+     */
+    public static long nextLamportTime(Iterable<Long> parentTimes) {
+        long lc = 0L;
+
+        for (Long parentTime : parentTimes)
+            lc = Math.max(lc, parentTime);
+
+        return lc + 1;
+    }
+}
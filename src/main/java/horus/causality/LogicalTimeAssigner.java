@@ -0,0 +1,145 @@
+package horus.causality;
+
+import horus.BloomClock;
+import horus.IntervalTreeClock;
+import horus.LogicalClock;
+import horus.VectorClock;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Computes the logical time of an event from the logical time of its parents, according to the clocks
+ * selected in the {@link AnnotationOptions}.
+ */
+public class LogicalTimeAssigner {
+    private final AnnotationOptions options;
+    private final AnnotationOptions.Clock clock;
+    private final ChainDecomposition chains;
+    private final IntervalTreeIds intervalTreeIds;
+    private ClockStore clockStore;
+
+    public LogicalTimeAssigner(AnnotationOptions options) {
+        this.options = options;
+        this.clock = options.getClock();
+        this.chains = this.clock == AnnotationOptions.Clock.CHAIN ? new ChainDecomposition() : null;
+        this.intervalTreeIds = this.clock == AnnotationOptions.Clock.ITC ? new IntervalTreeIds() : null;
+    }
+
+    public EventTime assign(Node node, List<EventTime> parentTimes) {
+        if (!node.hasProperty(LogicalTime.THREAD_ID))
+            throw new RuntimeException("Event " + node.getId() + " has no threadId property.");
+
+        List<Long> parentLamportTimes = new ArrayList<>(parentTimes.size());
+        for (EventTime parentTime : parentTimes)
+            parentLamportTimes.add(parentTime.getLamportTime());
+
+        long lc = LogicalTime.nextLamportTime(parentLamportTimes);
+        String timelineId = (String) node.getProperty(LogicalTime.THREAD_ID);
+
+        EventTime time = this.assignClock(node, timelineId, parentTimes, lc);
+
+        if (this.options.isClockStore() && time.getVectorClock() != null) {
+            if (this.clockStore == null)
+                this.clockStore = ClockStore.open(node.getGraphDatabase());
+
+            time.setClockStore(this.clockStore);
+        }
+
+        if (this.options.isBloom())
+            time.setBloomClock(this.assignBloomClock(timelineId, parentTimes));
+
+        if (this.options.isHybrid()) {
+            List<Long> parentHybridTimes = new ArrayList<>(parentTimes.size());
+            for (EventTime parentTime : parentTimes)
+                parentHybridTimes.add(parentTime.getHybridTime());
+
+            long kernelTime = ((Number) node.getProperty(LogicalTime.KERNEL_TIME, 0L)).longValue();
+            time.setHybridTime(LogicalTime.nextHybridTime(kernelTime, parentHybridTimes));
+        }
+
+        return time;
+    }
+
+    private EventTime assignClock(Node node, String timelineId, List<EventTime> parentTimes, long lc) {
+        if (this.clock == AnnotationOptions.Clock.LAMPORT || this.clock == AnnotationOptions.Clock.BLOOM)
+            return new EventTime(node, null, lc);
+
+        if (this.clock == AnnotationOptions.Clock.ITC)
+            return new EventTime(node, this.assignIntervalTreeClock(node, timelineId, parentTimes), lc);
+
+        List<VectorClock> parentClocks = new ArrayList<>(parentTimes.size());
+        for (EventTime parentTime : parentTimes)
+            parentClocks.add(parentTime.getVectorClock());
+
+        if (this.clock == AnnotationOptions.Clock.VECTOR)
+            return new EventTime(node, LogicalTime.nextVectorClock(timelineId, parentClocks), lc);
+
+        VectorClock past = new VectorClock(timelineId);
+        for (VectorClock parentClock : parentClocks)
+            past.mergeWithoutIncrement(parentClock);
+
+        String chainId = this.chains.getChain(timelineId, past);
+        VectorClock vc = new VectorClock(chainId, past.toMap()).increment();
+        this.chains.advance(timelineId, chainId, vc.getTime(chainId), isLastOfTimeline(node, timelineId));
+
+        return new EventTime(node, vc, lc, chainId);
+    }
+
+    private BloomClock assignBloomClock(String timelineId, List<EventTime> parentTimes) {
+        BloomClock bc = new BloomClock(this.options.getBloomSize());
+        for (EventTime parentTime : parentTimes)
+            bc.mergeWithoutIncrement(parentTime.getBloomClock());
+
+        return bc.increment(timelineId, this.options.getBloomHashes());
+    }
+
+    private IntervalTreeClock assignIntervalTreeClock(Node node, String timelineId, List<EventTime> parentTimes) {
+        IntervalTreeClock past = IntervalTreeClock.ZERO;
+        for (EventTime parentTime : parentTimes)
+            past = past.join(parentTime.getIntervalTreeClock());
+
+        IntervalTreeClock.Id id = this.intervalTreeIds.acquire(node, timelineId, parentTimes);
+        IntervalTreeClock itc = past.event(id);
+        this.intervalTreeIds.release(node, timelineId, id, isLastOfTimeline(node, timelineId));
+
+        return itc;
+    }
+
+    private static boolean isLastOfTimeline(Node node, String timelineId) {
+        for (Relationship relationship : LogicalTime.getChildRelationships(node)) {
+            if (timelineId.equals(relationship.getEndNode().getProperty(LogicalTime.THREAD_ID, null)))
+                return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Logical time already stored in the properties of an event.
+     */
+    public EventTime read(Node node) {
+        Long lc = LogicalTime.getLamportTime(node);
+
+        LogicalClock clock = null;
+        if (this.clock == AnnotationOptions.Clock.ITC)
+            clock = LogicalTime.getIntervalTreeClock(node);
+        else if (this.clock != AnnotationOptions.Clock.LAMPORT && this.clock != AnnotationOptions.Clock.BLOOM)
+            clock = LogicalTime.getVectorClock(node);
+
+        BloomClock bc = this.options.isBloom() ? LogicalTime.getBloomClock(node) : null;
+        Long hlc = this.options.isHybrid() ? LogicalTime.getHybridTime(node) : null;
+
+        if (lc == null || (clock == null && this.clock != AnnotationOptions.Clock.LAMPORT && this.clock != AnnotationOptions.Clock.BLOOM)
+                || (bc == null && this.options.isBloom()) || (hlc == null && this.options.isHybrid()))
+            throw new RuntimeException("Parent event " + node.getId() + " has no logical time.");
+
+        EventTime time = new EventTime(node, clock, lc);
+        time.setBloomClock(bc);
+        time.setHybridTime(hlc);
+
+        return time;
+    }
+}
@@ -0,0 +1,313 @@
+package horus.causality;
+
+import horus.LogicalClock;
+import horus.VectorClock;
+import org.neo4j.graphdb.*;
+
+import java.util.*;
+
+/**
+ * Prediction of the heap used by annotation and causal graph extraction, from store counts and a sample of events,
+ * so that they can be refused before running out of memory.
+ * <p>
+ * Sizes follow the structures involved, with constant per-object overheads: the clocks of the frontier kept by
+ * {@link TopologicalLogicalTimeIterator}, the transaction state holding written properties until commit, and the
+ * lists, virtual nodes and jgrapht graph built by {@code horus.getCausalGraph}. They are meant to tell a job
+ * that fits from one that does not by a wide margin, not to be accurate to the byte.
+ */
+public class MemoryEstimate {
+    private static final int SAMPLE_SIZE = 1000;
+
+    private static final long CLOCK_SIZE = 64;
+    private static final long CLOCK_ENTRY_SIZE = 64;
+    private static final long FRONTIER_EVENT_SIZE = 160;
+    private static final long PROPERTY_CHANGE_SIZE = 64;
+    private static final long NODE_REFERENCE_SIZE = 64;
+    private static final long PATH_SIZE = 200;
+    private static final long VIRTUAL_NODE_SIZE = 400;
+    private static final long GRAPH_VERTEX_SIZE = 250;
+    private static final long GRAPH_EDGE_SIZE = 150;
+
+    // Annotation reads an event, computes its clock and writes it, which is measured as several reads.
+    private static final int ANNOTATION_COST = 4;
+
+    private final String operation;
+    private final long events;
+    private final long relationships;
+    private final long timelines;
+    private final long clockWidth;
+    private final long transactionState;
+    private final long peakHeap;
+    private final long runtimeMillis;
+
+    private MemoryEstimate(String operation, long events, long relationships, long timelines, long clockWidth,
+                           long workingSet, long transactionState, long runtimeMillis) {
+        this.operation = operation;
+        this.events = events;
+        this.relationships = relationships;
+        this.timelines = timelines;
+        this.clockWidth = clockWidth;
+        this.transactionState = transactionState;
+        this.peakHeap = workingSet + transactionState;
+        this.runtimeMillis = runtimeMillis;
+    }
+
+    /**
+     * Estimate for annotating every event with the given options, {@code batched} when transactions are committed
+     * every {@code batchSize} events, as by parallel or background annotation, rather than once at the end.
+     * <p>
+     * Events are counted from the count store, and timelines by a single pass over their {@code threadId}. Clock
+     * width is the number of timelines, unless events were annotated before, in which case it is the mean width of
+     * the sampled clocks.
+     */
+    public static MemoryEstimate annotate(GraphDatabaseService db, AnnotationOptions options, boolean batched) {
+        long events = count(db, "MATCH (n:EVENT) RETURN count(n) AS count");
+        long relationships = countRelationships(db);
+        long timelines = count(db, "MATCH (n:EVENT) RETURN count(DISTINCT n.threadId) AS count");
+
+        Sample sample = Sample.random(db, count(db, "MATCH (n) RETURN count(n) AS count"));
+
+        long clockWidth = 0;
+        long clockLength = 0;
+        if (options.getClock() != AnnotationOptions.Clock.LAMPORT && options.getClock() != AnnotationOptions.Clock.BLOOM) {
+            clockWidth = sample.getClockWidth() > 0 ? Math.min(sample.getClockWidth(), timelines) : timelines;
+            // Serialized as a JSON object of threadId keys and times, in two bytes per character.
+            clockLength = options.isClockStore() ? 0 : 2 * clockWidth * (sample.getTimelineIdLength() + 8);
+        }
+
+        long frontier = Math.min(events, 2 * timelines);
+        long workingSet = frontier * (FRONTIER_EVENT_SIZE + clockSize(clockWidth)) + Long.BYTES * 3 * timelines;
+
+        long properties = 2 + (options.isBloom() ? 1 : 0) + (options.isHybrid() ? 1 : 0) + (clockWidth > 0 ? 1 : 0);
+        long eventState = properties * PROPERTY_CHANGE_SIZE + clockLength;
+        long uncommitted = batched ? Math.min(events, (long) options.getBatchSize() * (options.isParallel() ? options.getConcurrency() : 1)) : events;
+
+        long runtime = (long) (sample.getNanosPerEvent() * events * ANNOTATION_COST / 1_000_000);
+        if (options.isParallel())
+            runtime /= options.getConcurrency();
+
+        return new MemoryEstimate("annotate", events, relationships, timelines, clockWidth,
+                workingSet, uncommitted * eventState, runtime);
+    }
+
+    /**
+     * Estimate for extracting the causal graph between two annotated events with {@code horus.getCausalGraph}.
+     * <p>
+     * Candidates in the Lamport time range of both events are counted with the Lamport time index, and events
+     * sampled at random Lamport times within it tell which fraction of them is on a causal path between both.
+     * Clock width is the width of the end event's clock, since every extracted event is in its causal past.
+     */
+    public static MemoryEstimate causalGraph(GraphDatabaseService db, Node start, Node end) {
+        long fromLamportTime = CausalNodes.getLamportTime(start);
+        long toLamportTime = CausalNodes.getLamportTime(end);
+        LogicalClock startClock = CausalNodes.getClock(start);
+        LogicalClock endClock = CausalNodes.getClock(end);
+
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("fromLamportTime", fromLamportTime);
+        parameters.put("toLamportTime", toLamportTime);
+        long candidates = count(db, "MATCH (n:EVENT)\n" +
+                "WHERE n.lamportLogicalTime >= $fromLamportTime AND n.lamportLogicalTime <= $toLamportTime\n" +
+                "RETURN count(n) AS count", parameters);
+
+        Sample sample = Sample.lamportRange(db, fromLamportTime, toLamportTime, startClock, endClock);
+
+        long events = Math.max(Math.min(2, candidates), Math.round(sample.getWithinFraction() * candidates));
+        long relationships = Math.round(sample.getMeanChildren() * events);
+
+        VectorClock vc = LogicalTime.getVectorClock(end);
+        long clockWidth = vc != null ? vc.toMap().size() : sample.getTimelines();
+
+        long workingSet = events * (NODE_REFERENCE_SIZE + VIRTUAL_NODE_SIZE + GRAPH_VERTEX_SIZE + clockSize(clockWidth))
+                + relationships * (PATH_SIZE + GRAPH_EDGE_SIZE);
+
+        long runtime = (long) (sample.getNanosPerEvent() * (candidates + events) / 1_000_000);
+
+        return new MemoryEstimate("causalGraph", events, relationships, sample.getTimelines(), clockWidth,
+                workingSet, 0, runtime);
+    }
+
+    private static long clockSize(long width) {
+        return width == 0 ? 0 : CLOCK_SIZE + width * CLOCK_ENTRY_SIZE;
+    }
+
+    private static long countRelationships(GraphDatabaseService db) {
+        long relationships = 0;
+
+        for (RelationshipType type : LogicalTime.HAPPENS_BEFORE)
+            relationships += count(db, "MATCH ()-[r:`" + type.name() + "`]->() RETURN count(r) AS count");
+
+        return relationships;
+    }
+
+    private static long count(GraphDatabaseService db, String query) {
+        return count(db, query, Collections.emptyMap());
+    }
+
+    private static long count(GraphDatabaseService db, String query, Map<String, Object> parameters) {
+        try (Result result = db.execute(query, parameters)) {
+            return result.<Long>columnAs("count").next();
+        }
+    }
+
+    /**
+     * Whether the estimated peak heap fits in the given budget, in bytes, where zero means no budget.
+     */
+    public boolean fits(long budget) {
+        return budget <= 0 || this.peakHeap <= budget;
+    }
+
+    /**
+     * Fails when the estimated peak heap does not fit in the given budget, in bytes, where zero means no budget.
+     */
+    public void requireWithin(long budget) {
+        if (!this.fits(budget))
+            throw new RuntimeException("Estimated peak heap of " + this.operation + " is " + this.peakHeap +
+                    " bytes, above the budget of " + budget + " bytes, for " + this.events + " events and clocks of " +
+                    this.clockWidth + " timelines.");
+    }
+
+    public String getOperation() {
+        return this.operation;
+    }
+
+    public long getEvents() {
+        return this.events;
+    }
+
+    public long getRelationships() {
+        return this.relationships;
+    }
+
+    public long getTimelines() {
+        return this.timelines;
+    }
+
+    public long getClockWidth() {
+        return this.clockWidth;
+    }
+
+    /**
+     * Heap held by uncommitted writes at their peak, included in {@link #getPeakHeap()}.
+     */
+    public long getTransactionState() {
+        return this.transactionState;
+    }
+
+    public long getPeakHeap() {
+        return this.peakHeap;
+    }
+
+    public long getRuntimeMillis() {
+        return this.runtimeMillis;
+    }
+
+    /**
+     * Statistics of a sample of events, along with the time taken to read them.
+     */
+    private static class Sample {
+        private long sampled;
+        private long within;
+        private long clocks;
+        private long clockWidth;
+        private long timelineIdLength;
+        private long children;
+        private long nanos;
+        private final Set<Object> timelines = new HashSet<>();
+
+        /**
+         * Events at random node ids, which are dense when traces are loaded in bulk.
+         */
+        static Sample random(GraphDatabaseService db, long nodes) {
+            Sample sample = new Sample();
+            Random random = new Random(nodes);
+            Label event = Label.label("EVENT");
+
+            for (int i = 0; i < SAMPLE_SIZE && nodes > 0; i++) {
+                long start = System.nanoTime();
+                try {
+                    Node node = db.getNodeById((long) (random.nextDouble() * nodes));
+                    if (node.hasLabel(event))
+                        sample.add(node, start);
+                } catch (NotFoundException e) {
+                    // Deleted node, its id has not been reused yet.
+                }
+            }
+
+            return sample;
+        }
+
+        /**
+         * Events at random Lamport times in the given range, found by index seeks, counting those on a causal
+         * path between the given clocks.
+         */
+        static Sample lamportRange(GraphDatabaseService db, long from, long to, LogicalClock fromClock, LogicalClock toClock) {
+            Sample sample = new Sample();
+            Random random = new Random(from ^ to);
+            Map<String, Object> parameters = new HashMap<>();
+
+            for (int i = 0; i < SAMPLE_SIZE / 5; i++) {
+                parameters.put("lamportTime", from + (long) (random.nextDouble() * (to - from + 1)));
+
+                long start = System.nanoTime();
+                try (ResourceIterator<Node> nodes = db.execute("MATCH (n:EVENT) WHERE n.lamportLogicalTime = $lamportTime RETURN n LIMIT 1", parameters).columnAs("n")) {
+                    if (!nodes.hasNext())
+                        continue;
+
+                    Node node = nodes.next();
+                    LogicalClock clock = LogicalTime.getClock(node);
+                    if (clock != null && clock.withinCausalPath(fromClock, toClock))
+                        sample.within++;
+
+                    sample.add(node, start);
+                }
+            }
+
+            return sample;
+        }
+
+        private void add(Node node, long start) {
+            VectorClock vc = LogicalTime.getVectorClock(node);
+            if (vc != null) {
+                this.clocks++;
+                this.clockWidth += vc.toMap().size();
+            }
+
+            String timelineId = LogicalTime.getTimelineId(node);
+            if (timelineId != null) {
+                this.timelines.add(timelineId);
+                this.timelineIdLength += timelineId.length();
+            }
+
+            for (Relationship ignored : LogicalTime.getChildRelationships(node))
+                this.children++;
+
+            this.sampled++;
+            this.nanos += System.nanoTime() - start;
+        }
+
+        double getWithinFraction() {
+            return this.sampled == 0 ? 1.0 : (double) this.within / this.sampled;
+        }
+
+        double getMeanChildren() {
+            return this.sampled == 0 ? 1.0 : (double) this.children / this.sampled;
+        }
+
+        double getNanosPerEvent() {
+            return this.sampled == 0 ? 0.0 : (double) this.nanos / this.sampled;
+        }
+
+        long getClockWidth() {
+            return this.clocks == 0 ? 0 : Math.round((double) this.clockWidth / this.clocks);
+        }
+
+        long getTimelineIdLength() {
+            return this.sampled == 0 ? 0 : Math.round((double) this.timelineIdLength / this.sampled);
+        }
+
+        long getTimelines() {
+            return this.timelines.size();
+        }
+    }
+}
@@ -83,6 +83,10 @@ public class OnlyLogsLogicalTimeAssignmentIterator extends BreadthFirstIterator<
     }
 
     protected boolean shouldIncludeVertex(CausalNode vertex) {
+        // Without a host filter, LOG events of every host are included, as done by horus.getCausalGraph.
+        if (this.filterKeyValue == null || this.filterKeyValue.values().stream().allMatch(List::isEmpty))
+            return true;
+
         for (Map.Entry<String, List<String>> property : this.filterKeyValue.entrySet()) {
             if (property.getValue().contains((String) vertex.getNode().getProperty(property.getKey(), null)))
                 return true;
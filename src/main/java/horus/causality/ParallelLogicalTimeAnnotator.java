@@ -0,0 +1,242 @@
+package horus.causality;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Annotates logical time using several threads, each writing in its own transactions.
+ * <p>
+ * The happens-before graph is split in weakly connected components, which share no causality and are
+ * annotated concurrently. Components with at least {@code wavefrontThreshold} events are instead annotated
+ * one topological level at a time, the events of each level being split among all threads.
+ */
+public class ParallelLogicalTimeAnnotator {
+    private final GraphDatabaseService db;
+    private final Log log;
+    private final AnnotationOptions options;
+    private final LogicalTimeAssigner assigner;
+
+    private final Set<Transaction> transactions;
+    private volatile boolean cancelled;
+
+    public ParallelLogicalTimeAnnotator(GraphDatabaseService db, Log log, AnnotationOptions options) {
+        this.db = db;
+        this.log = log;
+        this.options = options;
+        this.assigner = new LogicalTimeAssigner(options);
+
+        this.transactions = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Annotates every event, returning when done. Must be called within a transaction, which is only
+     * used to read the graph.
+     */
+    public void run(AnnotationListener listener) throws InterruptedException {
+        CompactCausalGraph graph = CompactCausalGraph.load(this.db);
+        int[] components = graph.weaklyConnectedComponents();
+
+        IntObjectHashMap<IntArrayList> componentNodes = new IntObjectHashMap<>();
+        for (int node = 0; node < graph.size(); node++)
+            componentNodes.getIfAbsentPut(components[node], IntArrayList::new).add(node);
+
+        List<IntArrayList> smallComponents = new ArrayList<>();
+        List<IntArrayList> largeComponents = new ArrayList<>();
+        for (IntArrayList nodes : componentNodes.values()) {
+            if (nodes.size() >= this.options.getWavefrontThreshold())
+                largeComponents.add(nodes);
+            else
+                smallComponents.add(nodes);
+        }
+
+        if (this.log.isDebugEnabled())
+            this.log.debug("Annotating " + smallComponents.size() + " components concurrently and " + largeComponents.size() + " components by wavefronts.");
+
+        ExecutorService executor = Executors.newFixedThreadPool(this.options.getConcurrency());
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (IntArrayList nodes : smallComponents)
+                futures.add(executor.submit(() -> this.annotateComponent(graph, nodes, listener)));
+
+            this.await(futures, listener);
+
+            for (IntArrayList nodes : largeComponents)
+                this.annotateWavefronts(graph, nodes, executor, listener);
+        } finally {
+            if (this.cancelled)
+                this.cancel();
+
+            executor.shutdownNow();
+        }
+    }
+
+    private void cancel() {
+        this.cancelled = true;
+
+        for (Transaction transaction : this.transactions)
+            transaction.terminate();
+    }
+
+    private void await(List<Future<?>> futures, AnnotationListener listener) throws InterruptedException {
+        for (Future<?> future : futures) {
+            while (!this.cancelled) {
+                try {
+                    if (listener.isCancelled())
+                        this.cancel();
+
+                    future.get(100, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    // Keep polling for cancellation.
+                } catch (ExecutionException e) {
+                    this.cancel();
+
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+
+                    throw new RuntimeException("Parallel annotation failed: " + e.getCause().getMessage(), e.getCause());
+                } catch (RuntimeException e) {
+                    this.cancel();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Void annotateComponent(CompactCausalGraph graph, IntArrayList nodes, AnnotationListener listener) throws InterruptedException {
+        List<Long> roots = new ArrayList<>();
+        nodes.forEach(node -> {
+            if (graph.getInDegree(node) == 0)
+                roots.add(graph.getNodeId(node));
+        });
+
+        Transaction tx = this.beginTx();
+        try {
+            TopologicalLogicalTimeIterator iterator = new TopologicalLogicalTimeIterator(this.db, roots, this.assigner);
+
+            int annotated = 0;
+            while (iterator.hasNext() && !this.cancelled) {
+                iterator.next().write();
+                listener.annotated();
+
+                if (++annotated % this.options.getBatchSize() == 0) {
+                    tx = this.commit(tx);
+                }
+            }
+
+            tx.success();
+        } finally {
+            this.close(tx);
+        }
+
+        return null;
+    }
+
+    private void annotateWavefronts(CompactCausalGraph graph, IntArrayList nodes, ExecutorService executor, AnnotationListener listener) throws InterruptedException {
+        EventTime[] times = new EventTime[graph.size()];
+        int[] remainingParents = new int[graph.size()];
+        AtomicIntegerArray remainingChildren = new AtomicIntegerArray(graph.size());
+
+        IntArrayList level = new IntArrayList();
+        nodes.forEach(node -> {
+            remainingParents[node] = graph.getInDegree(node);
+            remainingChildren.set(node, graph.getOutDegree(node));
+
+            if (remainingParents[node] == 0)
+                level.add(node);
+        });
+
+        IntArrayList currentLevel = level;
+        while (!currentLevel.isEmpty() && !this.cancelled) {
+            int chunkSize = Math.max(1, Math.min(this.options.getBatchSize(),
+                    (currentLevel.size() + this.options.getConcurrency() - 1) / this.options.getConcurrency()));
+
+            int[] levelNodes = currentLevel.toArray();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < levelNodes.length; from += chunkSize) {
+                int[] chunk = Arrays.copyOfRange(levelNodes, from, Math.min(levelNodes.length, from + chunkSize));
+                futures.add(executor.submit(() -> this.annotateChunk(graph, chunk, times, remainingChildren, listener)));
+            }
+
+            this.await(futures, listener);
+
+            IntArrayList nextLevel = new IntArrayList();
+            currentLevel.forEach(node -> {
+                for (int i = 0; i < graph.getOutDegree(node); i++) {
+                    int child = graph.getChild(node, i);
+
+                    if (--remainingParents[child] == 0)
+                        nextLevel.add(child);
+                }
+            });
+
+            currentLevel = nextLevel;
+        }
+    }
+
+    private Void annotateChunk(CompactCausalGraph graph, int[] chunk, EventTime[] times, AtomicIntegerArray remainingChildren, AnnotationListener listener) throws InterruptedException {
+        Transaction tx = this.beginTx();
+        try {
+            for (int index : chunk) {
+                if (this.cancelled)
+                    break;
+
+                Node node = this.db.getNodeById(graph.getNodeId(index));
+
+                List<EventTime> parentTimes = new ArrayList<>();
+                for (int i = 0; i < graph.getInDegree(index); i++) {
+                    int parent = graph.getParent(index, i);
+
+                    parentTimes.add(times[parent]);
+
+                    if (remainingChildren.decrementAndGet(parent) == 0)
+                        times[parent] = null;
+                }
+
+                EventTime time = this.assigner.assign(node, parentTimes);
+                time.write();
+
+                if (graph.getOutDegree(index) > 0)
+                    times[index] = time;
+
+                listener.annotated();
+            }
+
+            tx.success();
+        } finally {
+            this.close(tx);
+        }
+
+        return null;
+    }
+
+    private Transaction beginTx() {
+        Transaction tx = this.db.beginTx();
+        this.transactions.add(tx);
+
+        if (this.cancelled)
+            tx.terminate();
+
+        return tx;
+    }
+
+    private Transaction commit(Transaction tx) {
+        tx.success();
+        this.close(tx);
+
+        return this.beginTx();
+    }
+
+    private void close(Transaction tx) {
+        this.transactions.remove(tx);
+        tx.close();
+    }
+}
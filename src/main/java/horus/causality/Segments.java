@@ -0,0 +1,171 @@
+package horus.causality;
+
+import org.neo4j.graphdb.*;
+
+import java.util.Objects;
+import java.util.Set;
+
+import static org.neo4j.graphdb.Direction.INCOMING;
+import static org.neo4j.graphdb.Direction.OUTGOING;
+
+/**
+ * Compaction of the happens-before graph into segments: maximal runs of consecutive events of a single thread
+ * that do not communicate, i.e. each with a single parent and a single child on the same thread, and none of
+ * the communication labels. Every segment is recorded by a {@code SEGMENT} relationship from its first to its
+ * last event, holding its {@code length}, which traversals follow to jump over the events in between.
+ * <p>
+ * Segments stay valid as the graph changes: the {@link SegmentsExtensionFactory} drops those whose events gain or
+ * lose relationships, labels or thread ids, so that traversals jump over them without checking them.
+ * <p>
+ * Within a segment, logical time only advances on the segment's own timeline, one step per event.
+ */
+public class Segments {
+    public static final RelationshipType SEGMENT = RelationshipType.withName("SEGMENT");
+    public static final String LENGTH = "length";
+
+    private static final Label EVENT = Label.label("EVENT");
+    private static final Label[] COMMUNICATION = {
+            Label.label("SND"), Label.label("RCV"), Label.label("CONNECT"), Label.label("ACCEPT"),
+            Label.label("CREATE"), Label.label("START"), Label.label("JOIN"), Label.label("END")
+    };
+
+    /**
+     * Replaces the segments recorded in the graph by those of at least the given number of events, returning
+     * the number of segments recorded.
+     */
+    public static long compact(GraphDatabaseService db, int minLength) {
+        if (minLength < 2)
+            throw new IllegalArgumentException("minLength must be at least 2.");
+
+        drop(db);
+
+        long segments = 0;
+        try (ResourceIterator<Node> events = db.findNodes(EVENT)) {
+            while (events.hasNext()) {
+                Node first = events.next();
+                if (!isPlain(first) || isPlain(getParent(first)))
+                    continue;
+
+                Node last = first;
+                long length = 1;
+                for (Node next = getChild(last); isPlain(next); next = getChild(next)) {
+                    last = next;
+                    length++;
+                }
+
+                if (length >= minLength) {
+                    first.createRelationshipTo(last, SEGMENT).setProperty(LENGTH, length);
+                    segments++;
+                }
+            }
+        }
+
+        return segments;
+    }
+
+    /**
+     * Removes the segments recorded in the graph, returning their number.
+     */
+    public static long drop(GraphDatabaseService db) {
+        try (Result result = db.execute("MATCH ()-[s:SEGMENT]->() DELETE s RETURN count(s) AS segments")) {
+            return result.<Long>columnAs("segments").next();
+        }
+    }
+
+    /**
+     * Segment starting at the given event, or null if it does not start one.
+     */
+    public static Relationship getSegment(Node node) {
+        return node.getSingleRelationship(SEGMENT, OUTGOING);
+    }
+
+    /**
+     * Event following the given one within a segment, i.e. its only child.
+     */
+    public static Node getNext(Node node) {
+        return node.getRelationships(OUTGOING, LogicalTime.HAPPENS_BEFORE).iterator().next().getEndNode();
+    }
+
+    /**
+     * Drops the segment containing the given event, if any, as the event changed. Runs are walked back from the
+     * event along relationships that existed before the change, i.e. not among the given created ones, since a
+     * run extended by new relationships is not part of any segment yet.
+     */
+    static void invalidate(Node node, Set<Long> createdRelationships) {
+        for (long distance = 0; ; distance++) {
+            Relationship segment = getSegment(node);
+            if (segment != null) {
+                if (distance < ((Number) segment.getProperty(LENGTH)).longValue())
+                    segment.delete();
+
+                return;
+            }
+
+            // Past the event itself, only the unchanged events in the middle of a segment are walked through.
+            if (distance > 0 && (node.hasRelationship(SEGMENT, INCOMING) || hasCommunicationLabel(node)))
+                return;
+
+            Node parent = null;
+            for (Relationship relationship : LogicalTime.getParentRelationships(node)) {
+                if (createdRelationships.contains(relationship.getId()))
+                    continue;
+                if (parent != null)
+                    return;
+
+                parent = relationship.getStartNode();
+            }
+
+            if (parent == null || (distance > 0 && !Objects.equals(node.getProperty(LogicalTime.THREAD_ID, null),
+                    parent.getProperty(LogicalTime.THREAD_ID, null))))
+                return;
+
+            node = parent;
+        }
+    }
+
+    private static boolean isPlain(Node node) {
+        if (node == null || !node.hasLabel(EVENT) || hasCommunicationLabel(node))
+            return false;
+
+        Object threadId = node.getProperty(LogicalTime.THREAD_ID, null);
+        Node parent = getParent(node);
+        Node child = getChild(node);
+
+        return threadId != null && parent != null && child != null
+                && threadId.equals(parent.getProperty(LogicalTime.THREAD_ID, null))
+                && threadId.equals(child.getProperty(LogicalTime.THREAD_ID, null));
+    }
+
+    private static boolean hasCommunicationLabel(Node node) {
+        for (Label label : COMMUNICATION) {
+            if (node.hasLabel(label))
+                return true;
+        }
+
+        return false;
+    }
+
+    private static Node getParent(Node node) {
+        return getSingleNeighbour(node, INCOMING);
+    }
+
+    private static Node getChild(Node node) {
+        return getSingleNeighbour(node, OUTGOING);
+    }
+
+    private static Node getSingleNeighbour(Node node, Direction direction) {
+        if (countRelationships(node, direction) != 1)
+            return null;
+
+        return node.getRelationships(direction, LogicalTime.HAPPENS_BEFORE).iterator().next().getOtherNode(node);
+    }
+
+    private static int countRelationships(Node node, Direction direction) {
+        int relationships = 0;
+
+        for (RelationshipType type : LogicalTime.HAPPENS_BEFORE)
+            relationships += node.getDegree(type, direction);
+
+        return relationships;
+    }
+}
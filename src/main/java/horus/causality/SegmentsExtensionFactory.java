@@ -0,0 +1,119 @@
+package horus.causality;
+
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.event.LabelEntry;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.spi.KernelContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Keeps the recorded {@link Segments} valid, dropping those whose events gain or lose happens-before
+ * relationships, labels or thread ids in the same transaction, so that traversals can jump over segments
+ * without checking that they still form a chain.
+ */
+public class SegmentsExtensionFactory extends KernelExtensionFactory<SegmentsExtensionFactory.Dependencies> {
+
+    public interface Dependencies {
+        GraphDatabaseAPI graphdatabaseAPI();
+    }
+
+    public SegmentsExtensionFactory() {
+        super(ExtensionType.DATABASE, "horus-segments");
+    }
+
+    @Override
+    public Lifecycle newInstance(KernelContext context, Dependencies dependencies) {
+        return new LifecycleAdapter() {
+            private InvalidationHandler handler;
+
+            @Override
+            public void start() {
+                this.handler = new InvalidationHandler(dependencies.graphdatabaseAPI());
+                dependencies.graphdatabaseAPI().registerTransactionEventHandler(this.handler);
+            }
+
+            @Override
+            public void stop() {
+                dependencies.graphdatabaseAPI().unregisterTransactionEventHandler(this.handler);
+            }
+        };
+    }
+
+    private static class InvalidationHandler extends TransactionEventHandler.Adapter<Void> {
+        private final GraphDatabaseAPI db;
+
+        InvalidationHandler(GraphDatabaseAPI db) {
+            this.db = db;
+        }
+
+        @Override
+        public Void beforeCommit(TransactionData data) {
+            Set<Long> changed = new HashSet<>();
+            Set<Long> created = new HashSet<>();
+
+            for (Relationship relationship : data.createdRelationships()) {
+                addEndpoints(relationship, changed);
+                created.add(relationship.getId());
+            }
+            for (Relationship relationship : data.deletedRelationships())
+                addEndpoints(relationship, changed);
+
+            for (LabelEntry entry : data.assignedLabels())
+                changed.add(entry.node().getId());
+            for (LabelEntry entry : data.removedLabels())
+                changed.add(entry.node().getId());
+
+            for (PropertyEntry<Node> entry : data.assignedNodeProperties()) {
+                if (entry.key().equals(LogicalTime.THREAD_ID))
+                    changed.add(entry.entity().getId());
+            }
+            for (PropertyEntry<Node> entry : data.removedNodeProperties()) {
+                if (entry.key().equals(LogicalTime.THREAD_ID))
+                    changed.add(entry.entity().getId());
+            }
+
+            if (changed.isEmpty() || !this.hasSegments())
+                return null;
+
+            // New events are not part of any segment yet, and deleted ones had theirs deleted with them.
+            for (Node node : data.createdNodes())
+                changed.remove(node.getId());
+            for (Node node : data.deletedNodes())
+                changed.remove(node.getId());
+
+            for (long nodeId : changed)
+                Segments.invalidate(this.db.getNodeById(nodeId), created);
+
+            return null;
+        }
+
+        private boolean hasSegments() {
+            for (RelationshipType type : this.db.getAllRelationshipTypesInUse()) {
+                if (type.name().equals(Segments.SEGMENT.name()))
+                    return true;
+            }
+
+            return false;
+        }
+
+        private static void addEndpoints(Relationship relationship, Set<Long> changed) {
+            for (RelationshipType type : LogicalTime.HAPPENS_BEFORE) {
+                if (relationship.isType(type)) {
+                    changed.add(relationship.getStartNodeId());
+                    changed.add(relationship.getEndNodeId());
+                }
+            }
+        }
+    }
+}
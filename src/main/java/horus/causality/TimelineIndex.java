@@ -0,0 +1,131 @@
+package horus.causality;
+
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Looks up events by their position in a timeline, i.e. by {@code timelineSequence} along with their thread or,
+ * when clocks are indexed by chain, their chain. Backed by the indexes of {@code horus.createLogicalTimeIndexes()}.
+ * <p>
+ * As the vector clock of an event holds, for each timeline, the sequence of the last event of that timeline
+ * in its causal past, clocks translate into sequence ranges which are read with index seeks.
+ */
+public class TimelineIndex {
+    public static final Label EVENT = Label.label("EVENT");
+
+    private final GraphDatabaseService db;
+    private final String timelineProperty;
+
+    private TimelineIndex(GraphDatabaseService db, String timelineProperty) {
+        this.db = db;
+        this.timelineProperty = timelineProperty;
+    }
+
+    /**
+     * Index over the timelines the given event's vector clock is indexed by.
+     */
+    public static TimelineIndex of(GraphDatabaseService db, Node node) {
+        if (LogicalTime.getTimelineSequence(node) == null || LogicalTime.getVectorClock(node) == null)
+            throw new RuntimeException("Event " + node.getId() + " has no vector clock, annotate it with {clock: 'vector'} or {clock: 'chain'}.");
+
+        return new TimelineIndex(db, node.hasProperty(LogicalTime.CHAIN_ID) ? LogicalTime.CHAIN_ID : LogicalTime.THREAD_ID);
+    }
+
+    /**
+     * Index over the timelines vector clocks were annotated with, told by the first event of any timeline.
+     */
+    public static TimelineIndex find(GraphDatabaseService db) {
+        try (ResourceIterator<Node> nodes = db.findNodes(EVENT, LogicalTime.TIMELINE_SEQUENCE, 1L)) {
+            if (!nodes.hasNext())
+                throw new RuntimeException("No event has a timelineSequence, annotate them with {clock: 'vector'} or {clock: 'chain'}.");
+
+            return of(db, nodes.next());
+        }
+    }
+
+    /**
+     * Event at the given position of a timeline, or null when the timeline is shorter.
+     */
+    public Node get(String timelineId, long sequence) {
+        if (sequence < 1)
+            return null;
+
+        try (ResourceIterator<Node> nodes = this.db.findNodes(EVENT, this.timelineProperty, timelineId, LogicalTime.TIMELINE_SEQUENCE, sequence)) {
+            return nodes.hasNext() ? nodes.next() : null;
+        }
+    }
+
+    /**
+     * Ids of every timeline, found through their first events.
+     */
+    public List<String> getTimelines() {
+        List<String> timelines = new ArrayList<>();
+
+        try (ResourceIterator<Node> nodes = this.db.findNodes(EVENT, LogicalTime.TIMELINE_SEQUENCE, 1L)) {
+            while (nodes.hasNext()) {
+                Node node = nodes.next();
+                Object timelineId = node.getProperty(this.timelineProperty, null);
+
+                if (timelineId != null && (this.timelineProperty.equals(LogicalTime.CHAIN_ID) || !node.hasProperty(LogicalTime.CHAIN_ID)))
+                    timelines.add((String) timelineId);
+            }
+        }
+
+        return timelines;
+    }
+
+    /**
+     * Smallest sequence, from the given one, of a timeline event satisfying the predicate, or -1 if there is none.
+     * The predicate must be monotonic along the timeline, e.g. having some event in its causal past, so the
+     * sequence is found with a galloping search using O(log n) index seeks.
+     */
+    public long seekFirst(String timelineId, long from, Predicate<Node> predicate) {
+        Node node = this.get(timelineId, from);
+        if (node == null)
+            return -1;
+
+        if (predicate.test(node))
+            return from;
+
+        long low = from;
+        long high;
+        for (long step = 1; ; step *= 2) {
+            high = from + step;
+
+            node = this.get(timelineId, high);
+            if (node == null || predicate.test(node))
+                break;
+
+            low = high;
+        }
+
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+
+            node = this.get(timelineId, middle);
+            if (node == null || predicate.test(node))
+                high = middle;
+            else
+                low = middle;
+        }
+
+        node = this.get(timelineId, high);
+
+        return node != null && predicate.test(node) ? high : -1;
+    }
+
+    /**
+     * Number of events of a timeline, found with a galloping search for its last event.
+     */
+    public long getLength(String timelineId) {
+        long last = this.seekFirst(timelineId, 1, event -> this.get(timelineId, LogicalTime.getTimelineSequence(event) + 1) == null);
+
+        return Math.max(0, last);
+    }
+}
@@ -0,0 +1,196 @@
+package horus.causality;
+
+import org.apache.commons.lang3.mutable.MutableInt;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
+
+import java.util.*;
+
+import static org.neo4j.graphdb.Direction.INCOMING;
+
+/**
+ * Visits events in topological order of the happens-before graph (Kahn's algorithm), computing the logical
+ * time of each one in memory.
+ * <p>
+ * Only the clocks of the frontier, i.e. events with children still to be visited, are kept in memory.
+ * When a scope is given, only events within it are visited, and parents outside of it have their logical
+ * time read from their properties.
+ * Iteration only keeps node ids between calls, so the caller is free to commit and begin transactions
+ * while iterating.
+ * <p>
+ * Events of a {@link Segments segment} are walked one after the other from its first event, without tracking
+ * their parents or keeping them in the frontier, as each is the only child of the previous one.
+ */
+public class TopologicalLogicalTimeIterator implements Iterator<EventTime> {
+    private static final Label EVENT = Label.label("EVENT");
+
+    private final GraphDatabaseService db;
+    private final Iterator<Long> startNodes;
+    private final LogicalTimeAssigner assigner;
+    private final Set<Long> scope;
+
+    private final Deque<Long> ready;
+    private final HashMap<Long, MutableInt> remainingParents;
+    private final HashMap<Long, FrontierEvent> frontier;
+
+    private long segmentEnd;
+    private Node segmentNext;
+    private EventTime segmentTime;
+
+    public TopologicalLogicalTimeIterator(GraphDatabaseService db, Iterable<Long> startNodes, LogicalTimeAssigner assigner) {
+        this(db, startNodes, assigner, null);
+    }
+
+    public TopologicalLogicalTimeIterator(GraphDatabaseService db, Iterable<Long> startNodes, LogicalTimeAssigner assigner, Set<Long> scope) {
+        this.db = db;
+        this.startNodes = startNodes.iterator();
+        this.assigner = assigner;
+        this.scope = scope;
+
+        this.ready = new ArrayDeque<>();
+        this.remainingParents = new HashMap<>();
+        this.frontier = new HashMap<>();
+        this.segmentEnd = -1;
+    }
+
+    /**
+     * Ids of the events without happens-before parents. Only {@code EVENT} nodes are considered, leaving out
+     * bookkeeping nodes such as the one of a {@link LogProjection}.
+     */
+    public static List<Long> findRoots(GraphDatabaseService db) {
+        List<Long> roots = new ArrayList<>();
+
+        try (ResourceIterator<Node> nodes = db.findNodes(EVENT)) {
+            while (nodes.hasNext()) {
+                Node node = nodes.next();
+                if (countParents(node) == 0)
+                    roots.add(node.getId());
+            }
+        }
+
+        return roots;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return this.segmentTime != null || !this.ready.isEmpty() || this.startNodes.hasNext();
+    }
+
+    @Override
+    public EventTime next() {
+        if (!this.hasNext())
+            throw new NoSuchElementException();
+
+        Node node;
+        List<EventTime> parentTimes = new ArrayList<>();
+
+        if (this.segmentTime != null) {
+            node = this.segmentNext;
+            parentTimes.add(this.segmentTime);
+            this.segmentTime = null;
+        } else {
+            Long nodeId = this.ready.isEmpty() ? this.startNodes.next() : this.ready.poll();
+            node = this.db.getNodeById(nodeId);
+
+            for (Relationship relationship : LogicalTime.getParentRelationships(node))
+                parentTimes.add(this.getParentTime(relationship));
+        }
+
+        EventTime time = this.assigner.assign(node, parentTimes);
+        long nodeId = node.getId();
+
+        if (this.scope == null && this.segmentEnd < 0) {
+            Relationship segment = Segments.getSegment(node);
+            if (segment != null)
+                this.segmentEnd = segment.getEndNodeId();
+        }
+
+        if (this.segmentEnd >= 0 && nodeId != this.segmentEnd) {
+            this.segmentNext = Segments.getNext(node);
+            this.segmentTime = time;
+
+            return time;
+        }
+
+        this.segmentEnd = -1;
+
+        int children = 0;
+        for (Relationship relationship : LogicalTime.getChildRelationships(node)) {
+            if (!this.inScope(relationship.getEndNodeId()))
+                continue;
+
+            children++;
+            this.visitChild(relationship.getEndNode());
+        }
+
+        if (children > 0)
+            this.frontier.put(nodeId, new FrontierEvent(time, children));
+
+        return time;
+    }
+
+    public int getFrontierSize() {
+        return this.frontier.size();
+    }
+
+    private EventTime getParentTime(Relationship relationship) {
+        FrontierEvent parent = this.frontier.get(relationship.getStartNodeId());
+
+        if (parent == null)
+            return this.assigner.read(relationship.getStartNode());
+
+        if (--parent.remainingChildren == 0)
+            this.frontier.remove(relationship.getStartNodeId());
+
+        return parent.time;
+    }
+
+    private void visitChild(Node child) {
+        MutableInt remaining = this.remainingParents.computeIfAbsent(child.getId(), id -> new MutableInt(this.countScopedParents(child)));
+
+        if (remaining.decrementAndGet() == 0) {
+            this.remainingParents.remove(child.getId());
+            this.ready.add(child.getId());
+        }
+    }
+
+    private boolean inScope(long nodeId) {
+        return this.scope == null || this.scope.contains(nodeId);
+    }
+
+    private int countScopedParents(Node node) {
+        if (this.scope == null)
+            return countParents(node);
+
+        int parents = 0;
+        for (Relationship relationship : LogicalTime.getParentRelationships(node)) {
+            if (this.inScope(relationship.getStartNodeId()))
+                parents++;
+        }
+
+        return parents;
+    }
+
+    private static int countParents(Node node) {
+        int parents = 0;
+
+        for (RelationshipType type : LogicalTime.HAPPENS_BEFORE)
+            parents += node.getDegree(type, INCOMING);
+
+        return parents;
+    }
+
+    private static class FrontierEvent {
+        private final EventTime time;
+        private int remainingChildren;
+
+        FrontierEvent(EventTime time, int remainingChildren) {
+            this.time = time;
+            this.remainingChildren = remainingChildren;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package horus.export;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Layout of the columnar trace files written by {@link TraceWriter} and read by {@link TraceReader}.
+ * <p>
+ * A file starts with {@link #MAGIC}, {@link #VERSION} and whether columns are compressed, followed by blocks of consecutive events in Lamport
+ * time order, then a footer with the dictionaries and the block directory, and ends with the footer offset and
+ * {@link #MAGIC} again. Every block holds one column per event attribute, each optionally deflated, and only
+ * delta-encodes values within the block, so that blocks are decoded independently of each other.
+ */
+final class TraceFormat {
+    static final byte[] MAGIC = "HORUSCOL".getBytes(StandardCharsets.US_ASCII);
+    static final int VERSION = 1;
+
+    static final int NODE_ID = 0;
+    static final int LAMPORT_TIME = 1;
+    static final int KERNEL_TIME = 2;
+    static final int THREAD = 3;
+    static final int HOST = 4;
+    static final int LABELS = 5;
+    static final int CLOCK = 6;
+    static final int CHILDREN = 7;
+    static final int COLUMNS = 8;
+
+    /**
+     * Size of a block directory entry: offset, length, first row, rows, lowest and highest Lamport time.
+     */
+    static final int BLOCK_ENTRY_SIZE = 4 * Long.BYTES + 2 * Integer.BYTES;
+
+    private TraceFormat() {
+    }
+
+    static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+
+        out.write((int) value);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+
+        return value;
+    }
+
+    static void writeSignedVarLong(ByteArrayOutputStream out, long value) {
+        writeVarLong(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readSignedVarLong(ByteBuffer in) {
+        long value = readVarLong(in);
+
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
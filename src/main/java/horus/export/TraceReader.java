@@ -0,0 +1,364 @@
+package horus.export;
+
+import horus.VectorClock;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static horus.export.TraceFormat.*;
+
+/**
+ * Reads the columnar trace files written by {@code horus.export}, memory-mapping each block when it is read, so
+ * that traces larger than memory are scanned block by block and blocks are skipped by their Lamport time range.
+ * <p>
+ * Usable outside of Neo4j: only {@link VectorClock} is needed besides the JDK.
+ */
+public class TraceReader implements Closeable {
+    /**
+     * Kernel time of events that have none.
+     */
+    public static final long NO_KERNEL_TIME = Long.MIN_VALUE;
+
+    private final FileChannel channel;
+    private final boolean compressed;
+
+    private final List<String> timelines;
+    private final List<String> hosts;
+    private final List<String> labels;
+    private final List<List<String>> labelSets;
+    private final long rows;
+    private final long relationships;
+    private final ByteBuffer directory;
+    private final int blocks;
+
+    private TraceReader(FileChannel channel) throws IOException {
+        this.channel = channel;
+
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, MAGIC.length + Integer.BYTES + 1);
+        checkMagic(header);
+        int version = header.getInt();
+        if (version != VERSION)
+            throw new IOException("Unsupported trace file version " + version + ".");
+        this.compressed = header.get() != 0;
+
+        long size = channel.size();
+        ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, size - Long.BYTES - MAGIC.length, Long.BYTES + MAGIC.length);
+        long footerOffset = trailer.getLong();
+        checkMagic(trailer);
+
+        MappedByteBuffer footer = channel.map(FileChannel.MapMode.READ_ONLY, footerOffset, size - Long.BYTES - MAGIC.length - footerOffset);
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(footer));
+        this.timelines = readDictionary(in);
+        this.hosts = readDictionary(in);
+        this.labels = readDictionary(in);
+
+        int labelSetCount = in.readInt();
+        this.labelSets = new ArrayList<>(labelSetCount);
+        for (int i = 0; i < labelSetCount; i++) {
+            int labelCount = in.readInt();
+            List<String> labelSet = new ArrayList<>(labelCount);
+            for (int j = 0; j < labelCount; j++)
+                labelSet.add(this.labels.get(in.readInt()));
+            this.labelSets.add(Collections.unmodifiableList(labelSet));
+        }
+
+        this.rows = in.readLong();
+        this.relationships = in.readLong();
+        this.blocks = in.readInt();
+        this.directory = footer.slice();
+    }
+
+    public static TraceReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new TraceReader(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void checkMagic(ByteBuffer buffer) throws IOException {
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(magic);
+
+        if (!Arrays.equals(magic, MAGIC))
+            throw new IOException("Not a Horus trace file.");
+    }
+
+    private static List<String> readDictionary(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        List<String> values = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            values.add(in.readUTF());
+
+        return Collections.unmodifiableList(values);
+    }
+
+    public long getRowCount() {
+        return this.rows;
+    }
+
+    public long getRelationshipCount() {
+        return this.relationships;
+    }
+
+    public int getBlockCount() {
+        return this.blocks;
+    }
+
+    public List<String> getTimelines() {
+        return this.timelines;
+    }
+
+    public List<String> getHosts() {
+        return this.hosts;
+    }
+
+    public long getBlockFirstRow(int block) {
+        return this.directory.getLong(block * BLOCK_ENTRY_SIZE + Long.BYTES + Integer.BYTES);
+    }
+
+    public long getBlockMinLamportTime(int block) {
+        return this.directory.getLong(block * BLOCK_ENTRY_SIZE + 2 * Long.BYTES + 2 * Integer.BYTES);
+    }
+
+    public long getBlockMaxLamportTime(int block) {
+        return this.directory.getLong(block * BLOCK_ENTRY_SIZE + 3 * Long.BYTES + 2 * Integer.BYTES);
+    }
+
+    /**
+     * Maps and decodes a block of events.
+     */
+    public Block readBlock(int block) throws IOException {
+        if (block < 0 || block >= this.blocks)
+            throw new IndexOutOfBoundsException("Block " + block + " of " + this.blocks + ".");
+
+        int entry = block * BLOCK_ENTRY_SIZE;
+        long offset = this.directory.getLong(entry);
+        int length = this.directory.getInt(entry + Long.BYTES);
+        int rows = this.directory.getInt(entry + 2 * Long.BYTES + Integer.BYTES);
+
+        MappedByteBuffer buffer = this.channel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        int[] rawLengths = new int[COLUMNS];
+        int[] storedLengths = new int[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            rawLengths[i] = buffer.getInt();
+            storedLengths[i] = buffer.getInt();
+        }
+
+        ByteBuffer[] columns = new ByteBuffer[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            ByteBuffer stored = buffer.slice();
+            stored.limit(storedLengths[i]);
+            buffer.position(buffer.position() + storedLengths[i]);
+
+            columns[i] = this.compressed ? inflate(stored, rawLengths[i]) : stored;
+        }
+
+        return new Block(this, this.getBlockFirstRow(block), rows, columns);
+    }
+
+    private static ByteBuffer inflate(ByteBuffer stored, int rawLength) throws IOException {
+        byte[] input = new byte[stored.remaining()];
+        stored.get(input);
+
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            byte[] raw = new byte[rawLength];
+            int inflated = 0;
+            while (inflated < rawLength && !inflater.finished())
+                inflated += inflater.inflate(raw, inflated, rawLength - inflated);
+
+            return ByteBuffer.wrap(raw);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted trace block: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Decoded events of a block, addressed by their row within the block.
+     */
+    public static class Block {
+        private final TraceReader reader;
+        private final long firstRow;
+        private final int rows;
+
+        private final long[] nodeIds;
+        private final long[] lamportTimes;
+        private final long[] kernelTimes;
+        private final int[] threads;
+        private final int[] hosts;
+        private final int[] labelSets;
+        private final int[] clockOffsets;
+        private final int[] clockTimelines;
+        private final int[] clockTimes;
+        private final int[] childOffsets;
+        private final long[] children;
+
+        private Block(TraceReader reader, long firstRow, int rows, ByteBuffer[] columns) {
+            this.reader = reader;
+            this.firstRow = firstRow;
+            this.rows = rows;
+
+            this.nodeIds = new long[rows];
+            this.lamportTimes = new long[rows];
+            this.kernelTimes = new long[rows];
+            this.threads = new int[rows];
+            this.hosts = new int[rows];
+            this.labelSets = new int[rows];
+            this.clockOffsets = new int[rows + 1];
+            this.childOffsets = new int[rows + 1];
+
+            long nodeId = 0;
+            long lamportTime = 0;
+            long kernelTime = 0;
+            for (int row = 0; row < rows; row++) {
+                this.nodeIds[row] = nodeId += readSignedVarLong(columns[NODE_ID]);
+                this.lamportTimes[row] = lamportTime += readSignedVarLong(columns[LAMPORT_TIME]);
+
+                if (columns[KERNEL_TIME].get() != 0)
+                    this.kernelTimes[row] = kernelTime += readSignedVarLong(columns[KERNEL_TIME]);
+                else
+                    this.kernelTimes[row] = NO_KERNEL_TIME;
+
+                this.threads[row] = (int) readVarLong(columns[THREAD]) - 1;
+                this.hosts[row] = (int) readVarLong(columns[HOST]) - 1;
+                this.labelSets[row] = (int) readVarLong(columns[LABELS]);
+            }
+
+            List<int[]> clockEntries = new ArrayList<>();
+            for (int row = 0; row < rows; row++) {
+                int entries = (int) readVarLong(columns[CLOCK]);
+                int timeline = 0;
+                for (int i = 0; i < entries; i++) {
+                    timeline += (int) readVarLong(columns[CLOCK]);
+                    clockEntries.add(new int[]{timeline, (int) readVarLong(columns[CLOCK])});
+                }
+                this.clockOffsets[row + 1] = clockEntries.size();
+            }
+
+            this.clockTimelines = new int[clockEntries.size()];
+            this.clockTimes = new int[clockEntries.size()];
+            for (int i = 0; i < clockEntries.size(); i++) {
+                this.clockTimelines[i] = clockEntries.get(i)[0];
+                this.clockTimes[i] = clockEntries.get(i)[1];
+            }
+
+            long[] children = new long[16];
+            int childCount = 0;
+            for (int row = 0; row < rows; row++) {
+                int count = (int) readVarLong(columns[CHILDREN]);
+                long child = 0;
+                for (int i = 0; i < count; i++) {
+                    if (childCount == children.length)
+                        children = Arrays.copyOf(children, children.length * 2);
+
+                    children[childCount++] = child += readVarLong(columns[CHILDREN]);
+                }
+                this.childOffsets[row + 1] = childCount;
+            }
+            this.children = Arrays.copyOf(children, childCount);
+        }
+
+        public long getFirstRow() {
+            return this.firstRow;
+        }
+
+        public int getRows() {
+            return this.rows;
+        }
+
+        public long getNodeId(int row) {
+            return this.nodeIds[row];
+        }
+
+        public long getLamportTime(int row) {
+            return this.lamportTimes[row];
+        }
+
+        /**
+         * Kernel time of an event, or {@link #NO_KERNEL_TIME}.
+         */
+        public long getKernelTime(int row) {
+            return this.kernelTimes[row];
+        }
+
+        public String getThreadId(int row) {
+            return this.threads[row] < 0 ? null : this.reader.timelines.get(this.threads[row]);
+        }
+
+        public String getHost(int row) {
+            return this.hosts[row] < 0 ? null : this.reader.hosts.get(this.hosts[row]);
+        }
+
+        public List<String> getLabels(int row) {
+            return this.reader.labelSets.get(this.labelSets[row]);
+        }
+
+        /**
+         * Vector clock of an event, or null when it was exported without one.
+         */
+        public VectorClock getVectorClock(int row) {
+            int from = this.clockOffsets[row];
+            int to = this.clockOffsets[row + 1];
+            if (from == to)
+                return null;
+
+            Map<String, Integer> times = new HashMap<>((to - from) * 2);
+            for (int i = from; i < to; i++)
+                times.put(this.reader.timelines.get(this.clockTimelines[i]), this.clockTimes[i]);
+
+            return new VectorClock(this.getThreadId(row), times);
+        }
+
+        /**
+         * Node ids of the happens-before children of an event, in ascending order.
+         */
+        public long[] getChildren(int row) {
+            return Arrays.copyOfRange(this.children, this.childOffsets[row], this.childOffsets[row + 1]);
+        }
+    }
+
+    /**
+     * Reads a mapped buffer as a stream, for the footer.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return this.buffer.hasRemaining() ? this.buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!this.buffer.hasRemaining())
+                return -1;
+
+            length = Math.min(length, this.buffer.remaining());
+            this.buffer.get(bytes, offset, length);
+
+            return length;
+        }
+    }
+}
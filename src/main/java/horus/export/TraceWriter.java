@@ -0,0 +1,308 @@
+package horus.export;
+
+import horus.VectorClock;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.Deflater;
+
+import static horus.export.TraceFormat.*;
+
+/**
+ * Writes events, given in Lamport time order, to a columnar trace file, see {@link TraceFormat}.
+ * <p>
+ * Thread ids, hosts, label sets and the timelines of vector clocks are dictionary-encoded, Lamport times are
+ * delta-encoded, and vector clock entries and children are sorted and delta-encoded, so that columns shrink
+ * to a few bytes per event before being deflated.
+ * <p>
+ * Events are written to a {@code .partial} file next to the given one, which only replaces it once
+ * {@link #finish()} has written the footer. Closing the writer without finishing it deletes the partial file,
+ * so that an interrupted export never leaves a file that reads as complete.
+ */
+public class TraceWriter implements Closeable {
+    private final Path path;
+    private final Path partial;
+    private final FileChannel channel;
+    private final int blockSize;
+    private final boolean compress;
+    private final Deflater deflater;
+
+    private final Map<String, Integer> timelines;
+    private final Map<String, Integer> hosts;
+    private final Map<String, Integer> labels;
+    private final Map<List<Integer>, Integer> labelSets;
+
+    private final ByteArrayOutputStream[] columns;
+    private final ByteArrayOutputStream directory;
+    private int blockRows;
+    private long blockFirstRow;
+    private long blockMinLamportTime;
+    private long blockMaxLamportTime;
+    private long previousNodeId;
+    private long previousLamportTime;
+    private long previousKernelTime;
+
+    private long rows;
+    private long relationships;
+    private int blocks;
+    private boolean finished;
+    private boolean closed;
+
+    public TraceWriter(Path path, int blockSize, boolean compress) throws IOException {
+        if (blockSize <= 0)
+            throw new IllegalArgumentException("blockSize must be positive.");
+
+        this.path = path;
+        this.partial = path.resolveSibling(path.getFileName() + ".partial");
+        this.channel = FileChannel.open(this.partial, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        this.blockSize = blockSize;
+        this.compress = compress;
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+
+        this.timelines = new LinkedHashMap<>();
+        this.hosts = new LinkedHashMap<>();
+        this.labels = new LinkedHashMap<>();
+        this.labelSets = new LinkedHashMap<>();
+
+        this.columns = new ByteArrayOutputStream[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++)
+            this.columns[i] = new ByteArrayOutputStream();
+        this.directory = new ByteArrayOutputStream();
+
+        ByteBuffer header = ByteBuffer.allocate(MAGIC.length + Integer.BYTES + 1);
+        header.put(MAGIC).putInt(VERSION).put((byte) (compress ? 1 : 0));
+        this.write(header);
+    }
+
+    /**
+     * Appends an event. Events must be added in Lamport time order, and missing values given as null.
+     */
+    public void add(long nodeId, long lamportTime, Long kernelTime, String threadId, String host,
+                    Collection<String> eventLabels, VectorClock vc, long[] children) throws IOException {
+        if (this.blockRows == 0) {
+            this.blockFirstRow = this.rows;
+            this.blockMinLamportTime = lamportTime;
+            this.previousNodeId = 0;
+            this.previousLamportTime = 0;
+            this.previousKernelTime = 0;
+        }
+
+        writeSignedVarLong(this.columns[NODE_ID], nodeId - this.previousNodeId);
+        writeSignedVarLong(this.columns[LAMPORT_TIME], lamportTime - this.previousLamportTime);
+
+        if (kernelTime == null) {
+            this.columns[KERNEL_TIME].write(0);
+        } else {
+            this.columns[KERNEL_TIME].write(1);
+            writeSignedVarLong(this.columns[KERNEL_TIME], kernelTime - this.previousKernelTime);
+            this.previousKernelTime = kernelTime;
+        }
+
+        writeVarLong(this.columns[THREAD], threadId == null ? 0 : encode(this.timelines, threadId) + 1);
+        writeVarLong(this.columns[HOST], host == null ? 0 : encode(this.hosts, host) + 1);
+        writeVarLong(this.columns[LABELS], this.encodeLabels(eventLabels));
+        this.writeClock(vc);
+        this.writeChildren(children);
+
+        this.previousNodeId = nodeId;
+        this.previousLamportTime = lamportTime;
+        this.blockMaxLamportTime = lamportTime;
+        this.blockRows++;
+        this.rows++;
+        this.relationships += children.length;
+
+        if (this.blockRows == this.blockSize)
+            this.flushBlock();
+    }
+
+    private static int encode(Map<String, Integer> dictionary, String value) {
+        return dictionary.computeIfAbsent(value, v -> dictionary.size());
+    }
+
+    private int encodeLabels(Collection<String> eventLabels) {
+        List<Integer> labelSet = new ArrayList<>(eventLabels.size());
+        for (String label : eventLabels)
+            labelSet.add(encode(this.labels, label));
+        Collections.sort(labelSet);
+
+        return this.labelSets.computeIfAbsent(labelSet, set -> this.labelSets.size());
+    }
+
+    private void writeClock(VectorClock vc) {
+        ByteArrayOutputStream column = this.columns[CLOCK];
+        if (vc == null) {
+            writeVarLong(column, 0);
+            return;
+        }
+
+        Map<String, Integer> times = vc.toMap();
+        int[][] entries = new int[times.size()][];
+        int i = 0;
+        for (Map.Entry<String, Integer> time : times.entrySet())
+            entries[i++] = new int[]{encode(this.timelines, time.getKey()), time.getValue()};
+        Arrays.sort(entries, Comparator.comparingInt(entry -> entry[0]));
+
+        writeVarLong(column, entries.length);
+        int previousTimeline = 0;
+        for (int[] entry : entries) {
+            writeVarLong(column, entry[0] - previousTimeline);
+            writeVarLong(column, entry[1]);
+            previousTimeline = entry[0];
+        }
+    }
+
+    private void writeChildren(long[] children) {
+        ByteArrayOutputStream column = this.columns[CHILDREN];
+        long[] sorted = children.clone();
+        Arrays.sort(sorted);
+
+        writeVarLong(column, sorted.length);
+        long previous = 0;
+        for (long child : sorted) {
+            writeVarLong(column, child - previous);
+            previous = child;
+        }
+    }
+
+    private void flushBlock() throws IOException {
+        if (this.blockRows == 0)
+            return;
+
+        byte[][] stored = new byte[COLUMNS][];
+        int[] rawLengths = new int[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++) {
+            byte[] raw = this.columns[i].toByteArray();
+            rawLengths[i] = raw.length;
+            stored[i] = this.compress ? this.deflate(raw) : raw;
+            this.columns[i].reset();
+        }
+
+        int length = COLUMNS * 2 * Integer.BYTES;
+        for (byte[] column : stored)
+            length += column.length;
+
+        ByteBuffer block = ByteBuffer.allocate(length);
+        for (int i = 0; i < COLUMNS; i++)
+            block.putInt(rawLengths[i]).putInt(stored[i].length);
+        for (byte[] column : stored)
+            block.put(column);
+
+        long offset = this.channel.position();
+        this.write(block);
+
+        ByteBuffer entry = ByteBuffer.allocate(BLOCK_ENTRY_SIZE);
+        entry.putLong(offset).putInt(length).putLong(this.blockFirstRow).putInt(this.blockRows)
+                .putLong(this.blockMinLamportTime).putLong(this.blockMaxLamportTime);
+        this.directory.write(entry.array());
+
+        this.blockRows = 0;
+        this.blocks++;
+    }
+
+    private byte[] deflate(byte[] raw) {
+        this.deflater.reset();
+        this.deflater.setInput(raw);
+        this.deflater.finish();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+        byte[] buffer = new byte[8192];
+        while (!this.deflater.finished())
+            out.write(buffer, 0, this.deflater.deflate(buffer));
+
+        return out.toByteArray();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining())
+            this.channel.write(buffer);
+    }
+
+    /**
+     * Writes the last block and the footer, then moves the file in place of the given one.
+     */
+    public void finish() throws IOException {
+        if (this.closed)
+            throw new IllegalStateException("The trace writer is already closed.");
+
+        this.flushBlock();
+        this.writeFooter();
+        this.channel.force(true);
+
+        this.finished = true;
+        this.close();
+        Files.move(this.partial, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Releases the file, deleting it unless {@link #finish()} wrote its footer.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.closed)
+            return;
+
+        this.closed = true;
+        try {
+            this.deflater.end();
+            this.channel.close();
+        } finally {
+            if (!this.finished)
+                Files.deleteIfExists(this.partial);
+        }
+    }
+
+    private void writeFooter() throws IOException {
+        ByteArrayOutputStream footer = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(footer);
+        writeDictionary(out, this.timelines.keySet());
+        writeDictionary(out, this.hosts.keySet());
+        writeDictionary(out, this.labels.keySet());
+
+        out.writeInt(this.labelSets.size());
+        for (List<Integer> labelSet : this.labelSets.keySet()) {
+            out.writeInt(labelSet.size());
+            for (int label : labelSet)
+                out.writeInt(label);
+        }
+
+        out.writeLong(this.rows);
+        out.writeLong(this.relationships);
+        out.writeInt(this.blocks);
+        out.write(this.directory.toByteArray());
+        out.flush();
+
+        long footerOffset = this.channel.position();
+        ByteBuffer buffer = ByteBuffer.allocate(footer.size() + Long.BYTES + MAGIC.length);
+        buffer.put(footer.toByteArray()).putLong(footerOffset).put(MAGIC);
+        this.write(buffer);
+    }
+
+    private static void writeDictionary(DataOutputStream out, Collection<String> values) throws IOException {
+        out.writeInt(values.size());
+        for (String value : values)
+            out.writeUTF(value);
+    }
+
+    public long getRows() {
+        return this.rows;
+    }
+
+    public long getRelationships() {
+        return this.relationships;
+    }
+
+    public int getBlocks() {
+        return this.blocks;
+    }
+
+    public int getTimelines() {
+        return this.timelines.size();
+    }
+}
@@ -0,0 +1,113 @@
+package horus.jobs;
+
+import horus.causality.AnnotationListener;
+import horus.causality.AnnotationOptions;
+import horus.causality.CausalGraphValidation;
+import horus.causality.EventTime;
+import horus.causality.LogProjection;
+import horus.causality.LogicalTimeAssigner;
+import horus.causality.ParallelLogicalTimeAnnotator;
+import horus.causality.TopologicalLogicalTimeIterator;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.List;
+
+/**
+ * Annotates logical time of every event in the background, committing every {@code batchSize} events.
+ */
+public class AnnotationJob extends Job {
+    private final GraphDatabaseService db;
+    private final AnnotationOptions options;
+
+    public AnnotationJob(long id, GraphDatabaseService db, Log log, AnnotationOptions options) {
+        super(id, log);
+
+        this.db = db;
+        this.options = options;
+    }
+
+    @Override
+    public String getType() {
+        return "annotateLogicalTime";
+    }
+
+    @Override
+    protected void execute() throws InterruptedException {
+        if (this.options.isValidate()) {
+            try (Transaction tx = this.db.beginTx()) {
+                this.setCurrentTransaction(tx);
+                CausalGraphValidation.require(this.db);
+                tx.success();
+            }
+        }
+
+        if (this.options.isParallel()) {
+            this.executeInParallel();
+            return;
+        }
+
+        List<Long> roots;
+        LogProjection projection;
+        try (Transaction tx = this.db.beginTx()) {
+            this.setCurrentTransaction(tx);
+            this.setTotal((Long) this.db.execute("MATCH (n:EVENT) RETURN count(n) AS total").next().get("total"));
+            roots = TopologicalLogicalTimeIterator.findRoots(this.db);
+            projection = LogProjection.find(this.db);
+            tx.success();
+        }
+
+        TopologicalLogicalTimeIterator iterator = new TopologicalLogicalTimeIterator(this.db, roots, new LogicalTimeAssigner(this.options));
+
+        Transaction tx = this.db.beginTx();
+        try {
+            this.setCurrentTransaction(tx);
+
+            while (iterator.hasNext() && !this.isCancelled()) {
+                EventTime time = iterator.next();
+                time.write();
+                if (projection != null)
+                    projection.project(time.getNode());
+
+                if (this.progress(this.options.getMaxThroughput()) % this.options.getBatchSize() == 0) {
+                    tx.success();
+                    tx.close();
+
+                    tx = this.db.beginTx();
+                    this.setCurrentTransaction(tx);
+                }
+            }
+
+            tx.success();
+        } finally {
+            tx.close();
+        }
+    }
+
+    private void executeInParallel() throws InterruptedException {
+        try (Transaction tx = this.db.beginTx()) {
+            this.setCurrentTransaction(tx);
+            this.setTotal((Long) this.db.execute("MATCH (n:EVENT) RETURN count(n) AS total").next().get("total"));
+
+            new ParallelLogicalTimeAnnotator(this.db, this.log, this.options).run(new AnnotationListener() {
+                @Override
+                public void annotated() throws InterruptedException {
+                    progress(options.getMaxThroughput());
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return AnnotationJob.this.isCancelled();
+                }
+            });
+
+            // Threads do not annotate in a single topological order, so events are projected afterwards.
+            LogProjection projection = LogProjection.find(this.db);
+            if (projection != null && !this.isCancelled())
+                projection.projectAll(() -> {});
+
+            tx.success();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package horus.jobs;
+
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.TransactionTerminatedException;
+import org.neo4j.logging.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A long running task executed by the {@link JobRegistry}, reporting its progress.
+ * <p>
+ * Cancelling a job terminates the transaction it is running, so the job stops at its next operation.
+ * Termination of that transaction by other means, e.g. {@code dbms.killTransaction}, is handled as a
+ * cancellation as well.
+ */
+public abstract class Job implements Runnable {
+    public enum Status {
+        QUEUED, RUNNING, DONE, FAILED, CANCELLED
+    }
+
+    private final long id;
+    protected final Log log;
+
+    private volatile Status status;
+    private volatile boolean cancelled;
+    private volatile Transaction currentTransaction;
+    private volatile String error;
+
+    private volatile long startedAt;
+    private volatile long finishedAt;
+    private volatile long total;
+    private final AtomicLong processed;
+
+    protected Job(long id, Log log) {
+        this.id = id;
+        this.log = log;
+
+        this.status = Status.QUEUED;
+        this.processed = new AtomicLong(0);
+    }
+
+    public abstract String getType();
+
+    protected abstract void execute() throws InterruptedException;
+
+    @Override
+    public void run() {
+        if (this.cancelled) {
+            this.status = Status.CANCELLED;
+            return;
+        }
+
+        this.status = Status.RUNNING;
+        this.startedAt = System.currentTimeMillis();
+
+        try {
+            this.execute();
+            this.status = this.cancelled ? Status.CANCELLED : Status.DONE;
+        } catch (TransactionTerminatedException | InterruptedException e) {
+            this.status = Status.CANCELLED;
+        } catch (RuntimeException e) {
+            this.log.error("Job " + this.id + " failed: " + e.getMessage(), e);
+            this.error = e.getMessage();
+            this.status = Status.FAILED;
+        } finally {
+            this.currentTransaction = null;
+            this.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+
+        Transaction transaction = this.currentTransaction;
+        if (transaction != null)
+            transaction.terminate();
+    }
+
+    protected boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    protected void setCurrentTransaction(Transaction transaction) {
+        this.currentTransaction = transaction;
+
+        if (this.cancelled)
+            transaction.terminate();
+    }
+
+    protected void setTotal(long total) {
+        this.total = total;
+    }
+
+    /**
+     * Records one more processed item, sleeping if needed to stay under the given throughput.
+     */
+    protected long progress(double maxThroughput) throws InterruptedException {
+        long processed = this.processed.incrementAndGet();
+
+        if (maxThroughput > 0) {
+            long expectedMillis = (long) (processed * 1000 / maxThroughput);
+            long elapsedMillis = System.currentTimeMillis() - this.startedAt;
+
+            if (expectedMillis > elapsedMillis)
+                Thread.sleep(expectedMillis - elapsedMillis);
+        }
+
+        return processed;
+    }
+
+    public long getId() {
+        return this.id;
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public String getError() {
+        return this.error;
+    }
+
+    public long getProcessed() {
+        return this.processed.get();
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    /**
+     * Items processed per second.
+     */
+    public double getRate() {
+        if (this.startedAt == 0)
+            return 0;
+
+        long until = this.finishedAt == 0 ? System.currentTimeMillis() : this.finishedAt;
+        long elapsedMillis = Math.max(1, until - this.startedAt);
+
+        return this.processed.get() / (elapsedMillis / 1000.0);
+    }
+
+    /**
+     * Estimated seconds until the job is done, or null when unknown.
+     */
+    public Double getEta() {
+        if (this.status != Status.RUNNING)
+            return this.status == Status.DONE ? 0.0 : null;
+
+        double rate = this.getRate();
+        if (rate == 0 || this.total == 0)
+            return null;
+
+        return Math.max(0, this.total - this.processed.get()) / rate;
+    }
+}
@@ -0,0 +1,63 @@
+package horus.jobs;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongFunction;
+
+/**
+ * Keeps track of the jobs submitted in this instance, running them one at a time in a dedicated thread
+ * so they do not compete with each other for the same events.
+ */
+public class JobRegistry {
+
+    private static JobRegistry instance = null;
+
+    private final ExecutorService executor;
+    private final AtomicLong ids;
+    private final Map<Long, Job> jobs;
+
+    public static synchronized JobRegistry getInstance() {
+        if (instance == null) {
+            instance = new JobRegistry();
+        }
+
+        return instance;
+    }
+
+    public JobRegistry() {
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "horus-jobs");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.ids = new AtomicLong(0);
+        this.jobs = new ConcurrentSkipListMap<>();
+    }
+
+    public Job submit(LongFunction<Job> jobFactory) {
+        Job job = jobFactory.apply(this.ids.incrementAndGet());
+
+        this.jobs.put(job.getId(), job);
+        this.executor.execute(job);
+
+        return job;
+    }
+
+    public Collection<Job> getJobs() {
+        return this.jobs.values();
+    }
+
+    public Job getJob(long id) {
+        Job job = this.jobs.get(id);
+
+        if (job == null)
+            throw new IllegalArgumentException("There is no job with id " + id + ".");
+
+        return job;
+    }
+}
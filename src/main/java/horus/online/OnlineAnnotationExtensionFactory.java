@@ -0,0 +1,58 @@
+package horus.online;
+
+import horus.HorusSettings;
+import org.neo4j.kernel.configuration.Config;
+import org.neo4j.kernel.extension.ExtensionType;
+import org.neo4j.kernel.extension.KernelExtensionFactory;
+import org.neo4j.kernel.impl.spi.KernelContext;
+import org.neo4j.kernel.internal.GraphDatabaseAPI;
+import org.neo4j.kernel.lifecycle.Lifecycle;
+import org.neo4j.kernel.lifecycle.LifecycleAdapter;
+import org.neo4j.logging.internal.LogService;
+
+/**
+ * Registers the {@link OnlineLogicalTimeAnnotator} when {@code horus.online_annotation.enabled} is set.
+ */
+public class OnlineAnnotationExtensionFactory extends KernelExtensionFactory<OnlineAnnotationExtensionFactory.Dependencies> {
+
+    public interface Dependencies {
+        GraphDatabaseAPI graphdatabaseAPI();
+
+        Config config();
+
+        LogService log();
+    }
+
+    public OnlineAnnotationExtensionFactory() {
+        super(ExtensionType.DATABASE, "horus-online-annotation");
+    }
+
+    @Override
+    public Lifecycle newInstance(KernelContext context, Dependencies dependencies) {
+        Config config = dependencies.config();
+
+        if (!config.get(HorusSettings.online_annotation_enabled))
+            return new LifecycleAdapter();
+
+        return new LifecycleAdapter() {
+            private OnlineLogicalTimeAnnotator annotator;
+
+            @Override
+            public void start() {
+                this.annotator = new OnlineLogicalTimeAnnotator(
+                        dependencies.graphdatabaseAPI(),
+                        dependencies.log().getUserLog(OnlineLogicalTimeAnnotator.class),
+                        config.get(HorusSettings.online_annotation_batch_size)
+                );
+
+                dependencies.graphdatabaseAPI().registerTransactionEventHandler(this.annotator);
+            }
+
+            @Override
+            public void stop() throws InterruptedException {
+                dependencies.graphdatabaseAPI().unregisterTransactionEventHandler(this.annotator);
+                this.annotator.shutdown();
+            }
+        };
+    }
+}
@@ -0,0 +1,246 @@
+package horus.online;
+
+import horus.VectorClock;
+import horus.causality.EventTime;
+import horus.causality.LogProjection;
+import horus.causality.LogicalTime;
+import org.neo4j.graphdb.*;
+import org.neo4j.graphdb.event.TransactionData;
+import org.neo4j.graphdb.event.TransactionEventHandler;
+import org.neo4j.logging.Log;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Annotates logical time of events as soon as they are committed.
+ * <p>
+ * Every committed transaction that creates events, or happens-before relationships, has the affected
+ * events queued. The queue is drained asynchronously, in follow-up transactions, computing the clocks of
+ * each event from the clocks of its parents. Events whose parents are not annotated yet are kept waiting
+ * until one of their parents gets annotated. When a new relationship reaches an event that was already
+ * annotated, its clocks are recomputed and the change is propagated to its descendants.
+ * <p>
+ * When the graph holds a {@link LogProjection}, annotated events are also projected, keeping it up to date.
+ * <p>
+ * Only vector and Lamport clocks are assigned. Events annotated with other clocks, by
+ * {@code horus.annotateLogicalTime} with a {@code clock} other than {@code vector}, or with Bloom or hybrid
+ * clocks, are skipped with a warning rather than mixing clocks, and have to be annotated again by the procedure.
+ */
+public class OnlineLogicalTimeAnnotator implements TransactionEventHandler<List<Long>> {
+    private static final Label EVENT = Label.label("EVENT");
+
+    private final GraphDatabaseService db;
+    private final Log log;
+    private final int batchSize;
+
+    private final ExecutorService executor;
+    private final AtomicBoolean scheduled;
+    private final Queue<Long> pending;
+
+    // Only accessed by the executor thread.
+    private final Set<Long> waiting;
+    private LogProjection projection;
+    private boolean warnedOfOtherClocks;
+
+    public OnlineLogicalTimeAnnotator(GraphDatabaseService db, Log log, int batchSize) {
+        this.db = db;
+        this.log = log;
+        this.batchSize = batchSize;
+
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "horus-online-annotation");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        this.scheduled = new AtomicBoolean(false);
+        this.pending = new ConcurrentLinkedQueue<>();
+        this.waiting = new HashSet<>();
+    }
+
+    @Override
+    public List<Long> beforeCommit(TransactionData data) {
+        List<Long> events = new ArrayList<>();
+
+        for (Node node : data.createdNodes()) {
+            if (node.hasLabel(EVENT))
+                events.add(node.getId());
+        }
+
+        for (Relationship relationship : data.createdRelationships()) {
+            for (RelationshipType type : LogicalTime.HAPPENS_BEFORE) {
+                if (relationship.isType(type))
+                    events.add(relationship.getEndNodeId());
+            }
+        }
+
+        return events.isEmpty() ? null : events;
+    }
+
+    @Override
+    public void afterCommit(TransactionData data, List<Long> events) {
+        if (events == null)
+            return;
+
+        this.pending.addAll(events);
+        this.schedule();
+    }
+
+    @Override
+    public void afterRollback(TransactionData data, List<Long> events) {
+    }
+
+    public void shutdown() throws InterruptedException {
+        this.executor.shutdown();
+        this.executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    private void schedule() {
+        if (this.scheduled.compareAndSet(false, true))
+            this.executor.execute(this::drain);
+    }
+
+    private void drain() {
+        this.scheduled.set(false);
+
+        int annotated = 0;
+        // Events polled since the last commit, requeued if their transaction fails.
+        List<Long> batch = new ArrayList<>();
+        Transaction tx = null;
+        try {
+            tx = this.db.beginTx();
+            this.projection = LogProjection.find(this.db);
+
+            Long nodeId;
+            while ((nodeId = this.pending.poll()) != null) {
+                batch.add(nodeId);
+                if (!this.annotate(nodeId))
+                    continue;
+
+                if (++annotated % this.batchSize == 0) {
+                    Transaction committed = tx;
+                    tx = null;
+                    committed.success();
+                    committed.close();
+
+                    batch.clear();
+                    tx = this.db.beginTx();
+                }
+            }
+
+            Transaction committed = tx;
+            tx = null;
+            committed.success();
+            committed.close();
+
+            batch.clear();
+        } catch (RuntimeException e) {
+            this.log.error("Online logical time annotation failed: " + e.getMessage(), e);
+        } finally {
+            // Still set when the batch failed before committing, in which case it is rolled back.
+            if (tx != null) {
+                tx.failure();
+                tx.close();
+            }
+        }
+
+        // Retried on the next drain rather than right away, so that an event that keeps failing does not spin.
+        if (!batch.isEmpty()) {
+            this.pending.addAll(batch);
+            this.log.warn("Requeued " + batch.size() + " events whose online annotation was rolled back.");
+        }
+
+        if (this.log.isDebugEnabled())
+            this.log.debug("Annotated " + annotated + " events online, " + this.waiting.size() + " waiting for parents.");
+    }
+
+    /**
+     * Computes the logical time of the given event from its parents, returning whether it changed.
+     */
+    private boolean annotate(long nodeId) {
+        Node node;
+        try {
+            node = this.db.getNodeById(nodeId);
+        } catch (NotFoundException e) {
+            this.waiting.remove(nodeId);
+            return false;
+        }
+
+        if (!node.hasProperty(LogicalTime.THREAD_ID)) {
+            this.log.warn("Event " + nodeId + " has no threadId, skipping logical time annotation.");
+            return false;
+        }
+
+        if (this.hasOtherClocks(node)) {
+            this.waiting.remove(nodeId);
+            return false;
+        }
+
+        List<VectorClock> parentClocks = new ArrayList<>();
+        List<Long> parentTimes = new ArrayList<>();
+        for (Relationship relationship : LogicalTime.getParentRelationships(node)) {
+            Node parent = relationship.getStartNode();
+
+            if (this.hasOtherClocks(parent)) {
+                this.waiting.remove(nodeId);
+                return false;
+            }
+
+            if (!LogicalTime.hasLogicalTime(parent)) {
+                this.waiting.add(nodeId);
+                return false;
+            }
+
+            parentClocks.add(LogicalTime.getVectorClock(parent));
+            parentTimes.add(LogicalTime.getLamportTime(parent));
+        }
+
+        this.waiting.remove(nodeId);
+
+        VectorClock vc = LogicalTime.nextVectorClock((String) node.getProperty(LogicalTime.THREAD_ID), parentClocks);
+        long lc = LogicalTime.nextLamportTime(parentTimes);
+
+        boolean changed = !LogicalTime.hasLogicalTime(node)
+                || !vc.equals(LogicalTime.getVectorClock(node))
+                || lc != LogicalTime.getLamportTime(node);
+
+        if (changed)
+            new EventTime(node, vc, lc).write();
+
+        if (this.projection != null)
+            changed |= this.projection.project(node);
+
+        if (!changed)
+            return false;
+
+        for (Relationship relationship : LogicalTime.getChildRelationships(node))
+            this.pending.add(relationship.getEndNodeId());
+
+        return true;
+    }
+
+    /**
+     * Whether the event was annotated with clocks other than the vector and Lamport clocks assigned here, warning
+     * the first time one is found.
+     */
+    private boolean hasOtherClocks(Node node) {
+        boolean other = node.hasProperty(LogicalTime.ITC_LOGICAL_TIME)
+                || node.hasProperty(LogicalTime.BLOOM_LOGICAL_TIME)
+                || node.hasProperty(LogicalTime.HYBRID_LOGICAL_TIME)
+                || node.hasProperty(LogicalTime.CHAIN_ID)
+                || (node.hasProperty(LogicalTime.LAMPORT_LOGICAL_TIME) && !LogicalTime.hasVectorClock(node));
+
+        if (other && !this.warnedOfOtherClocks) {
+            this.warnedOfOtherClocks = true;
+            this.log.warn("Event " + node.getId() + " was annotated with clocks other than vector clocks, skipping " +
+                    "online annotation of its descendants. Run horus.annotateLogicalTime to annotate them.");
+        }
+
+        return other;
+    }
+}
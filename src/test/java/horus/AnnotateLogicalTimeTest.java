@@ -1,5 +1,6 @@
 package horus;
 
+import horus.causality.ClockStore;
 import org.codehaus.jackson.JsonNode;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.junit.Rule;
@@ -15,7 +16,7 @@ import java.util.function.Consumer;
 import static org.junit.Assert.*;
 
 public class AnnotateLogicalTimeTest {
-    private static final String CLIENT_SERVER_WITH_UNRELATED_TIMELINES = "CREATE " +
+    static final String CLIENT_SERVER_WITH_UNRELATED_TIMELINES = "CREATE " +
             "(a1:EVENT:CREATE {threadId:'1910', eventId:'1@cloud83', kernelTime: 1}), " +
             "(a2:EVENT:CREATE {threadId:'1910', eventId:'2@cloud83', kernelTime: 2}), " +
             "(a3:EVENT:JOIN {threadId:'1910', eventId:'3@cloud83', kernelTime: 3}), " +
@@ -49,7 +50,10 @@ public class AnnotateLogicalTimeTest {
     public Neo4jRule neo4j = new Neo4jRule()
 
             // This is the Procedure we want to test
-            .withProcedure(AnnotateLogicalTime.class);
+            .withProcedure(AnnotateLogicalTime.class)
+            .withProcedure(HappensBefore.class)
+            .withProcedure(GetCausalNodes.class)
+            .withProcedure(Jobs.class);
 
     @Test
     public void calculatesLogicalTime() throws Throwable {
@@ -119,6 +123,236 @@ public class AnnotateLogicalTimeTest {
         }
     }
 
+    @Test
+    public void calculatesLamportTimeOnlyAndVectorClocksLater() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            session.run("CALL horus.annotateLogicalTime({clock: 'lamport'})").consume();
+
+            assertEquals(13, session.run("MATCH (n:EVENT) WHERE exists(n.lamportLogicalTime) RETURN n").list().size());
+            assertEquals(0, session.run("MATCH (n:EVENT) WHERE exists(n.vectorLogicalTime) RETURN n").list().size());
+
+            session.run("MATCH (n:EVENT {eventId: '12@cloud83'}) CALL horus.annotateVectorClocks([n]) RETURN count(*)").consume();
+
+            Record node = session.run("MATCH (n:EVENT {eventId: '12@cloud83'}) RETURN n.threadId as threadId, n.vectorLogicalTime as vectorLogicalTime, n.lamportLogicalTime as lamportLogicalTime").single();
+
+            testVectorLogicalTime(node, vc -> {
+                assertEquals(2, vc.getTime("1910").intValue());
+                assertEquals(3, vc.getTime("1911").intValue());
+                assertEquals(4, vc.getTime("1912").intValue());
+            });
+            testLamportLogicalTime(node, lc -> assertEquals(new Long(8), lc));
+
+            // Only the causal past of the selected event has vector clocks.
+            assertTrue(session.run("MATCH (n:EVENT {eventId: '4@cloud83'}) RETURN n.vectorLogicalTime AS vc").single().get("vc").isNull());
+        }
+    }
+
+    @Test
+    public void calculatesLogicalTimeIndexedByChains() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            // Thread B only starts after thread A was joined, so both fit in a single chain.
+            session.run("CREATE " +
+                    "(m1:EVENT:CREATE {threadId:'main', eventId:'m1'}), " +
+                    "(m2:EVENT:JOIN {threadId:'main', eventId:'m2'}), " +
+                    "(m3:EVENT:JOIN {threadId:'main', eventId:'m3'}), " +
+                    "(x1:EVENT:START {threadId:'A', eventId:'x1'}), " +
+                    "(x2:EVENT:END {threadId:'A', eventId:'x2'}), " +
+                    "(y1:EVENT:START {threadId:'B', eventId:'y1'}), " +
+                    "(y2:EVENT:END {threadId:'B', eventId:'y2'}), " +
+                    "(m1)-[:HAPPENS_BEFORE]->(m2)-[:HAPPENS_BEFORE]->(m3), " +
+                    "(m1)-[:HAPPENS_BEFORE]->(x1)-[:HAPPENS_BEFORE]->(x2)-[:HAPPENS_BEFORE]->(m2), " +
+                    "(m2)-[:HAPPENS_BEFORE]->(y1)-[:HAPPENS_BEFORE]->(y2)-[:HAPPENS_BEFORE]->(m3)").consume();
+
+            session.run("CALL horus.annotateLogicalTime({clock: 'chain'})").consume();
+
+            Record node = session.run("MATCH (n:EVENT {eventId: 'y2'}) RETURN n.threadId as threadId, n.chainId as chainId, n.vectorLogicalTime as vectorLogicalTime, n.lamportLogicalTime as lamportLogicalTime").single();
+
+            assertEquals("A", node.get("chainId").asString());
+            testVectorLogicalTime(node, vc -> {
+                assertEquals(2, vc.getTime("main").intValue());
+                assertEquals(4, vc.getTime("A").intValue());
+                assertEquals(0, vc.getTime("B").intValue());
+            });
+
+            assertTrue(session.run("MATCH (a:EVENT {eventId: 'x1'}), (b:EVENT {eventId: 'y2'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertFalse(session.run("MATCH (a:EVENT {eventId: 'y1'}), (b:EVENT {eventId: 'x2'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+        }
+    }
+
+    @Test
+    public void calculatesIntervalTreeClocks() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run("CREATE " +
+                    "(m1:EVENT:CREATE {threadId:'main', eventId:'m1'}), " +
+                    "(m2:EVENT:JOIN {threadId:'main', eventId:'m2'}), " +
+                    "(m3:EVENT:JOIN {threadId:'main', eventId:'m3'}), " +
+                    "(x1:EVENT:START {threadId:'A', eventId:'x1'}), " +
+                    "(x2:EVENT:END {threadId:'A', eventId:'x2'}), " +
+                    "(y1:EVENT:START {threadId:'B', eventId:'y1'}), " +
+                    "(y2:EVENT:END {threadId:'B', eventId:'y2'}), " +
+                    "(m1)-[:HAPPENS_BEFORE]->(m2)-[:HAPPENS_BEFORE]->(m3), " +
+                    "(m1)-[:HAPPENS_BEFORE]->(x1)-[:HAPPENS_BEFORE]->(x2)-[:HAPPENS_BEFORE]->(m2), " +
+                    "(m2)-[:HAPPENS_BEFORE]->(y1)-[:HAPPENS_BEFORE]->(y2)-[:HAPPENS_BEFORE]->(m3)").consume();
+
+            session.run("CALL horus.annotateLogicalTime({clock: 'itc'})").consume();
+
+            assertEquals(7, session.run("MATCH (n:EVENT) WHERE exists(n.itcLogicalTime) AND exists(n.lamportLogicalTime) RETURN n").list().size());
+            assertEquals(0, session.run("MATCH (n:EVENT) WHERE exists(n.vectorLogicalTime) RETURN n").list().size());
+
+            // Ids of the joined threads were given back to main, so its clock does not grow with them.
+            String m3 = session.run("MATCH (n:EVENT {eventId: 'm3'}) RETURN n.itcLogicalTime AS itc").single().get("itc").asString();
+            assertTrue(m3, m3.matches("\\d+|\\(\\d+,\\d+,\\d+\\)"));
+
+            assertTrue(session.run("MATCH (a:EVENT {eventId: 'x1'}), (b:EVENT {eventId: 'y2'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertTrue(session.run("MATCH (a:EVENT {eventId: 'x2'}), (b:EVENT {eventId: 'y1'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertFalse(session.run("MATCH (a:EVENT {eventId: 'y1'}), (b:EVENT {eventId: 'x2'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertFalse(session.run("MATCH (a:EVENT {eventId: 'm2'}), (b:EVENT {eventId: 'm1'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+
+            assertEquals(4, session.run("MATCH (a:EVENT {eventId: 'm1'}), (b:EVENT {eventId: 'm2'}) CALL horus.getCausalNodes(a, b) YIELD node RETURN node").list().size());
+        }
+    }
+
+    @Test
+    public void storesVectorClocksInClockStore() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime({clockStore: true})").consume();
+
+            assertEquals(0, session.run("MATCH (n:EVENT) WHERE exists(n.vectorLogicalTime) RETURN n").list().size());
+            assertEquals(13, session.run("MATCH (n:EVENT) WHERE exists(n.timelineSequence) AND exists(n.lamportLogicalTime) RETURN n").list().size());
+
+            assertTrue(session.run("MATCH (a:EVENT {eventId: '1@cloud83'}), (b:EVENT {eventId: '12@cloud83'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertFalse(session.run("MATCH (a:EVENT {eventId: '12@cloud83'}), (b:EVENT {eventId: '1@cloud83'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertFalse(session.run("MATCH (a:EVENT {eventId: '8@cloud83'}), (b:EVENT {eventId: '12@cloud83'}) CALL horus.happensBefore(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+
+            assertEquals(6, session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) CALL horus.getCausalNodes(a, b) YIELD node RETURN node").list().size());
+        }
+    }
+
+    @Test
+    public void dropsStoredClocksOfDeletedEvents() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime({clockStore: true})").consume();
+
+            long nodeId = session.run("MATCH (n:EVENT {eventId: '13@cloud83'}) RETURN id(n) AS id").single().get("id").asLong();
+            ClockStore store = ClockStore.find(neo4j.getGraphDatabaseService());
+            assertTrue(store.contains(nodeId));
+
+            session.run("MATCH (n:EVENT {eventId: '13@cloud83'}) DETACH DELETE n").consume();
+            assertFalse(store.contains(nodeId));
+        }
+    }
+
+    @Test
+    public void calculatesBloomClocks() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            session.run("CALL horus.annotateLogicalTime({clock: 'bloom', bloomSize: 64, bloomHashes: 2})").consume();
+
+            assertEquals(13, session.run("MATCH (n:EVENT) WHERE size(n.bloomLogicalTime) = 64 RETURN n").list().size());
+            assertEquals(0, session.run("MATCH (n:EVENT) WHERE exists(n.vectorLogicalTime) RETURN n").list().size());
+
+            Record related = session.run("MATCH (a:EVENT {eventId: '1@cloud83'}), (b:EVENT {eventId: '12@cloud83'}) CALL horus.happensBeforeApprox(a, b) YIELD result, falsePositiveProbability RETURN result, falsePositiveProbability").single();
+            assertTrue(related.get("result").asBoolean());
+            assertTrue(related.get("falsePositiveProbability").asDouble() > 0);
+            assertTrue(related.get("falsePositiveProbability").asDouble() < 1);
+
+            Record reversed = session.run("MATCH (a:EVENT {eventId: '12@cloud83'}), (b:EVENT {eventId: '1@cloud83'}) CALL horus.happensBeforeApprox(a, b) YIELD result, falsePositiveProbability RETURN result, falsePositiveProbability").single();
+            assertFalse(reversed.get("result").asBoolean());
+            assertEquals(0.0, reversed.get("falsePositiveProbability").asDouble(), 0.0);
+
+            assertFalse(session.run("MATCH (a:EVENT {eventId: '13@cloud83'}), (b:EVENT {eventId: '4@cloud83'}) CALL horus.happensBeforeApprox(a, b) YIELD result RETURN result").single().get("result").asBoolean());
+        }
+    }
+
+    @Test
+    public void calculatesLogicalTimeInParallel() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            // The larger component is annotated by wavefronts, the single event one by itself.
+            session.run("CALL horus.annotateLogicalTime({parallel: true, concurrency: 2, wavefrontThreshold: 5})").consume();
+
+            Record node = session.run("MATCH (n:EVENT {eventId: '12@cloud83'}) RETURN n.threadId as threadId, n.vectorLogicalTime as vectorLogicalTime, n.lamportLogicalTime as lamportLogicalTime").single();
+
+            testVectorLogicalTime(node, vc -> {
+                assertEquals(2, vc.getTime("1910").intValue());
+                assertEquals(3, vc.getTime("1911").intValue());
+                assertEquals(4, vc.getTime("1912").intValue());
+            });
+            testLamportLogicalTime(node, lc -> assertEquals(new Long(8), lc));
+
+            node = session.run("MATCH (n:EVENT {eventId: '13@cloud83'}) RETURN n.threadId as threadId, n.vectorLogicalTime as vectorLogicalTime, n.lamportLogicalTime as lamportLogicalTime").single();
+
+            testVectorLogicalTime(node, vc -> {
+                assertEquals(0, vc.getTime("1910").intValue());
+                assertEquals(1, vc.getTime("1913").intValue());
+            });
+            testLamportLogicalTime(node, lc -> assertEquals(new Long(1), lc));
+        }
+    }
+
+    @Test
+    public void calculatesLogicalTimeInBackgroundJob() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            long jobId = session.run("CALL horus.annotateLogicalTime.submit({batchSize: 2}) YIELD id RETURN id").single().get("id").asLong();
+
+            Record job = null;
+            for (int attempt = 0; attempt < 200; attempt++) {
+                job = session.run("CALL horus.jobs() YIELD id, status, nodesProcessed, totalNodes WHERE id = $id RETURN status, nodesProcessed, totalNodes",
+                        Values.parameters("id", jobId)).single();
+
+                if (!job.get("status").asString().equals("QUEUED") && !job.get("status").asString().equals("RUNNING"))
+                    break;
+
+                Thread.sleep(50);
+            }
+
+            assertEquals("DONE", job.get("status").asString());
+            assertEquals(13, job.get("nodesProcessed").asLong());
+            assertEquals(13, job.get("totalNodes").asLong());
+
+            Record node = session.run("MATCH (n:EVENT {eventId: '4@cloud83'}) RETURN n.threadId as threadId, n.vectorLogicalTime as vectorLogicalTime, n.lamportLogicalTime as lamportLogicalTime").single();
+
+            testVectorLogicalTime(node, vc -> {
+                assertEquals(4, vc.getTime("1910").intValue());
+                assertEquals(4, vc.getTime("1911").intValue());
+                assertEquals(4, vc.getTime("1912").intValue());
+            });
+            testLamportLogicalTime(node, lc -> assertEquals(new Long(10), lc));
+        }
+    }
+
     @Test
     public void calculatesLogicalTimeInRealExample() throws Throwable {
         try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
@@ -0,0 +1,37 @@
+package horus;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BloomClockTest {
+
+    @Test
+    public void mayHappenBefore() {
+        BloomClock parent = new BloomClock(32).increment("1910", 2);
+        BloomClock child = new BloomClock(32).mergeWithoutIncrement(parent).increment("1911", 2);
+
+        assertTrue(parent.mayHappenBefore(child));
+        assertFalse(child.mayHappenBefore(parent));
+        assertFalse(parent.mayHappenBefore(parent));
+    }
+
+    @Test
+    public void falsePositiveProbability() {
+        BloomClock small = new BloomClock(32).increment("1910", 2);
+        BloomClock large = new BloomClock(32);
+        for (int i = 0; i < 100; i++)
+            large.increment("thread" + i, 2);
+
+        double probability = small.falsePositiveProbability(large);
+
+        assertTrue(probability > 0.5);
+        assertTrue(probability < 1);
+        assertTrue(large.falsePositiveProbability(small) < probability);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentSizes() {
+        new BloomClock(32).mayHappenBefore(new BloomClock(64));
+    }
+}
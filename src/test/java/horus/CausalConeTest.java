@@ -0,0 +1,106 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CausalConeTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(CausalCone.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void getsCausalPastNewestFirst() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            this.createExample(session);
+
+            List<String> past = getEventIds(session, "horus.causalPast", "11@cloud83", "{}");
+            assertEquals(7, past.size());
+            assertEquals(Arrays.asList("7@cloud83", "6@cloud83", "10@cloud83", "9@cloud83"), past.subList(0, 4));
+            assertEquals("1@cloud83", past.get(6));
+
+            assertEquals(Arrays.asList("7@cloud83", "6@cloud83"), getEventIds(session, "horus.causalPast", "11@cloud83", "{limit: 2}"));
+            assertEquals(Arrays.asList("7@cloud83", "6@cloud83"), getEventIds(session, "horus.causalPast", "11@cloud83", "{depth: 2}"));
+            assertEquals(Arrays.asList("9@cloud83", "5@cloud83"), getEventIds(session, "horus.causalPast", "11@cloud83", "{labels: ['START']}"));
+        }
+    }
+
+    @Test
+    public void getsCausalFutureNearestFirst() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            this.createExample(session);
+
+            List<String> future = getEventIds(session, "horus.causalFuture", "6@cloud83", "{}");
+            assertEquals(6, future.size());
+            assertEquals("7@cloud83", future.get(0));
+            assertEquals("4@cloud83", future.get(5));
+            assertFalse(future.contains("13@cloud83"));
+
+            assertTrue(getEventIds(session, "horus.causalFuture", "13@cloud83", "{}").isEmpty());
+        }
+    }
+
+    @Test
+    public void getsConcurrentEvents() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            this.createExample(session);
+
+            assertEquals(Arrays.asList("13@cloud83"), getEventIds(session, "horus.concurrentWith", "6@cloud83", "{}"));
+            assertEquals(Arrays.asList("13@cloud83", "8@cloud83"), getEventIds(session, "horus.concurrentWith", "11@cloud83", "{}"));
+            assertEquals(Arrays.asList("8@cloud83"), getEventIds(session, "horus.concurrentWith", "11@cloud83", "{labels: ['END']}"));
+            assertEquals(12, getEventIds(session, "horus.concurrentWith", "13@cloud83", "{}").size());
+        }
+    }
+
+    @Test
+    public void getsCommonCausalAncestors() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            this.createExample(session);
+
+            assertEquals(Collections.singletonList("7@cloud83"), getCommonAncestors(session, "8@cloud83", "11@cloud83"));
+            assertEquals(Collections.singletonList("7@cloud83"), getCommonAncestors(session, "11@cloud83", "8@cloud83"));
+            assertEquals(Collections.singletonList("2@cloud83"), getCommonAncestors(session, "2@cloud83", "11@cloud83"));
+        }
+    }
+
+    private void createExample(Session session) {
+        session.run(AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+        session.run("CALL horus.createLogicalTimeIndexes()").consume();
+        session.run("CALL horus.annotateLogicalTime()").consume();
+    }
+
+    private static List<String> getEventIds(Session session, String procedure, String eventId, String config) {
+        return session.run("MATCH (n:EVENT {eventId: $eventId}) CALL " + procedure + "(n, " + config + ") YIELD node RETURN node.eventId AS eventId",
+                Values.parameters("eventId", eventId))
+                .list(record -> record.get("eventId").asString());
+    }
+
+    private static List<String> getCommonAncestors(Session session, String a, String b) {
+        return session.run("MATCH (a:EVENT {eventId: $a}), (b:EVENT {eventId: $b}) CALL horus.commonCausalAncestors(a, b) YIELD node RETURN node.eventId AS eventId",
+                Values.parameters("a", a, "b", b))
+                .list(record -> record.get("eventId").asString());
+    }
+}
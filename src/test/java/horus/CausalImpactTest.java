@@ -0,0 +1,61 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static horus.AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES;
+import static org.junit.Assert.*;
+
+public class CausalImpactTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(CausalImpact.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void countsAncestorsAndDescendants() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            Map<String, Record> counts = session.run("CALL horus.causalImpact({write: true}) YIELD node, ancestors, descendants, exactAncestors, exactDescendants " +
+                    "RETURN node.eventId AS eventId, ancestors, descendants, exactAncestors, exactDescendants")
+                    .list().stream().collect(Collectors.toMap(record -> record.get("eventId").asString(), record -> record));
+
+            assertEquals(13, counts.size());
+            assertCounts(counts.get("1@cloud83"), 0, 11);
+            assertCounts(counts.get("4@cloud83"), 11, 0);
+            assertCounts(counts.get("11@cloud83"), 7, 3);
+            assertCounts(counts.get("13@cloud83"), 0, 0);
+            assertTrue(counts.get("1@cloud83").get("exactDescendants").asBoolean());
+
+            Record written = session.run("MATCH (n:EVENT {eventId: '11@cloud83'}) RETURN n.causalAncestors AS ancestors, n.causalDescendants AS descendants").single();
+            assertCounts(written, 7, 3);
+
+            Record top = session.run("CALL horus.causalImpact({limit: 1}) YIELD node RETURN node.eventId AS eventId").single();
+            assertEquals("1@cloud83", top.get("eventId").asString());
+
+            Record estimated = session.run("MATCH (n:EVENT {eventId: '1@cloud83'}) " +
+                    "CALL horus.causalImpact({exact: false, precision: 10}) YIELD node, descendants, exactDescendants " +
+                    "WITH n, node, descendants, exactDescendants WHERE node = n RETURN descendants, exactDescendants").single();
+            assertFalse(estimated.get("exactDescendants").asBoolean());
+            assertEquals(11, estimated.get("descendants").asLong(), 1);
+        }
+    }
+
+    private static void assertCounts(Record record, long ancestors, long descendants) {
+        assertEquals(ancestors, record.get("ancestors").asLong());
+        assertEquals(descendants, record.get("descendants").asLong());
+    }
+}
@@ -0,0 +1,138 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompactSegmentsTest {
+    private static final String CLIENT_SERVER_WITH_LOCAL_RUNS = "CREATE " +
+            "(a1:EVENT:START {threadId:'1910', eventId:'a1'}), " +
+            "(a2:EVENT:LOG {threadId:'1910', eventId:'a2'}), " +
+            "(a3:EVENT:LOG {threadId:'1910', eventId:'a3'}), " +
+            "(a4:EVENT:LOG {threadId:'1910', eventId:'a4'}), " +
+            "(a5:EVENT:SND {threadId:'1910', eventId:'a5'}), " +
+
+            "(b1:EVENT:START {threadId:'1911', eventId:'b1'}), " +
+            "(b2:EVENT:LOG {threadId:'1911', eventId:'b2'}), " +
+            "(b3:EVENT:RCV {threadId:'1911', eventId:'b3'}), " +
+            "(b4:EVENT:LOG {threadId:'1911', eventId:'b4'}), " +
+            "(b5:EVENT:LOG {threadId:'1911', eventId:'b5'}), " +
+            "(b6:EVENT:END {threadId:'1911', eventId:'b6'}), " +
+
+            "(a1)-[:HAPPENS_BEFORE]->(a2)-[:HAPPENS_BEFORE]->(a3)-[:HAPPENS_BEFORE]->(a4)-[:HAPPENS_BEFORE]->(a5), " +
+            "(b1)-[:HAPPENS_BEFORE]->(b2)-[:HAPPENS_BEFORE]->(b3)-[:HAPPENS_BEFORE]->(b4)-[:HAPPENS_BEFORE]->(b5)-[:HAPPENS_BEFORE]->(b6), " +
+            "(a5)-[:HAPPENS_BEFORE]->(b3)";
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(CompactSegments.class)
+            .withProcedure(AnnotateLogicalTime.class)
+            .withProcedure(GetCausalGraph.class);
+
+    @Test
+    public void recordsMaximalLocalRuns() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_LOCAL_RUNS).consume();
+
+            Record result = session.run("CALL horus.compactSegments()").single();
+            assertEquals(2, result.get("segments").asLong());
+            assertEquals(5, result.get("events").asLong());
+
+            List<String> segments = session.run("MATCH (n)-[s:SEGMENT]->(m) RETURN n.eventId + '->' + m.eventId + ':' + s.length AS segment ORDER BY segment")
+                    .list(record -> record.get("segment").asString());
+            assertEquals(Arrays.asList("a2->a4:3", "b4->b5:2"), segments);
+
+            assertEquals(1, session.run("CALL horus.compactSegments({minLength: 3})").single().get("segments").asLong());
+            assertEquals(1, session.run("CALL horus.dropSegments()").single().get("segments").asLong());
+        }
+    }
+
+    @Test
+    public void annotatesSegmentsLikeTheRestOfTheGraph() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_LOCAL_RUNS).consume();
+            session.run("CALL horus.compactSegments()").consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            Record b5 = session.run("MATCH (n {eventId: 'b5'}) RETURN n.threadId AS threadId, " +
+                    "n.vectorLogicalTime AS vectorLogicalTime, n.lamportLogicalTime AS lamportLogicalTime").single();
+            assertEquals(8, b5.get("lamportLogicalTime").asLong());
+            AnnotateLogicalTimeTest.testVectorLogicalTime(b5, vc -> {
+                assertEquals(5, vc.getTime("1910").intValue());
+                assertEquals(5, vc.getTime("1911").intValue());
+            });
+
+            assertEquals(11, session.run("MATCH (n:EVENT) WHERE exists(n.vectorLogicalTime) RETURN count(n) AS n").single().get("n").asLong());
+        }
+    }
+
+    @Test
+    public void jumpsOverSegments() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_LOCAL_RUNS).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+            session.run("CALL horus.compactSegments()").consume();
+
+            List<String> edges = session.run("MATCH (start {eventId: 'a1'}), (end {eventId: 'b6'}) " +
+                    "CALL horus.getCompactCausalGraph(start, end) YIELD from, to, length " +
+                    "RETURN from.eventId + '->' + to.eventId + ':' + length AS edge ORDER BY edge")
+                    .list(record -> record.get("edge").asString());
+            assertEquals(Arrays.asList("a1->a2:1", "a2->a4:2", "a4->a5:1", "a5->b3:1", "b3->b4:1", "b4->b5:1", "b5->b6:1"), edges);
+
+            List<String> partial = session.run("MATCH (start {eventId: 'a1'}), (end {eventId: 'a3'}) " +
+                    "CALL horus.getCompactCausalGraph(start, end) YIELD from, to, length " +
+                    "RETURN from.eventId + '->' + to.eventId + ':' + length AS edge ORDER BY edge")
+                    .list(record -> record.get("edge").asString());
+            assertEquals(Arrays.asList("a1->a2:1", "a2->a3:1"), partial);
+        }
+    }
+
+    @Test
+    public void dropsSegmentsChangedSinceCompaction() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_LOCAL_RUNS).consume();
+            session.run("CALL horus.compactSegments()").consume();
+
+            // a3 now also sends to another thread, so a2..a4 is no longer a chain
+            session.run("MATCH (a3 {eventId: 'a3'}) " +
+                    "CREATE (a3)-[:HAPPENS_BEFORE]->(:EVENT:RCV {threadId:'1912', eventId:'c1'})").consume();
+
+            List<String> segments = session.run("MATCH (n)-[s:SEGMENT]->(m) RETURN n.eventId + '->' + m.eventId AS segment")
+                    .list(record -> record.get("segment").asString());
+            assertEquals(Arrays.asList("b4->b5"), segments);
+
+            // b5 now sends to another thread, so b4..b5 is no longer a run either.
+            session.run("MATCH (b5 {eventId: 'b5'}) SET b5:SND").consume();
+            assertEquals(0, session.run("MATCH ()-[s:SEGMENT]->() RETURN count(s) AS n").single().get("n").asLong());
+
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            List<String> edges = session.run("MATCH (start {eventId: 'a1'}), (end {eventId: 'a4'}) " +
+                    "CALL horus.getCompactCausalGraph(start, end) YIELD from, to, length " +
+                    "RETURN from.eventId + '->' + to.eventId + ':' + length AS edge ORDER BY edge")
+                    .list(record -> record.get("edge").asString());
+            assertEquals(Arrays.asList("a1->a2:1", "a2->a3:1", "a3->a4:1"), edges);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ComputeLogicalTimeTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(ComputeLogicalTime.class);
+
+    @Test
+    public void computesLogicalTimeWithoutWriting() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run("CREATE " +
+                    "(a1:EVENT {threadId:'1910', eventId:'1@cloud83'}), " +
+                    "(a2:EVENT {threadId:'1910', eventId:'2@cloud83'}), " +
+                    "(b1:EVENT {threadId:'1911', eventId:'3@cloud83'}), " +
+                    "(b2:EVENT {threadId:'1911', eventId:'4@cloud83'}), " +
+                    "(a1)-[:HAPPENS_BEFORE]->(a2), (a1)-[:HAPPENS_BEFORE]->(b1), " +
+                    "(b1)-[:HAPPENS_BEFORE]->(b2), (a2)-[:HAPPENS_BEFORE]->(b2)").consume();
+
+            List<Record> records = session.run("CALL horus.computeLogicalTime() YIELD node, lamport, vectorClock " +
+                    "RETURN node.eventId AS eventId, lamport, vectorClock").list();
+
+            assertEquals(4, records.size());
+
+            Map<String, Record> byEvent = new HashMap<>();
+            records.forEach(record -> byEvent.put(record.get("eventId").asString(), record));
+
+            assertEquals(1, byEvent.get("1@cloud83").get("lamport").asLong());
+            assertEquals(3, byEvent.get("4@cloud83").get("lamport").asLong());
+            assertEquals(2L, byEvent.get("4@cloud83").get("vectorClock").asMap().get("1910"));
+            assertEquals(2L, byEvent.get("4@cloud83").get("vectorClock").asMap().get("1911"));
+
+            assertEquals(0, session.run("MATCH (n:EVENT) WHERE exists(n.lamportLogicalTime) RETURN n").list().size());
+        }
+    }
+}
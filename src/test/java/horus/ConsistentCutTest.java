@@ -0,0 +1,81 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConsistentCutTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(ConsistentCut.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void getsConsistentCutOfEvent() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            this.createExample(session);
+
+            Map<String, String> cut = getCut(session, "MATCH (n:EVENT {eventId: 'b2'}) CALL horus.consistentCut(n) YIELD timeline, node RETURN timeline, node.eventId AS eventId");
+            assertEquals("a2", cut.get("A"));
+            assertEquals("b2", cut.get("B"));
+
+            cut = getCut(session, "MATCH (n:EVENT {eventId: 'a1'}) CALL horus.consistentCut(n) YIELD timeline, node RETURN timeline, node.eventId AS eventId");
+            assertEquals("a1", cut.get("A"));
+            assertNull(cut.get("B"));
+            assertTrue(cut.containsKey("B"));
+        }
+    }
+
+    @Test
+    public void getsConsistentCutAtKernelTime() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            this.createExample(session);
+
+            // b2 happened at 3000 by its own clock, but after a2, which happened at 5000.
+            Map<String, String> cut = getCut(session, "CALL horus.consistentCutAt(4000) YIELD timeline, node RETURN timeline, node.eventId AS eventId");
+            assertEquals("a1", cut.get("A"));
+            assertEquals("b1", cut.get("B"));
+
+            cut = getCut(session, "CALL horus.consistentCutAt(5000) YIELD timeline, node RETURN timeline, node.eventId AS eventId");
+            assertEquals("a2", cut.get("A"));
+            assertEquals("b2", cut.get("B"));
+
+            cut = getCut(session, "CALL horus.consistentCutAt(100000) YIELD timeline, node RETURN timeline, node.eventId AS eventId");
+            assertEquals("a2", cut.get("A"));
+            assertEquals("b3", cut.get("B"));
+
+            cut = getCut(session, "CALL horus.consistentCutAt(500) YIELD timeline, node RETURN timeline, node.eventId AS eventId");
+            assertNull(cut.get("A"));
+            assertNull(cut.get("B"));
+        }
+    }
+
+    private void createExample(Session session) {
+        session.run(GetEventsInTimeWindowTest.SKEWED_CLOCKS).consume();
+        session.run("CALL horus.createLogicalTimeIndexes()").consume();
+        session.run("CALL horus.annotateLogicalTime({hybrid: true})").consume();
+    }
+
+    private static Map<String, String> getCut(Session session, String query) {
+        Map<String, String> cut = new HashMap<>();
+        for (Record record : session.run(query).list())
+            cut.put(record.get("timeline").asString(), record.get("eventId").isNull() ? null : record.get("eventId").asString());
+
+        return cut;
+    }
+}
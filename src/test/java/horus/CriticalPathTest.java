@@ -0,0 +1,79 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class CriticalPathTest {
+    // main waits for both A and B, A being the last to finish.
+    private static final String FORK_JOIN = "CREATE " +
+            "(m1:EVENT:CREATE {threadId:'main', eventId:'m1', kernelTime: 0}), " +
+            "(m2:EVENT:JOIN {threadId:'main', eventId:'m2', kernelTime: 60}), " +
+            "(x1:EVENT:START {threadId:'A', eventId:'x1', kernelTime: 10}), " +
+            "(x2:EVENT:END {threadId:'A', eventId:'x2', kernelTime: 50}), " +
+            "(y1:EVENT:START {threadId:'B', eventId:'y1', kernelTime: 20}), " +
+            "(y2:EVENT:END {threadId:'B', eventId:'y2', kernelTime: 30}), " +
+            "(m1)-[:HAPPENS_BEFORE]->(m2), " +
+            "(m1)-[:HAPPENS_BEFORE]->(x1)-[:HAPPENS_BEFORE]->(x2)-[:HAPPENS_BEFORE]->(m2), " +
+            "(m1)-[:HAPPENS_BEFORE]->(y1)-[:HAPPENS_BEFORE]->(y2)-[:HAPPENS_BEFORE]->(m2)";
+
+    // C neither waits for, nor is waited for by, main.
+    private static final String UNRELATED_THREAD = "CREATE " +
+            "(z1:EVENT:START {threadId:'C', eventId:'z1', kernelTime: 15}), " +
+            "(z2:EVENT:END {threadId:'C', eventId:'z2', kernelTime: 25}), " +
+            "(z1)-[:HAPPENS_BEFORE]->(z2)";
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(CriticalPath.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void findsCriticalPath() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(FORK_JOIN).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            List<Record> path = session.run("MATCH (start:EVENT {eventId: 'm1'}), (end:EVENT {eventId: 'm2'}) " +
+                    "CALL horus.criticalPath(start, end) YIELD node, duration, elapsed " +
+                    "RETURN node.eventId AS eventId, duration, elapsed").list();
+
+            assertEquals(Arrays.asList("m1", "x1", "x2", "m2"), path.stream().map(step -> step.get("eventId").asString()).collect(Collectors.toList()));
+            assertEquals(Arrays.asList(0L, 10L, 40L, 10L), path.stream().map(step -> step.get("duration").asLong()).collect(Collectors.toList()));
+            assertEquals(60L, path.get(3).get("elapsed").asLong());
+
+            assertTrue(session.run("MATCH (start:EVENT {eventId: 'm2'}), (end:EVENT {eventId: 'm1'}) " +
+                    "CALL horus.criticalPath(start, end) YIELD node RETURN node").list().isEmpty());
+        }
+    }
+
+    @Test
+    public void findsNoPathBetweenUnrelatedEvents() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(FORK_JOIN).consume();
+            session.run(UNRELATED_THREAD).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            assertTrue(session.run("MATCH (start:EVENT {eventId: 'z1'}), (end:EVENT {eventId: 'm2'}) " +
+                    "CALL horus.criticalPath(start, end) YIELD node RETURN node").list().isEmpty());
+            assertTrue(session.run("MATCH (start:EVENT {eventId: 'm1'}), (end:EVENT {eventId: 'z2'}) " +
+                    "CALL horus.criticalPath(start, end) YIELD node RETURN node").list().isEmpty());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import static horus.AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES;
+import static org.junit.Assert.*;
+
+public class EstimateTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withConfig(HorusSettings.memory_budget.name(), "1k")
+
+            // This is the Procedure we want to test
+            .withProcedure(Estimate.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void estimatesAnnotation() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            Record estimate = session.run("CALL horus.estimate.annotate()").single();
+            assertEquals("annotate", estimate.get("operation").asString());
+            assertEquals(13, estimate.get("events").asLong());
+            assertEquals(15, estimate.get("relationships").asLong());
+            assertEquals(4, estimate.get("timelines").asLong());
+            assertEquals(4, estimate.get("clockWidth").asLong());
+            assertTrue(estimate.get("transactionState").asLong() > 0);
+            assertTrue(estimate.get("peakHeap").asLong() > estimate.get("transactionState").asLong());
+            assertEquals(1024, estimate.get("budget").asLong());
+            assertFalse(estimate.get("fits").asBoolean());
+
+            Record lamport = session.run("CALL horus.estimate.annotate({clock: 'lamport'})").single();
+            assertEquals(0, lamport.get("clockWidth").asLong());
+            assertTrue(lamport.get("peakHeap").asLong() < estimate.get("peakHeap").asLong());
+        }
+    }
+
+    @Test
+    public void refusesAnnotationAboveBudget() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            try {
+                session.run("CALL horus.annotateLogicalTime()").consume();
+                fail("Annotation above the memory budget should be refused.");
+            } catch (ClientException e) {
+                assertTrue(e.getMessage().contains("above the budget"));
+            }
+
+            assertEquals(0, session.run("MATCH (n:EVENT) WHERE exists(n.vectorLogicalTime) RETURN n").list().size());
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package horus;
+
+import horus.export.TraceReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.driver.v1.*;
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+public class ExportTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withConfig(HorusSettings.export_enabled.name(), "true")
+
+            // This is the Procedure we want to test
+            .withProcedure(Export.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void exportsEventsInLamportTimeOrder() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            Record result = session.run("CALL horus.export('traces/trace.hcol', {blockSize: 4})").single();
+            File file = new File(result.get("path").asString());
+            assertTrue(file.exists());
+            assertFalse(new File(file.getPath() + ".partial").exists());
+            assertEquals(13, result.get("events").asLong());
+            assertEquals(15, result.get("relationships").asLong());
+            assertEquals(4, result.get("blocks").asLong());
+
+            Record c4 = session.run("MATCH (n:EVENT {eventId: '12@cloud83'}) RETURN id(n) AS id, n.vectorLogicalTime AS vectorLogicalTime, " +
+                    "[(n)-[:HAPPENS_BEFORE]->(m) | id(m)] AS children").single();
+
+            try (TraceReader reader = TraceReader.open(file.toPath())) {
+                assertEquals(13, reader.getRowCount());
+                assertEquals(4, reader.getBlockCount());
+
+                long previousLamportTime = 0;
+                boolean found = false;
+                for (int i = 0; i < reader.getBlockCount(); i++) {
+                    TraceReader.Block block = reader.readBlock(i);
+                    assertEquals(reader.getBlockMinLamportTime(i), block.getLamportTime(0));
+
+                    for (int row = 0; row < block.getRows(); row++) {
+                        assertTrue(block.getLamportTime(row) >= previousLamportTime);
+                        previousLamportTime = block.getLamportTime(row);
+
+                        if (block.getNodeId(row) != c4.get("id").asLong())
+                            continue;
+
+                        found = true;
+                        assertEquals("1912", block.getThreadId(row));
+                        assertEquals(12, block.getKernelTime(row));
+                        assertEquals(new HashSet<>(Arrays.asList("EVENT", "END")), new HashSet<>(block.getLabels(row)));
+                        assertArrayEquals(new long[]{c4.get("children").get(0).asLong()}, block.getChildren(row));
+
+                        VectorClock vc = block.getVectorClock(row);
+                        AnnotateLogicalTimeTest.testVectorLogicalTime(
+                                session.run("RETURN '1912' AS threadId, $vc AS vectorLogicalTime", Values.parameters("vc", c4.get("vectorLogicalTime").asString())).single(),
+                                expected -> assertTrue(vc.equals(expected)));
+                    }
+                }
+
+                assertTrue(found);
+            }
+        }
+    }
+
+    @Test(expected = ClientException.class)
+    public void rejectsUnknownFormats() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run("CALL horus.export('trace.csv', {format: 'csv'})").consume();
+        }
+    }
+
+    @Test
+    public void rejectsPathsOutsideOfExportDirectory() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            File outside = new File(folder.getRoot(), "trace.hcol");
+            for (String path : Arrays.asList(outside.getPath(), "../trace.hcol", "traces/../../trace.hcol")) {
+                try {
+                    session.run("CALL horus.export($path)", Values.parameters("path", path)).consume();
+                    fail("Exported to " + path);
+                } catch (ClientException e) {
+                    assertTrue(e.getMessage().contains(HorusSettings.export_directory.name()));
+                }
+            }
+
+            assertFalse(outside.exists());
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FindRacesTest {
+    // Clients A and B both send on socket x, only A's message being received by the server before it replies.
+    private static final String SHARED_SOCKET = "CREATE " +
+            "(a1:EVENT:SND {threadId:'A', eventId:'a1', socketId:'x'}), " +
+            "(b1:EVENT:SND {threadId:'B', eventId:'b1', socketId:'x'}), " +
+            "(s1:EVENT:RCV {threadId:'S', eventId:'s1', socketId:'x'}), " +
+            "(s2:EVENT:SND {threadId:'S', eventId:'s2', socketId:'x'}), " +
+            "(s3:EVENT:END {threadId:'S', eventId:'s3'}), " +
+            "(a1)-[:HAPPENS_BEFORE]->(s1)-[:HAPPENS_BEFORE]->(s2)-[:HAPPENS_BEFORE]->(s3)";
+
+    // B reads file y after A's first write, but not after A's second one.
+    private static final String SHARED_FILE = "CREATE " +
+            "(a1:EVENT:WRITE {threadId:'A', eventId:'a1', fileId:'y'}), " +
+            "(a2:EVENT:WRITE {threadId:'A', eventId:'a2', fileId:'y'}), " +
+            "(b1:EVENT:READ {threadId:'B', eventId:'b1', fileId:'y'}), " +
+            "(b2:EVENT:READ {threadId:'B', eventId:'b2', fileId:'y'}), " +
+            "(a1)-[:HAPPENS_BEFORE]->(a2), (a1)-[:HAPPENS_BEFORE]->(b1)-[:HAPPENS_BEFORE]->(b2)";
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(FindRaces.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void findsConcurrentAccessesToSameSocket() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(SHARED_SOCKET).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            List<Record> races = session.run("CALL horus.findRaces() YIELD resource, first, second " +
+                    "RETURN resource, first.eventId AS first, second.eventId AS second").list();
+
+            assertEquals(3, races.size());
+            for (Record race : races) {
+                assertEquals("x", race.get("resource").asString());
+                assertTrue(race.get("first").asString().equals("b1") || race.get("second").asString().equals("b1"));
+            }
+
+            assertEquals(2, session.run("CALL horus.findRaces({groupBy: 'socketId', labels: ['SND']}) YIELD first RETURN first").list().size());
+            assertEquals(1, session.run("CALL horus.findRaces({limit: 1}) YIELD first RETURN first").list().size());
+        }
+    }
+
+    @Test
+    public void onlyChecksAccessesStillConcurrent() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(SHARED_FILE).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            List<String> races = session.run("CALL horus.findRaces({groupBy: 'fileId'}) YIELD first, second " +
+                    "WITH CASE WHEN first.eventId < second.eventId THEN [first.eventId, second.eventId] ELSE [second.eventId, first.eventId] END AS race " +
+                    "RETURN race[0] + '-' + race[1] AS race ORDER BY race").list(record -> record.get("race").asString());
+
+            assertEquals(Arrays.asList("a2-b1", "a2-b2"), races);
+        }
+    }
+}
@@ -10,13 +10,16 @@ import org.neo4j.kernel.impl.core.NodeProxy;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class GetCausalNodesTest {
     // This rule starts a Neo4j instance for us
@@ -24,7 +27,8 @@ public class GetCausalNodesTest {
     public Neo4jRule neo4j = new Neo4jRule()
 
             // This is the Procedure we want to test
-            .withProcedure(GetCausalNodes.class);
+            .withProcedure(GetCausalNodes.class)
+            .withProcedure(AnnotateLogicalTime.class);
 
     @Test
     public void calculatesCausalNodesBetweenTwoEvents() throws Throwable {
@@ -65,6 +69,49 @@ public class GetCausalNodesTest {
         }
     }
 
+    @Test
+    public void findsSameCausalNodesWithEveryStrategy() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+            session.run("CALL horus.createLogicalTimeIndexes()").consume();
+            session.run("CALL db.awaitIndexes()").consume();
+
+            Set<String> expected = new HashSet<>(Arrays.asList("2@cloud83", "9@cloud83", "10@cloud83", "6@cloud83", "7@cloud83", "11@cloud83"));
+            for (String strategy : Arrays.asList("auto", "scan", "traversal", "timelines")) {
+                Set<String> actual = new HashSet<>(session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) " +
+                        "CALL horus.getCausalNodes(a, b, {strategy: $strategy}) YIELD node RETURN node.eventId AS eventId", Values.parameters("strategy", strategy))
+                        .list(record -> record.get("eventId").asString()));
+
+                assertEquals(strategy, expected, actual);
+
+                // Unrelated events are only between themselves, whichever has the later Lamport time
+                for (List<String> endpoints : Arrays.asList(Arrays.asList("13@cloud83", "12@cloud83"), Arrays.asList("12@cloud83", "13@cloud83"))) {
+                    Set<String> unrelated = new HashSet<>(session.run("MATCH (a:EVENT {eventId: $from}), (b:EVENT {eventId: $to}) " +
+                            "CALL horus.getCausalNodes(a, b, {strategy: $strategy}) YIELD node RETURN node.eventId AS eventId",
+                            Values.parameters("from", endpoints.get(0), "to", endpoints.get(1), "strategy", strategy))
+                            .list(record -> record.get("eventId").asString()));
+
+                    assertEquals(strategy, new HashSet<>(endpoints), unrelated);
+                }
+            }
+
+            Record plan = session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) " +
+                    "CALL horus.getCausalNodes.plan(a, b) YIELD strategy, windowEvents, estimatedEvents, clockWidth RETURN *").single();
+            assertTrue(Arrays.asList("scan", "traversal", "timelines").contains(plan.get("strategy").asString()));
+            assertEquals(3, plan.get("clockWidth").asLong());
+            assertTrue(plan.get("estimatedEvents").asLong() >= expected.size());
+            assertTrue(plan.get("estimatedEvents").asLong() <= plan.get("windowEvents").asLong());
+
+            Record forced = session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) " +
+                    "CALL horus.getCausalNodes.plan(a, b, {strategy: 'traversal'}) YIELD strategy RETURN strategy").single();
+            assertEquals("traversal", forced.get("strategy").asString());
+        }
+    }
+
     private void createServerClientExample(Session session) {
         session.writeTransaction(new TransactionWork<Object>() {
             @Override
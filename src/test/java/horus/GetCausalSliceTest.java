@@ -0,0 +1,47 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static horus.AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES;
+import static org.junit.Assert.assertEquals;
+
+public class GetCausalSliceTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(GetCausalSlice.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void slicesBetweenSetsOfEvents() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            assertEquals(new HashSet<>(Arrays.asList("2@cloud83", "5@cloud83", "6@cloud83", "7@cloud83", "9@cloud83", "10@cloud83", "11@cloud83")),
+                    slice(session, "union"));
+
+            assertEquals(new HashSet<>(Arrays.asList("6@cloud83", "7@cloud83", "11@cloud83")),
+                    slice(session, "intersection"));
+        }
+    }
+
+    private static Set<String> slice(Session session, String mode) {
+        return new HashSet<>(session.run("MATCH (a:EVENT) WHERE a.eventId IN ['2@cloud83', '5@cloud83'] WITH collect(a) AS sources " +
+                "MATCH (b:EVENT {eventId: '11@cloud83'}) " +
+                "CALL horus.getCausalSlice(sources, [b], {mode: $mode}) YIELD node RETURN node.eventId AS eventId", Values.parameters("mode", mode))
+                .list(record -> record.get("eventId").asString()));
+    }
+}
@@ -0,0 +1,75 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class GetEventsInTimeWindowTest {
+    // Thread B's clock lags behind: b2 is received from a2 but has an earlier kernel time.
+    static final String SKEWED_CLOCKS = "CREATE " +
+            "(a1:EVENT {threadId:'A', eventId:'a1', kernelTime: 1000}), " +
+            "(a2:EVENT:SND {threadId:'A', eventId:'a2', kernelTime: 5000}), " +
+            "(b1:EVENT {threadId:'B', eventId:'b1', kernelTime: 2000}), " +
+            "(b2:EVENT:RCV {threadId:'B', eventId:'b2', kernelTime: 3000}), " +
+            "(b3:EVENT {threadId:'B', eventId:'b3', kernelTime: 7000}), " +
+            "(a1)-[:HAPPENS_BEFORE]->(a2), " +
+            "(b1)-[:HAPPENS_BEFORE]->(b2)-[:HAPPENS_BEFORE]->(b3), " +
+            "(a2)-[:HAPPENS_BEFORE]->(b2)";
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(GetEventsInTimeWindow.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void createsLogicalTimeIndexesOnce() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            List<Record> created = session.run("CALL horus.createLogicalTimeIndexes()").list();
+            assertEquals(6, created.size());
+            assertTrue(created.stream().allMatch(record -> record.get("created").asBoolean()));
+
+            List<Record> existing = session.run("CALL horus.createLogicalTimeIndexes()").list();
+            assertTrue(existing.stream().noneMatch(record -> record.get("created").asBoolean()));
+        }
+    }
+
+    @Test
+    public void getsEventsInTimeWindowInCausalOrder() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(SKEWED_CLOCKS).consume();
+            session.run("CALL horus.createLogicalTimeIndexes()").consume();
+            session.run("CALL horus.annotateLogicalTime({hybrid: true})").consume();
+
+            assertEquals(Arrays.asList("a2", "b2"), getEventIds(session, 5000, 5999));
+            assertEquals(Arrays.asList("b1"), getEventIds(session, 2000, 3999));
+            assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "b3"), getEventIds(session, 0, 10000));
+
+            Record b2 = session.run("CALL horus.getEventsInTimeWindow(5000, 5999) YIELD node, hybridLogicalTime, kernelTime " +
+                    "WITH node, hybridLogicalTime, kernelTime WHERE node.eventId = 'b2' RETURN hybridLogicalTime, kernelTime").single();
+            assertEquals((5L << 16) + 1, b2.get("hybridLogicalTime").asLong());
+            assertEquals(5000L, b2.get("kernelTime").asLong());
+        }
+    }
+
+    private static List<String> getEventIds(Session session, long from, long to) {
+        return session.run("CALL horus.getEventsInTimeWindow($from, $to) YIELD node RETURN node.eventId AS eventId",
+                Values.parameters("from", from, "to", to))
+                .list(record -> record.get("eventId").asString());
+    }
+}
@@ -0,0 +1,80 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static horus.AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES;
+import static org.junit.Assert.*;
+
+public class GraphsTest {
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(Graphs.class)
+            .withProcedure(AnnotateLogicalTime.class)
+            .withProcedure(GetCausalNodes.class);
+
+    @Test
+    public void queriesLoadedProjection() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            Record loaded = session.run("CALL horus.graph.load('trace')").single();
+            assertEquals("trace", loaded.get("name").asString());
+            assertEquals(13, loaded.get("events").asLong());
+            assertEquals(15, loaded.get("relationships").asLong());
+            assertEquals(4, loaded.get("timelines").asLong());
+
+            assertTrue(session.run("MATCH (a:EVENT {eventId: '1@cloud83'}), (b:EVENT {eventId: '12@cloud83'}) " +
+                    "CALL horus.graph.happensBefore('trace', a, b) YIELD result RETURN result").single().get("result").asBoolean());
+            assertFalse(session.run("MATCH (a:EVENT {eventId: '13@cloud83'}), (b:EVENT {eventId: '12@cloud83'}) " +
+                    "CALL horus.graph.happensBefore('trace', a, b) YIELD result RETURN result").single().get("result").asBoolean());
+
+            Set<String> projected = new HashSet<>(session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) " +
+                    "CALL horus.graph.getCausalNodes('trace', a, b) YIELD node RETURN node.eventId AS eventId")
+                    .list(record -> record.get("eventId").asString()));
+            Set<String> stored = new HashSet<>(session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) " +
+                    "CALL horus.getCausalNodes(a, b) YIELD node RETURN node.eventId AS eventId")
+                    .list(record -> record.get("eventId").asString()));
+
+            assertEquals(new HashSet<>(Arrays.asList("2@cloud83", "9@cloud83", "10@cloud83", "6@cloud83", "7@cloud83", "11@cloud83")), projected);
+            assertEquals(stored, projected);
+
+            // Unrelated events are only between themselves, whichever has the later Lamport time
+            for (List<String> endpoints : Arrays.asList(Arrays.asList("13@cloud83", "12@cloud83"), Arrays.asList("12@cloud83", "13@cloud83"))) {
+                Value parameters = Values.parameters("from", endpoints.get(0), "to", endpoints.get(1));
+                Set<String> unrelated = new HashSet<>(session.run("MATCH (a:EVENT {eventId: $from}), (b:EVENT {eventId: $to}) " +
+                        "CALL horus.graph.getCausalNodes('trace', a, b) YIELD node RETURN node.eventId AS eventId", parameters)
+                        .list(record -> record.get("eventId").asString()));
+                Set<String> storedUnrelated = new HashSet<>(session.run("MATCH (a:EVENT {eventId: $from}), (b:EVENT {eventId: $to}) " +
+                        "CALL horus.getCausalNodes(a, b) YIELD node RETURN node.eventId AS eventId", parameters)
+                        .list(record -> record.get("eventId").asString()));
+
+                assertEquals(new HashSet<>(endpoints), unrelated);
+                assertEquals(storedUnrelated, unrelated);
+            }
+
+            Set<String> communication = new HashSet<>(session.run("MATCH (a:EVENT {eventId: '2@cloud83'}), (b:EVENT {eventId: '11@cloud83'}) " +
+                    "CALL horus.graph.getCausalGraph('trace', a, b, false, [], ['SND', 'RCV']) YIELD node RETURN node.eventId AS eventId")
+                    .list(record -> record.get("eventId").asString()));
+            assertEquals(new HashSet<>(Arrays.asList("7@cloud83", "11@cloud83")), communication);
+
+            assertEquals(1, session.run("CALL horus.graph.list()").list().size());
+            session.run("CALL horus.graph.drop('trace')").consume();
+            assertEquals(0, session.run("CALL horus.graph.list()").list().size());
+        }
+    }
+}
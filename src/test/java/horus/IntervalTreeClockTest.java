@@ -0,0 +1,52 @@
+package horus;
+
+import horus.IntervalTreeClock.Id;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class IntervalTreeClockTest {
+
+    @Test
+    public void forkedEventsAreConcurrent() {
+        IntervalTreeClock clock = IntervalTreeClock.ZERO.event(Id.ONE);
+        Id[] ids = Id.ONE.split();
+
+        IntervalTreeClock left = clock.event(ids[0]);
+        IntervalTreeClock right = clock.event(ids[1]);
+
+        assertTrue(clock.lessThan(left));
+        assertTrue(clock.lessThan(right));
+        assertFalse(left.lessThan(right));
+        assertFalse(right.lessThan(left));
+    }
+
+    @Test
+    public void joinCollapsesClock() {
+        IntervalTreeClock clock = IntervalTreeClock.ZERO.event(Id.ONE);
+        Id[] ids = Id.ONE.split();
+
+        IntervalTreeClock left = clock.event(ids[0]).event(ids[0]);
+        IntervalTreeClock right = clock.event(ids[1]);
+
+        IntervalTreeClock joined = left.join(right).event(ids[0].sum(ids[1]));
+
+        assertEquals(Id.ONE, ids[0].sum(ids[1]));
+        assertEquals("3", joined.toString());
+        assertTrue(left.lessThan(joined));
+        assertTrue(right.lessThan(joined));
+    }
+
+    @Test
+    public void parse() {
+        IntervalTreeClock clock = IntervalTreeClock.parse("(1,2,(0,1,0))");
+
+        assertEquals("(1,2,(0,1,0))", clock.toString());
+        assertTrue(clock.equals((LogicalClock) IntervalTreeClock.parse("(1,2,(0,1,0))")));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void parseInvalidClock() {
+        IntervalTreeClock.parse("(1,2");
+    }
+}
@@ -0,0 +1,171 @@
+package horus;
+
+import apoc.result.VirtualNode;
+import horus.causality.LogicalTime;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class ProjectLogsTest {
+    static final String LOGS_BETWEEN_KERNEL_EVENTS = "CREATE " +
+            "(a1:EVENT:LOG {threadId:'1910', host:'h1', eventId:'a1'}), " +
+            "(a2:EVENT:SND {threadId:'1910', host:'h1', eventId:'a2'}), " +
+            "(a3:EVENT:LOG {threadId:'1910', host:'h1', eventId:'a3'}), " +
+
+            "(b1:EVENT:LOG {threadId:'1911', host:'h2', eventId:'b1'}), " +
+            "(b2:EVENT:RCV {threadId:'1911', host:'h2', eventId:'b2'}), " +
+            "(b3:EVENT:LOG {threadId:'1911', host:'h2', eventId:'b3'}), " +
+            "(b4:EVENT:LOG {threadId:'1911', host:'h2', eventId:'b4'}), " +
+
+            "(a1)-[:HAPPENS_BEFORE]->(a2)-[:HAPPENS_BEFORE]->(a3), " +
+            "(b1)-[:HAPPENS_BEFORE]->(b2)-[:HAPPENS_BEFORE]->(b3)-[:HAPPENS_BEFORE]->(b4), " +
+            "(a2)-[:HAPPENS_BEFORE]->(b2)";
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(ProjectLogs.class)
+            .withProcedure(AnnotateLogicalTime.class)
+            .withProcedure(GetCausalGraph.class)
+            .withProcedure(GetCausalNodes.class);
+
+    @Test
+    public void materializesTransitivelyReducedLogRelationships() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(LOGS_BETWEEN_KERNEL_EVENTS).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            Record result = session.run("CALL horus.projectLogs()").single();
+            assertEquals(5, result.get("logEvents").asLong());
+            assertEquals(4, result.get("relationships").asLong());
+
+            List<String> edges = session.run("MATCH (n)-[:LOG_HAPPENS_BEFORE]->(m) RETURN n.eventId + '->' + m.eventId AS edge ORDER BY edge")
+                    .list(record -> record.get("edge").asString());
+            assertEquals(Arrays.asList("a1->a3", "a1->b3", "b1->b3", "b3->b4"), edges);
+
+            AnnotateLogicalTimeTest.testVectorLogicalTime(
+                    session.run("MATCH (n {eventId: 'b4'}) RETURN n.threadId AS threadId, n.logVectorLogicalTime AS vectorLogicalTime").single(),
+                    vc -> {
+                        assertEquals(1, vc.getTime("1910").intValue());
+                        assertEquals(3, vc.getTime("1911").intValue());
+                    });
+        }
+    }
+
+    @Test
+    public void projectsOnlyLogsOfGivenHosts() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(LOGS_BETWEEN_KERNEL_EVENTS).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+            session.run("CALL horus.projectLogs()").consume();
+
+            Record result = session.run("CALL horus.projectLogs({hosts: ['h2']})").single();
+            assertEquals(3, result.get("logEvents").asLong());
+            assertEquals(2, result.get("relationships").asLong());
+
+            Record dropped = session.run("CALL horus.dropLogProjection()").single();
+            assertEquals(2, dropped.get("relationships").asLong());
+            assertEquals(0, session.run("MATCH (n) WHERE exists(n.logVectorLogicalTime) RETURN count(n) AS n").single().get("n").asLong());
+        }
+    }
+
+    @Test
+    public void readsLogGraphFromProjection() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(LOGS_BETWEEN_KERNEL_EVENTS).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            String query = "MATCH (start {eventId: 'a1'}), (end {eventId: 'b4'}) " +
+                    "CALL horus.getCausalGraph(start, end, true) YIELD node RETURN node";
+
+            List<String> computed = this.eventIds(query);
+            session.run("CALL horus.projectLogs()").consume();
+            List<String> projected = this.eventIds(query);
+
+            assertEquals(Arrays.asList("a1", "b3", "b4"), computed);
+            assertEquals(computed, projected);
+        }
+    }
+
+    @Test
+    public void assignsLogClocksOnProjectedLogGraph() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(LOGS_BETWEEN_KERNEL_EVENTS).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+
+            String query = "MATCH (start {eventId: 'a1'}), (end {eventId: 'b4'}) " +
+                    "CALL horus.getCausalGraph(start, end, true) YIELD node RETURN node";
+
+            Map<String, Map<String, Integer>> computed = this.vectorLogicalTimes(query);
+            session.run("CALL horus.projectLogs()").consume();
+            Map<String, Map<String, Integer>> projected = this.vectorLogicalTimes(query);
+
+            assertEquals(computed, projected);
+            assertEquals(1, projected.get("b4").get("1910").intValue());
+            assertEquals(2, projected.get("b4").get("1911").intValue());
+        }
+    }
+
+    @Test
+    public void projectsEventsImportedAfterProjection() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(LOGS_BETWEEN_KERNEL_EVENTS).consume();
+            session.run("CALL horus.annotateLogicalTime()").consume();
+            session.run("CALL horus.projectLogs()").consume();
+
+            // Online annotation is disabled, so these events are neither annotated nor projected yet
+            session.run("MATCH (a3 {eventId: 'a3'}), (b4 {eventId: 'b4'}) " +
+                    "CREATE (a3)-[:HAPPENS_BEFORE]->(:EVENT:LOG {threadId:'1910', host:'h1', eventId:'a4'}), " +
+                    "(b4)-[:HAPPENS_BEFORE]->(:EVENT:LOG {threadId:'1911', host:'h2', eventId:'b5'})").consume();
+
+            String query = "MATCH (start {eventId: 'a1'}), (end {eventId: 'b5'}) " +
+                    "CALL horus.getCausalGraph(start, end, true) YIELD node RETURN node";
+
+            session.run("CALL horus.annotateLogicalTime()").consume();
+            assertEquals(Arrays.asList("a1", "b3", "b4", "b5"), this.eventIds(query));
+
+            List<String> edges = session.run("MATCH (n)-[:LOG_HAPPENS_BEFORE]->(m) RETURN n.eventId + '->' + m.eventId AS edge ORDER BY edge")
+                    .list(record -> record.get("edge").asString());
+            assertEquals(Arrays.asList("a1->a3", "a1->b3", "a3->a4", "b1->b3", "b3->b4", "b4->b5"), edges);
+        }
+    }
+
+    private Map<String, Map<String, Integer>> vectorLogicalTimes(String query) {
+        return this.neo4j.getGraphDatabaseService().execute(query).stream()
+                .map(record -> (VirtualNode) record.get("node"))
+                .collect(Collectors.toMap(node -> (String) node.getProperty("eventId"),
+                        node -> LogicalTime.parseVectorClock((String) node.getProperty("threadId"), (String) node.getProperty("vectorLogicalTime")).toMap()));
+    }
+
+    private List<String> eventIds(String query) {
+        return this.neo4j.getGraphDatabaseService().execute(query).stream()
+                .map(record -> (String) ((VirtualNode) record.get("node")).getProperty("eventId"))
+                .sorted()
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,82 @@
+package horus;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.driver.v1.exceptions.ClientException;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import static org.junit.Assert.*;
+
+public class ValidateCausalGraphTest {
+    // A cycle a -> b -> c -> a blocking d, a RCV without SND and an event without threadId.
+    private static final String INVALID_GRAPH = "CREATE " +
+            "(a:EVENT {threadId:'A', eventId:'a'}), " +
+            "(b:EVENT {threadId:'A', eventId:'b'}), " +
+            "(c:EVENT {threadId:'A', eventId:'c'}), " +
+            "(d:EVENT {threadId:'A', eventId:'d'}), " +
+            "(r:EVENT:RCV {threadId:'B', eventId:'r'}), " +
+            "(x:EVENT {eventId:'x'}), " +
+            "(a)-[:HAPPENS_BEFORE]->(b)-[:HAPPENS_BEFORE]->(c)-[:HAPPENS_BEFORE]->(a), " +
+            "(c)-[:HAPPENS_BEFORE]->(d), " +
+            "(x)-[:HAPPENS_BEFORE]->(r)";
+
+    // This rule starts a Neo4j instance for us
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+
+            // This is the Procedure we want to test
+            .withProcedure(ValidateCausalGraph.class)
+            .withProcedure(AnnotateLogicalTime.class);
+
+    @Test
+    public void validatesWellFormedGraph() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(AnnotateLogicalTimeTest.CLIENT_SERVER_WITH_UNRELATED_TIMELINES).consume();
+
+            Record result = session.run("CALL horus.validateCausalGraph()").single();
+
+            assertTrue(result.get("valid").asBoolean());
+            assertEquals(13, result.get("events").asLong());
+            assertEquals(4, result.get("timelines").asLong());
+            assertEquals(52, result.get("estimatedClockEntries").asLong());
+            assertEquals(0, result.get("cycles").asLong());
+        }
+    }
+
+    @Test
+    public void reportsCyclesAndMalformedEvents() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(INVALID_GRAPH).consume();
+
+            Record result = session.run("CALL horus.validateCausalGraph({sampleSize: 5})").single();
+
+            assertFalse(result.get("valid").asBoolean());
+            assertEquals(1, result.get("cycles").asLong());
+            assertEquals(3, result.get("cycleSamples").get(0).size());
+            assertEquals(4, result.get("blockedEvents").asLong());
+            assertEquals(1, result.get("orphanedReceives").asLong());
+            assertEquals("r", result.get("orphanedReceiveSamples").get(0).asNode().get("eventId").asString());
+            assertEquals(1, result.get("missingThreadIds").asLong());
+            assertEquals("x", result.get("missingThreadIdSamples").get(0).asNode().get("eventId").asString());
+        }
+    }
+
+    @Test(expected = ClientException.class)
+    public void annotationFailsFastOnInvalidGraph() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run(INVALID_GRAPH).consume();
+
+            session.run("CALL horus.annotateLogicalTime({validate: true})").consume();
+        }
+    }
+}
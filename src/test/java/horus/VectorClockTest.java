@@ -147,4 +147,24 @@ public class VectorClockTest {
         assertFalse(clock1.equals(clock3));
         assertFalse(clock2.equals(clock3));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void failsToCompareWithOtherClocks() {
+        VectorClock clock = new VectorClock("myid");
+        LogicalClock other = IntervalTreeClock.parse("(1,2,(0,1,0))");
+
+        try {
+            clock.lessThan(other);
+            fail("Comparing a vector clock with an interval tree clock should fail.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("different clocks"));
+        }
+
+        try {
+            other.equals((LogicalClock) clock);
+            fail("Comparing an interval tree clock with a vector clock should fail.");
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("different clocks"));
+        }
+    }
+}
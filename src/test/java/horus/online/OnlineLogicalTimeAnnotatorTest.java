@@ -0,0 +1,137 @@
+package horus.online;
+
+import horus.AnnotateLogicalTimeTest;
+import horus.HorusSettings;
+import horus.ProjectLogs;
+import org.junit.Rule;
+import org.junit.Test;
+import org.neo4j.driver.v1.*;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import static org.junit.Assert.*;
+
+public class OnlineLogicalTimeAnnotatorTest {
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    // This rule starts a Neo4j instance for us, with online annotation enabled
+    @Rule
+    public Neo4jRule neo4j = new Neo4jRule()
+            .withConfig(HorusSettings.online_annotation_enabled.name(), "true")
+            .withProcedure(ProjectLogs.class);
+
+    @Test
+    public void annotatesEventsAfterCommit() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run("CREATE " +
+                    "(a1:EVENT {threadId:'1910', eventId:'1@cloud83'}), " +
+                    "(a2:EVENT {threadId:'1910', eventId:'2@cloud83'}), " +
+                    "(b1:EVENT {threadId:'1911', eventId:'3@cloud83'}), " +
+                    "(b2:EVENT {threadId:'1911', eventId:'4@cloud83'}), " +
+                    "(a1)-[:HAPPENS_BEFORE]->(a2), (a1)-[:HAPPENS_BEFORE]->(b1), (b1)-[:HAPPENS_BEFORE]->(b2)").consume();
+
+            Record node = waitForLogicalTime(session, "4@cloud83", 3L);
+
+            AnnotateLogicalTimeTest.testVectorLogicalTime(node, vc -> {
+                assertEquals(1, vc.getTime("1910").intValue());
+                assertEquals(2, vc.getTime("1911").intValue());
+            });
+        }
+    }
+
+    @Test
+    public void propagatesRelationshipsCommittedLater() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run("CREATE " +
+                    "(a1:EVENT {threadId:'1910', eventId:'1@cloud83'}), " +
+                    "(a2:EVENT {threadId:'1910', eventId:'2@cloud83'}), " +
+                    "(b1:EVENT {threadId:'1911', eventId:'3@cloud83'}), " +
+                    "(b2:EVENT {threadId:'1911', eventId:'4@cloud83'}), " +
+                    "(a1)-[:HAPPENS_BEFORE]->(a2), (b1)-[:HAPPENS_BEFORE]->(b2)").consume();
+
+            waitForLogicalTime(session, "4@cloud83", 2L);
+
+            session.run("MATCH (a2:EVENT {eventId:'2@cloud83'}), (b1:EVENT {eventId:'3@cloud83'}) " +
+                    "CREATE (a2)-[:HAPPENS_BEFORE]->(b1)").consume();
+
+            Record node = waitForLogicalTime(session, "4@cloud83", 4L);
+
+            AnnotateLogicalTimeTest.testVectorLogicalTime(node, vc -> {
+                assertEquals(2, vc.getTime("1910").intValue());
+                assertEquals(2, vc.getTime("1911").intValue());
+            });
+        }
+    }
+
+    @Test
+    public void keepsLogProjectionUpToDate() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            session.run("CALL horus.projectLogs()").consume();
+
+            session.run("CREATE " +
+                    "(a1:EVENT:LOG {threadId:'1910', eventId:'1@cloud83'}), " +
+                    "(a2:EVENT {threadId:'1910', eventId:'2@cloud83'}), " +
+                    "(b1:EVENT:LOG {threadId:'1911', eventId:'3@cloud83'}), " +
+                    "(a1)-[:HAPPENS_BEFORE]->(a2), (a2)-[:HAPPENS_BEFORE]->(b1)").consume();
+
+            waitForLogicalTime(session, "3@cloud83", 3L);
+
+            Record edge = session.run("MATCH (n)-[:LOG_HAPPENS_BEFORE]->(m) RETURN n.eventId AS from, m.eventId AS to").single();
+            assertEquals("1@cloud83", edge.get("from").asString());
+            assertEquals("3@cloud83", edge.get("to").asString());
+        }
+    }
+
+    @Test
+    public void skipsEventsAnnotatedWithOtherClocks() throws Throwable {
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build()
+                .withEncryption().toConfig());
+             Session session = driver.session()) {
+
+            // As annotated by horus.annotateLogicalTime({clock: 'lamport'}).
+            session.run("CREATE " +
+                    "(a1:EVENT {threadId:'1910', eventId:'1@cloud83', lamportLogicalTime: 1}), " +
+                    "(a2:EVENT {threadId:'1910', eventId:'2@cloud83', lamportLogicalTime: 2}), " +
+                    "(a1)-[:HAPPENS_BEFORE]->(a2)").consume();
+            session.run("MATCH (a2:EVENT {eventId:'2@cloud83'}) " +
+                    "CREATE (a2)-[:HAPPENS_BEFORE]->(:EVENT {threadId:'1911', eventId:'3@cloud83'})").consume();
+
+            // Events are annotated in commit order, so the earlier ones have been skipped once this one is annotated.
+            session.run("CREATE (:EVENT {threadId:'1912', eventId:'4@cloud83'})").consume();
+            waitForLogicalTime(session, "4@cloud83", 1L);
+
+            Record other = session.run("MATCH (n:EVENT) WHERE n.eventId <> '4@cloud83' AND exists(n.vectorLogicalTime) " +
+                    "RETURN count(n) AS count").single();
+            assertEquals(0, other.get("count").asInt());
+
+            Record child = session.run("MATCH (n:EVENT {eventId:'3@cloud83'}) RETURN n.lamportLogicalTime AS lamportLogicalTime").single();
+            assertTrue(child.get("lamportLogicalTime").isNull());
+        }
+    }
+
+    private Record waitForLogicalTime(Session session, String eventId, long lamportTime) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+
+        while (System.currentTimeMillis() < deadline) {
+            Record node = session.run("MATCH (n:EVENT {eventId: $eventId}) RETURN n.threadId as threadId, " +
+                            "n.vectorLogicalTime as vectorLogicalTime, n.lamportLogicalTime as lamportLogicalTime",
+                    Values.parameters("eventId", eventId)).single();
+
+            if (!node.get("lamportLogicalTime").isNull() && node.get("lamportLogicalTime").asLong() == lamportTime)
+                return node;
+
+            Thread.sleep(50);
+        }
+
+        fail("Event " + eventId + " was not annotated with lamport time " + lamportTime);
+        return null;
+    }
+}